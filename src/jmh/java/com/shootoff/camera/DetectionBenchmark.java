@@ -0,0 +1,191 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.gui.CanvasManager;
+
+import javafx.collections.FXCollections;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+
+/**
+ * Feeds decoded frames from the test videos through each stage of shot
+ * detection. Every benchmark invocation processes one frame, so the reported
+ * score is ns/frame, and the gc profiler's gc.alloc.rate.norm is the number of
+ * bytes a stage allocates per frame. Stateful stages see the frames in video
+ * order, looping back to the first frame at the end of the clip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectionBenchmark {
+	// Three seconds of 30 FPS video
+	private static final int MAX_FRAMES = 90;
+
+	@Param({ "/shotsearcher/no_interference_two_shots.mp4",
+			"/shotsearcher/ps3eye_hardware_defaults_ambient_light_nature_scene.mp4",
+			"/shotsearcher/ps3eye_hardware_defaults_projector_dark_room.mp4" })
+	public String video;
+
+	private List<BufferedImage> frames;
+	private List<BufferedImage> grayFrames;
+	private int nextFrame = 0;
+
+	private int[] pixels;
+	private final AverageFrameComponents averages = new AverageFrameComponents();
+	private final PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
+	private final List<ShotCandidate> shotCandidates = new ArrayList<ShotCandidate>();
+
+	private Configuration config;
+	private CanvasManager canvasManager;
+	private boolean[][] sectorStatuses;
+
+	/**
+	 * Accepts shots without touching the scene graph so the searcher can run
+	 * without the JavaFX toolkit.
+	 */
+	private static class NullCanvasManager extends CanvasManager {
+		public NullCanvasManager(Configuration config) {
+			super(new Group(), config, new CamerasSupervisor(config), FXCollections.observableArrayList());
+		}
+
+		@Override
+		public void addShot(Color color, double x, double y, long captureTime) {}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		frames = VideoFrames.load(video, MAX_FRAMES);
+
+		grayFrames = new ArrayList<BufferedImage>();
+		for (BufferedImage frame : frames) {
+			BufferedImage grayScale = new BufferedImage(frame.getWidth(), frame.getHeight(),
+					BufferedImage.TYPE_BYTE_GRAY);
+			grayScale.createGraphics().drawImage(frame, 0, 0, null);
+			grayFrames.add(grayScale);
+		}
+
+		config = new Configuration(new String[0]);
+		canvasManager = new NullCanvasManager(config);
+		sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+		for (int x = 0; x < ShotSearcher.SECTOR_COLUMNS; x++) {
+			for (int y = 0; y < ShotSearcher.SECTOR_ROWS; y++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+
+		// Prime the moving averages the brightness filter compares against
+		for (int i = 0; i < CameraManager.INIT_FRAME_COUNT; i++) {
+			BufferedImage frame = frames.get(i % frames.size());
+			averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+		}
+	}
+
+	private int advance() {
+		int frame = nextFrame;
+		nextFrame = (nextFrame + 1) % frames.size();
+		return frame;
+	}
+
+	@Benchmark
+	public int[] readFrame() {
+		pixels = PackedRaster.readRGB(frames.get(advance()), pixels);
+		return pixels;
+	}
+
+	@Benchmark
+	public float averageFrameComponents() {
+		BufferedImage frame = frames.get(advance());
+		averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+		return averages.getAverageLum();
+	}
+
+	@State(Scope.Thread)
+	public static class KernelState {
+		@Param({ "1", "4" })
+		public int parallelism;
+
+		@Param({ "SCATTER", "GATHER", "SEPARABLE" })
+		public ShotDetectionKernel.Accumulation accumulation;
+
+		private ShotDetectionKernel detectionKernel;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			detectionKernel = new ShotDetectionKernel();
+			detectionKernel.setParallelism(parallelism);
+			detectionKernel.setAccumulation(accumulation);
+		}
+	}
+
+	@Benchmark
+	public int detectShots(KernelState state) {
+		shotCandidates.clear();
+		state.detectionKernel.detectShots(frames.get(advance()), shotCandidates);
+		return shotCandidates.size();
+	}
+
+	@Benchmark
+	public void findShot() {
+		int frame = advance();
+		new ShotSearcher(config, canvasManager, sectorStatuses, frames.get(frame), grayFrames.get(frame),
+				Optional.empty(), false).run();
+	}
+
+	/**
+	 * applyFilter dims pixels in place, so each invocation filters a fresh copy
+	 * of the next frame.
+	 */
+	@State(Scope.Thread)
+	public static class FilterState {
+		private BufferedImage workingFrame;
+
+		@Setup(Level.Invocation)
+		public void copyFrame(DetectionBenchmark benchmark) {
+			BufferedImage frame = benchmark.frames.get(benchmark.advance());
+
+			if (workingFrame == null || workingFrame.getWidth() != frame.getWidth() ||
+					workingFrame.getHeight() != frame.getHeight()) {
+				workingFrame = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+			}
+
+			workingFrame.setData(frame.getRaster());
+		}
+	}
+
+	@Benchmark
+	public void applyFilter(FilterState state, Blackhole blackhole) {
+		BufferedImage frame = state.workingFrame;
+		LightingCondition lightingCondition = averages.getLightingCondition();
+
+		for (int y = 0; y < frame.getHeight(); y++) {
+			for (int x = 0; x < frame.getWidth(); x++) {
+				pixelTransformer.applyFilter(frame, x, y, lightingCondition);
+			}
+		}
+
+		blackhole.consume(frame);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs shot detection over frames from a {@link LaserShotGenerator}, so
+ * throughput can be measured at resolutions and in scenes the test videos do
+ * not cover. The score is ns/frame: a camera at 60 FPS leaves 16.7 ms per
+ * frame and one at 120 FPS 8.3 ms. At the end of each trial the shots found are
+ * scored against the generated ones and the precision and recall are printed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SyntheticDetectionBenchmark {
+	// One second of 120 FPS video with a shot every tenth of a second
+	private static final int FRAME_COUNT = 120;
+	private static final int SHOT_INTERVAL = 12;
+
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String size;
+
+	@Param({ "AMBIENT", "PROJECTOR" })
+	public String scene;
+
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	private LaserShotGenerator generator;
+	private final List<BufferedImage> frames = new ArrayList<BufferedImage>();
+	private int nextFrame = 0;
+	private long frameNumber = 0;
+
+	private ShotDetectionKernel detectionKernel;
+	private final List<ShotCandidate> shotCandidates = new ArrayList<ShotCandidate>();
+	private DetectionScore score;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final String[] dimensions = size.split("x");
+		final int width = Integer.parseInt(dimensions[0]);
+		final int height = Integer.parseInt(dimensions[1]);
+		// Dots cover the same share of the frame at every size
+		final int radius = Math.max(2, 2 * width / 640);
+
+		generator = new LaserShotGenerator(width, height, 1);
+		if ("PROJECTOR".equals(scene)) {
+			generator.setProjectorContent(target(), new Rectangle(width / 4, height / 4, width / 2, height / 2), 0);
+		}
+		generator.addRandomShots(FRAME_COUNT / SHOT_INTERVAL / 2, 0, SHOT_INTERVAL, 4 * radius,
+				LaserShotGenerator.LaserColor.RED, radius, 2);
+		generator.addRandomShots(FRAME_COUNT / SHOT_INTERVAL / 2, SHOT_INTERVAL / 2, SHOT_INTERVAL, 4 * radius,
+				LaserShotGenerator.LaserColor.GREEN, radius, 2);
+
+		for (int i = 0; i < FRAME_COUNT; i++) frames.add(generator.generate(i));
+
+		detectionKernel = new ShotDetectionKernel();
+		detectionKernel.setParallelism(parallelism);
+		score = new DetectionScore(generator.getShots(), 3 * radius, 1);
+	}
+
+	// A shooting target like the ones projected in projector arena mode
+	private static BufferedImage target() {
+		BufferedImage target = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		g.setColor(new Color(200, 200, 200));
+		g.fillRect(0, 0, 200, 200);
+		g.setColor(Color.BLACK);
+		for (int r = 90; r > 0; r -= 20) g.drawOval(100 - r, 100 - r, 2 * r, 2 * r);
+		g.dispose();
+
+		return target;
+	}
+
+	@Benchmark
+	public int detectSyntheticShots() {
+		final int frame = nextFrame;
+		nextFrame = (nextFrame + 1) % frames.size();
+
+		shotCandidates.clear();
+		detectionKernel.detectShots(frames.get(frame), shotCandidates);
+
+		// Only the first pass over the frames is scored, later passes see the
+		// same shots again
+		if (frameNumber < FRAME_COUNT) {
+			for (ShotCandidate shot : shotCandidates) score.addDetection(frame, shot.getX(), shot.getY());
+		}
+		frameNumber++;
+
+		return shotCandidates.size();
+	}
+
+	@TearDown(Level.Trial)
+	public void printScore() {
+		System.out.println();
+		System.out.println(String.format("%s %s: %s", size, scene, score));
+	}
+}
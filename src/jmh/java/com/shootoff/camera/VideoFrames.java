@@ -0,0 +1,76 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+/**
+ * Decodes the test videos up front so benchmarks measure the detection
+ * stages and not xuggle.
+ */
+public final class VideoFrames {
+	private static final Map<String, List<BufferedImage>> decodedVideos = new HashMap<String, List<BufferedImage>>();
+
+	private VideoFrames() {}
+
+	/**
+	 * @param resource	the path of a test video on the classpath, e.g.
+	 * 					/shotsearcher/no_interference_two_shots.mp4
+	 * @param maxFrames	the maximum number of frames to decode from the start
+	 * 					of the video
+	 * @return the decoded TYPE_3BYTE_BGR frames, the same way the camera manager
+	 * 			receives them when it replays a video
+	 */
+	public static synchronized List<BufferedImage> load(String resource, int maxFrames) {
+		String key = resource + "@" + maxFrames;
+		if (decodedVideos.containsKey(key)) return decodedVideos.get(key);
+
+		URL url = VideoFrames.class.getResource(resource);
+		if (url == null) throw new IllegalArgumentException("Missing test video: " + resource);
+
+		File videoFile;
+		try {
+			videoFile = new File(url.toURI());
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Cannot open test video: " + resource, e);
+		}
+
+		List<BufferedImage> frames = new ArrayList<BufferedImage>();
+
+		IMediaReader reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
+		reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
+		reader.addListener(new MediaListenerAdapter() {
+			@Override
+			public void onVideoPicture(IVideoPictureEvent event) {
+				if (frames.size() >= maxFrames) return;
+
+				// Copy the frame in case the reader reuses its buffer
+				BufferedImage image = event.getImage();
+				BufferedImage frame = new BufferedImage(image.getWidth(), image.getHeight(),
+						BufferedImage.TYPE_3BYTE_BGR);
+				frame.setData(image.getRaster());
+				frames.add(frame);
+			}
+		});
+
+		while (frames.size() < maxFrames && reader.readPacket() == null);
+		if (reader.isOpen()) reader.close();
+
+		if (frames.isEmpty()) throw new IllegalStateException("No frames decoded from " + resource);
+
+		List<BufferedImage> decoded = Collections.unmodifiableList(frames);
+		decodedVideos.put(key, decoded);
+		return decoded;
+	}
+}
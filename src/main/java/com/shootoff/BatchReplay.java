@@ -0,0 +1,273 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.VideoReplay;
+
+/**
+ * Headless entry point that re-scores a directory of recorded .mp4 sessions.
+ * Videos are replayed through shot detection on a pool of worker threads
+ * without starting JavaFX. The shots found in each video are written to their
+ * own CSV or JSON file, and a summary file records the throughput of every
+ * video and of the whole batch.
+ */
+public class BatchReplay {
+	public enum Format { CSV, JSON }
+
+	private final File outputDir;
+	private final int threads;
+	private final Format format;
+	private final int historySize;
+
+	public BatchReplay(File outputDir, int threads, Format format, int historySize) {
+		this.outputDir = outputDir;
+		this.threads = threads;
+		this.format = format;
+		this.historySize = historySize;
+	}
+
+	/**
+	 * Replay every video and write the results.
+	 *
+	 * @return the number of videos that could not be replayed
+	 */
+	public int run(List<File> videos) throws IOException, InterruptedException {
+		if (!outputDir.isDirectory() && !outputDir.mkdirs())
+			throw new IOException("Cannot create output directory " + outputDir.getPath());
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<VideoReplay.Result>> futures = new ArrayList<Future<VideoReplay.Result>>();
+		long start = System.nanoTime();
+
+		for (File video : videos) futures.add(pool.submit(new VideoReplay(video, historySize)));
+		pool.shutdown();
+
+		List<VideoReplay.Result> results = new ArrayList<VideoReplay.Result>();
+		int failures = 0;
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				VideoReplay.Result result = futures.get(i).get();
+				results.add(result);
+
+				try (Writer writer = new FileWriter(new File(outputDir, resultName(result.getVideoFile())))) {
+					if (format == Format.JSON) {
+						writeShotsJson(result, writer);
+					} else {
+						writeShotsCsv(result, writer);
+					}
+				}
+
+				System.out.println(String.format(Locale.ROOT, "%s: %d shots in %d frames, %.1f FPS",
+						result.getVideoFile().getName(), result.getShots().size(), result.getFrameCount(),
+						result.getFramesPerSecond()));
+			} catch (ExecutionException e) {
+				failures++;
+				System.err.println(String.format("%s: replay failed: %s", videos.get(i).getName(), e.getCause()));
+			}
+		}
+
+		long elapsedTime = System.nanoTime() - start;
+
+		String summaryName = format == Format.JSON ? "summary.json" : "summary.csv";
+		try (Writer writer = new FileWriter(new File(outputDir, summaryName))) {
+			if (format == Format.JSON) {
+				writeSummaryJson(results, elapsedTime, threads, writer);
+			} else {
+				writeSummaryCsv(results, elapsedTime, writer);
+			}
+		}
+
+		int totalFrames = 0;
+		for (VideoReplay.Result result : results) totalFrames += result.getFrameCount();
+		System.out.println(String.format(Locale.ROOT, "Replayed %d videos (%d frames) in %.1f s on %d threads: %.1f FPS",
+				results.size(), totalFrames, elapsedTime / (double)TimeUnit.SECONDS.toNanos(1), threads,
+				framesPerSecond(totalFrames, elapsedTime)));
+
+		return failures;
+	}
+
+	private String resultName(File videoFile) {
+		String name = videoFile.getName();
+		int extension = name.lastIndexOf('.');
+		if (extension > 0) name = name.substring(0, extension);
+
+		return name + (format == Format.JSON ? ".json" : ".csv");
+	}
+
+	private static double framesPerSecond(long frames, long elapsedTime) {
+		return elapsedTime > 0 ? frames / (elapsedTime / (double)TimeUnit.SECONDS.toNanos(1)) : 0;
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static String csvQuote(String value) {
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	public static void writeShotsCsv(VideoReplay.Result result, Writer writer) throws IOException {
+		writer.write("frame,timestamp_ms,x,y,strength\n");
+
+		for (VideoReplay.ReplayedShot shot : result.getShots()) {
+			writer.write(String.format(Locale.ROOT, "%d,%d,%d,%d,%d\n", shot.getFrame(), shot.getTimestamp(),
+					shot.getX(), shot.getY(), shot.getStrength()));
+		}
+	}
+
+	public static void writeShotsJson(VideoReplay.Result result, Writer writer) throws IOException {
+		writer.write(String.format(Locale.ROOT,
+				"{\"video\": %s, \"frames\": %d, \"elapsed_ms\": %d, \"detection_ms\": %d, \"fps\": %.2f, \"shots\": [",
+				quote(result.getVideoFile().getName()), result.getFrameCount(), toMillis(result.getElapsedTime()),
+				toMillis(result.getDetectionTime()), result.getFramesPerSecond()));
+
+		List<VideoReplay.ReplayedShot> shots = result.getShots();
+		for (int i = 0; i < shots.size(); i++) {
+			VideoReplay.ReplayedShot shot = shots.get(i);
+
+			if (i > 0) writer.write(",");
+			writer.write(String.format(Locale.ROOT,
+					"\n  {\"frame\": %d, \"timestamp_ms\": %d, \"x\": %d, \"y\": %d, \"strength\": %d}",
+					shot.getFrame(), shot.getTimestamp(), shot.getX(), shot.getY(), shot.getStrength()));
+		}
+
+		writer.write(shots.isEmpty() ? "]}\n" : "\n]}\n");
+	}
+
+	public static void writeSummaryCsv(List<VideoReplay.Result> results, long elapsedTime, Writer writer)
+			throws IOException {
+		writer.write("video,frames,shots,elapsed_ms,detection_ms,fps\n");
+
+		long totalFrames = 0;
+		long totalShots = 0;
+		long totalDetection = 0;
+
+		for (VideoReplay.Result result : results) {
+			writer.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.2f\n", csvQuote(result.getVideoFile().getName()),
+					result.getFrameCount(), result.getShots().size(), toMillis(result.getElapsedTime()),
+					toMillis(result.getDetectionTime()), result.getFramesPerSecond()));
+
+			totalFrames += result.getFrameCount();
+			totalShots += result.getShots().size();
+			totalDetection += result.getDetectionTime();
+		}
+
+		writer.write(String.format(Locale.ROOT, "total,%d,%d,%d,%d,%.2f\n", totalFrames, totalShots,
+				toMillis(elapsedTime), toMillis(totalDetection), framesPerSecond(totalFrames, elapsedTime)));
+	}
+
+	public static void writeSummaryJson(List<VideoReplay.Result> results, long elapsedTime, int threads,
+			Writer writer) throws IOException {
+		long totalFrames = 0;
+		long totalShots = 0;
+
+		writer.write("{\"videos\": [");
+
+		for (int i = 0; i < results.size(); i++) {
+			VideoReplay.Result result = results.get(i);
+
+			if (i > 0) writer.write(",");
+			writer.write(String.format(Locale.ROOT,
+					"\n  {\"video\": %s, \"frames\": %d, \"shots\": %d, \"elapsed_ms\": %d, \"detection_ms\": %d, \"fps\": %.2f}",
+					quote(result.getVideoFile().getName()), result.getFrameCount(), result.getShots().size(),
+					toMillis(result.getElapsedTime()), toMillis(result.getDetectionTime()),
+					result.getFramesPerSecond()));
+
+			totalFrames += result.getFrameCount();
+			totalShots += result.getShots().size();
+		}
+
+		writer.write(String.format(Locale.ROOT,
+				"%s],\n\"total\": {\"videos\": %d, \"frames\": %d, \"shots\": %d, \"elapsed_ms\": %d, \"threads\": %d, \"fps\": %.2f}}\n",
+				results.isEmpty() ? "" : "\n", results.size(), totalFrames, totalShots, toMillis(elapsedTime), threads,
+				framesPerSecond(totalFrames, elapsedTime)));
+	}
+
+	public static void main(String[] args) {
+		Options options = new Options();
+
+		options.addOption("i", "input", true, "directory of .mp4 recordings to replay");
+		options.addOption("o", "output", true, "directory the results are written to, defaults to replay-results");
+		options.addOption("t", "threads", true, "number of videos replayed at once, defaults to the number of cores");
+		options.addOption("f", "format", true, "format of the result files, csv (default) or json");
+		options.addOption("s", "history-size", true,
+				String.format("number of frames in the detection background model, defaults to %d",
+						CameraManager.HISTORY_SIZE));
+
+		HelpFormatter formatter = new HelpFormatter();
+
+		try {
+			CommandLineParser parser = new DefaultParser();
+			CommandLine cmd = parser.parse(options, args);
+
+			if (!cmd.hasOption("i")) throw new ParseException("Missing required option: i");
+
+			File inputDir = new File(cmd.getOptionValue("i"));
+			File outputDir = new File(cmd.getOptionValue("o", "replay-results"));
+			int threads = Integer.parseInt(cmd.getOptionValue("t",
+					String.valueOf(Runtime.getRuntime().availableProcessors())));
+			Format format = Format.valueOf(cmd.getOptionValue("f", "csv").toUpperCase(Locale.ROOT));
+			int historySize = Integer.parseInt(cmd.getOptionValue("s", String.valueOf(CameraManager.HISTORY_SIZE)));
+
+			if (threads < 1) throw new ParseException("threads must be at least 1");
+			if (historySize < 1) throw new ParseException("history-size must be at least 1");
+
+			File[] videos = inputDir.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".mp4"));
+			if (videos == null) throw new ParseException(inputDir.getPath() + " is not a directory");
+			Arrays.sort(videos);
+
+			int failures = new BatchReplay(outputDir, threads, format, historySize).run(Arrays.asList(videos));
+			System.exit(failures > 0 ? 1 : 0);
+		} catch (ParseException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			formatter.printHelp("com.shootoff.BatchReplay", options);
+			System.exit(-1);
+		} catch (IOException | InterruptedException e) {
+			System.err.println(e.getMessage());
+			System.exit(-1);
+		}
+	}
+}
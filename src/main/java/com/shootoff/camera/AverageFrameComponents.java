@@ -0,0 +1,91 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The average brightness and red component of the latest frame. One instance
+ * is reused for every frame from a camera, so updating it does not allocate
+ * once its pixel buffer has grown to the size of the frames.
+ */
+public class AverageFrameComponents {
+	private int[] pixels;
+	private float averageLum;
+	private float averageRed;
+
+	/**
+	 * Average the pixels of <tt>frame</tt> inside the given bounds, feeding each
+	 * of them to <tt>pixelTransformer</tt>. The averages are taken over the whole
+	 * frame even when the bounds only cover part of it.
+	 */
+	public void update(BufferedImage frame, int minX, int minY, int maxX, int maxY,
+			PixelTransformer pixelTransformer) {
+		final int width = maxX - minX;
+		final int height = maxY - minY;
+
+		long totalLum = 0;
+		long totalRed = 0;
+
+		// Size the filter once instead of growing it a row at a time
+		pixelTransformer.setFrameSize(frame.getWidth(), frame.getHeight());
+
+		if (width > 0 && height > 0) {
+			pixels = PackedRaster.readRGB(frame, minX, minY, width, height, pixels);
+
+			for (int y = 0, rowStart = 0; y < height; y++, rowStart += width) {
+				for (int i = rowStart; i < rowStart + width; i++) {
+					int red = (pixels[i] >> 16) & 0xFF;
+					int green = (pixels[i] >> 8) & 0xFF;
+					int blue = pixels[i] & 0xFF;
+
+					totalLum += (red + red + red +
+							blue +
+							green + green + green + green) >> 3;
+					totalRed += red;
+				}
+
+				pixelTransformer.updateFilter(minY + y, minX, maxX, pixels, rowStart);
+			}
+		}
+
+		float totalPixels = (float)(frame.getWidth() * frame.getHeight());
+
+		averageLum = (float)(totalLum) / totalPixels;
+		averageRed = (float)(totalRed) / totalPixels;
+	}
+
+	public float getAverageLum() {
+		return averageLum;
+	}
+
+	public float getAverageRed() {
+		return averageRed;
+	}
+
+	public LightingCondition getLightingCondition() {
+		if (averageLum > CameraManager.LIGHTING_CONDITION_VERY_BRIGHT_THRESHOLD) {
+			return LightingCondition.VERY_BRIGHT;
+		} else if (averageLum > CameraManager.LIGHTING_CONDITION__BRIGHT_THRESHOLD) {
+			return LightingCondition.BRIGHT;
+		} else {
+			return LightingCondition.DARK;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+/**
+ * Tracks, for every pixel, the brightest value each color channel had over
+ * the last <tt>historySize</tt> frames. Shots are found by comparing the
+ * current frame against this background.
+ *
+ * The sliding maximum is maintained with the van Herk/Gil-Werman scheme
+ * applied over time: frames are grouped into blocks of <tt>historySize</tt>.
+ * For the block being filled we keep a running (prefix) maximum, and when a
+ * block completes its frames are folded in place into suffix maxima. The
+ * maximum over the last <tt>historySize</tt> frames is then always the max of
+ * one suffix slot from the previous block and the running prefix of the current
+ * block. Each frame costs one query and one update per pixel, plus the suffix
+ * fold that happens once per block, so the amortized cost per frame does not
+ * grow with the window length.
+ *
+ * Pixels are packed 0xRRGGBB ints in row-major order.
+ */
+public class BackgroundModel {
+	private final int width;
+	private final int historySize;
+
+	// Slot k holds the suffix maximum of the previous block until frame k of the
+	// current block is added, at which point it holds that raw frame
+	private final int[][] slots;
+	private final int[] prefix;
+	private int position = 0;
+	private boolean ready = false;
+
+	public BackgroundModel(int width, int height, int historySize) {
+		if (historySize < 1) throw new IllegalArgumentException("historySize must be at least 1");
+
+		this.width = width;
+		this.historySize = historySize;
+
+		slots = new int[historySize][width * height];
+		prefix = new int[width * height];
+	}
+
+	public int getHistorySize() {
+		return historySize;
+	}
+
+	/**
+	 * @return <tt>true</tt> once <tt>historySize</tt> frames have been added.
+	 * 		   Before that the missing frames count as black.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @param index	y * width + x
+	 * @return the packed per-channel maximum at <tt>index</tt> over the last
+	 * 		   <tt>historySize</tt> frames
+	 */
+	public int getMax(int index) {
+		if (position == 0) return slots[0][index];
+
+		return maxRGB(slots[position][index], prefix[index]);
+	}
+
+	/**
+	 * Add a frame to the history.
+	 *
+	 * @param pixels		packed frame pixels
+	 * @param frameWidth	number of columns to copy, at most the model's width
+	 * @param frameHeight	number of rows to copy, at most the model's height
+	 * @param stride		distance between rows in <tt>pixels</tt>
+	 */
+	public void update(int[] pixels, int frameWidth, int frameHeight, int stride) {
+		updateRows(pixels, frameWidth, 0, frameHeight, stride);
+		advance();
+	}
+
+	/**
+	 * Add rows <tt>startY</tt> (inclusive) to <tt>endY</tt> (exclusive) of a
+	 * frame to the history without moving on to the next frame. Disjoint row
+	 * ranges of the same frame may be added concurrently. Once every row of the
+	 * frame has been added, {@link #advance()} must be called.
+	 */
+	public void updateRows(int[] pixels, int frameWidth, int startY, int endY, int stride) {
+		final int[] slot = slots[position];
+		final boolean startingBlock = position == 0;
+
+		for (int y = startY; y < endY; y++) {
+			int src = y * stride;
+			int dst = y * width;
+
+			for (int x = 0; x < frameWidth; x++, src++, dst++) {
+				final int pixel = pixels[src];
+				slot[dst] = pixel;
+				prefix[dst] = startingBlock ? pixel : maxRGB(prefix[dst], pixel);
+			}
+		}
+
+		if (position == historySize - 1) {
+			// This frame completes the block, so fold these rows of the block into
+			// suffix maxima for the next block to use
+			final int start = startY * width;
+			final int end = endY * width;
+
+			for (int k = historySize - 2; k >= 0; k--) {
+				final int[] current = slots[k];
+				final int[] next = slots[k + 1];
+
+				for (int i = start; i < end; i++) {
+					current[i] = maxRGB(current[i], next[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add columns <tt>startX</tt> (inclusive) to <tt>endX</tt> (exclusive) of row
+	 * <tt>y</tt> of a frame to the history without moving on to the next frame.
+	 * Pixels that are skipped keep whatever history they had, so they should not
+	 * be read until they have been added for <tt>historySize</tt> frames in a row.
+	 *
+	 * @see #updateRows(int[], int, int, int, int)
+	 */
+	public void updateSpan(int[] pixels, int y, int startX, int endX, int stride) {
+		final int[] slot = slots[position];
+		final boolean startingBlock = position == 0;
+		final int start = y * width + startX;
+		final int end = y * width + endX;
+
+		for (int src = y * stride + startX, dst = start; dst < end; src++, dst++) {
+			final int pixel = pixels[src];
+			slot[dst] = pixel;
+			prefix[dst] = startingBlock ? pixel : maxRGB(prefix[dst], pixel);
+		}
+
+		if (position == historySize - 1) {
+			for (int k = historySize - 2; k >= 0; k--) {
+				final int[] current = slots[k];
+				final int[] next = slots[k + 1];
+
+				for (int i = start; i < end; i++) {
+					current[i] = maxRGB(current[i], next[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finish adding the current frame.
+	 */
+	public void advance() {
+		position++;
+
+		if (position == historySize) {
+			position = 0;
+			ready = true;
+		}
+	}
+
+	public static int maxRGB(int a, int b) {
+		return Math.max(a & 0xFF0000, b & 0xFF0000) |
+				Math.max(a & 0x00FF00, b & 0x00FF00) |
+				Math.max(a & 0x0000FF, b & 0x0000FF);
+	}
+}
@@ -24,41 +24,76 @@ import java.awt.image.BufferedImage;
 public class BrightnessPixelTransformer implements PixelTransformer {
 	private final static int BRIGHTNESS_INDEX = 2;
 	
-	private final BufferedImage colorMovingAverage = new BufferedImage(CameraManager.FEED_WIDTH,
-			CameraManager.FEED_HEIGHT, BufferedImage.TYPE_INT_RGB);
-	private final int[][] lumsMovingAverage = new int[CameraManager.FEED_HEIGHT][CameraManager.FEED_WIDTH];
+	// Sized for the largest frame seen so far, starting with the feed size
+	private int width = CameraManager.FEED_WIDTH;
+	private int height = CameraManager.FEED_HEIGHT;
+	// Packed 0xRRGGBB moving averages in row-major order
+	private int[] colorMovingAverage = new int[width * height];
+	private int[][] lumsMovingAverage = new int[height][width];
+
+	@Override
+	public void setFrameSize(int frameWidth, int frameHeight) {
+		if (frameWidth > width || frameHeight > height) resize(frameWidth, frameHeight);
+	}
 	
+	// Pixels outside the frame size that was set grow the averages too, but a
+	// row or column at a time
 	public void updateFilter(int x, int y, Color c) {
-		int currentLum = calcLums(c);
-		
-        if (lumsMovingAverage[y][x] == 0)
-        {
-            lumsMovingAverage[y][x] = currentLum;
-            colorMovingAverage.setRGB(x,y, c.getRGB());
+		if (x >= width || y >= height) resize(x + 1, y + 1);
+
+		updatePixel(x, y, c.getRGB() & 0x00FFFFFF);
+	}
+
+	public void updateFilter(int y, int minX, int maxX, int[] scanline, int offset) {
+		if (maxX > width || y >= height) resize(maxX, y + 1);
+
+		for (int x = minX, i = offset; x < maxX; x++, i++) {
+			updatePixel(x, y, scanline[i]);
+		}
+	}
+
+	// The moving averages start over for larger frames
+	private void resize(int minWidth, int minHeight) {
+		width = Math.max(width, minWidth);
+		height = Math.max(height, minHeight);
+		colorMovingAverage = new int[width * height];
+		lumsMovingAverage = new int[height][width];
+	}
+
+	private void updatePixel(int x, int y, int rgb) {
+		int red = (rgb >> 16) & 0xFF;
+		int green = (rgb >> 8) & 0xFF;
+		int blue = rgb & 0xFF;
+		int currentLum = calcLums(red, green, blue);
+		int index = y * width + x;
+
+		if (lumsMovingAverage[y][x] == 0)
+		{
+			lumsMovingAverage[y][x] = currentLum;
+			colorMovingAverage[index] = rgb;
+
+			return;
+		}
 
-            return;
-        }
-        
-        // Update the average brightness
-        lumsMovingAverage[y][x] = ((lumsMovingAverage[y][x] * (CameraManager.INIT_FRAME_COUNT-1)) + currentLum) / CameraManager.INIT_FRAME_COUNT;
+		// Update the average brightness
+		lumsMovingAverage[y][x] = ((lumsMovingAverage[y][x] * (CameraManager.INIT_FRAME_COUNT-1)) + currentLum) / CameraManager.INIT_FRAME_COUNT;
 
 		// Update the average color
-		Color maC = new Color(colorMovingAverage.getRGB(x,y));
-		int averageRed = ((maC.getRed() * (CameraManager.INIT_FRAME_COUNT-1)) + c.getRed()) / 
+		int maC = colorMovingAverage[index];
+		int averageRed = ((((maC >> 16) & 0xFF) * (CameraManager.INIT_FRAME_COUNT-1)) + red) / 
 				CameraManager.INIT_FRAME_COUNT;
-		int averageGreen = ((maC.getGreen() * (CameraManager.INIT_FRAME_COUNT-1)) + c.getGreen()) / 
+		int averageGreen = ((((maC >> 8) & 0xFF) * (CameraManager.INIT_FRAME_COUNT-1)) + green) / 
 				CameraManager.INIT_FRAME_COUNT;
-		int averageBlue = ((maC.getBlue() * (CameraManager.INIT_FRAME_COUNT-1)) + c.getBlue()) / 
+		int averageBlue = (((maC & 0xFF) * (CameraManager.INIT_FRAME_COUNT-1)) + blue) / 
 				CameraManager.INIT_FRAME_COUNT;
 
-		Color newAverage = new Color(averageRed, averageGreen, averageBlue);
-		colorMovingAverage.setRGB(x, y, newAverage.getRGB());
+		colorMovingAverage[index] = (averageRed << 16) | (averageGreen << 8) | averageBlue;
 	}
 
-	private int calcLums(Color c) {
-		return (c.getRed() + c.getRed() + c.getRed() +
-				c.getBlue() +
-				c.getGreen() + c.getGreen() + c.getGreen() + c.getGreen()) >> 3;
+	private int calcLums(int red, int green, int blue) {
+		return (red + red + red +
+				blue +
+				green + green + green + green) >> 3;
 	}
 	
 	private boolean isRedBrighter(Color currentC, Color averageC, LightingCondition lightCondition) {
@@ -102,14 +137,15 @@ public class BrightnessPixelTransformer implements PixelTransformer {
 		int maLum = lumsMovingAverage[y][x];
 
 		Color currentC = new Color(frame.getRGB(x, y));
+		Color averageC = new Color(colorMovingAverage[y * width + x]);
 
 		// We only care about dimming pixels that are brighter than average
 		 if (maLum > CameraManager.IDEAL_LUM) {
 			 // If the current pixels is brighter than normal and it's not because
 			 // red grew by quit a bit, dim the pixel. If it is brighter and red
 			 // grew by quite a bit it might be a shot
-			 if (!isRedBrighter(currentC, new Color(colorMovingAverage.getRGB(x, y)), lightCondition) && 
-					 !isGreenBrighter(currentC, new Color(colorMovingAverage.getRGB(x, y)), lightCondition)) {
+			 if (!isRedBrighter(currentC, averageC, lightCondition) && 
+					 !isGreenBrighter(currentC, averageC, lightCondition)) {
                     float[] hsbvals = Color.RGBtoHSB(currentC.getRed(), currentC.getGreen(), currentC.getBlue(), null);
                     hsbvals[BRIGHTNESS_INDEX] *= CameraManager.IDEAL_LUM / (float)maLum;
                     frame.setRGB(x, y, Color.HSBtoRGB(hsbvals[0], hsbvals[1], hsbvals[2]));
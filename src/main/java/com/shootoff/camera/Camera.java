@@ -58,12 +58,19 @@ public class Camera {
 		}
 	}
 	
-	private Webcam webcam;
+	private final FrameSource source;
 	
 	private Camera(Webcam webcam) {
-		this.webcam = webcam;
+		this(new WebcamFrameSource(webcam));
 	}
 	
+	/**
+	 * Create a camera that gets its frames from <tt>source</tt> instead of a
+	 * webcam, e.g. a video file or a frame generator.
+	 */
+	public Camera(FrameSource source) {
+		this.source = source;
+	}
 	
 	public static Camera getDefault() {
 		if (isMac) {
@@ -91,44 +98,80 @@ public class Camera {
 		return webcams;
 	}
 	
+	public FrameSource getFrameSource() {
+		return source;
+	}
+	
+	public boolean isWebcam() {
+		return source instanceof WebcamFrameSource;
+	}
+	
 	public BufferedImage getImage() {
-		return webcam.getImage();
+		return source.getImage();
+	}
+	
+	/**
+	 * @see FrameSource#getImage(FramePool)
+	 */
+	public BufferedImage getImage(FramePool pool) {
+		return source.getImage(pool);
 	}
 	
 	public boolean open() {
-		return webcam.open();
+		return source.open();
+	}
+	
+	/**
+	 * @see FrameSource#openStreaming()
+	 */
+	public boolean openStreaming() {
+		return source.openStreaming();
+	}
+	
+	/**
+	 * @see FrameSource#awaitImage(long)
+	 */
+	public boolean awaitImage(long timeout) throws InterruptedException {
+		return source.awaitImage(timeout);
 	}
 	
 	public boolean close() {
-		if (isMac) {
-			new Thread(() -> { webcam.close(); }).start();
+		if (isMac && isWebcam()) {
+			new Thread(() -> { source.close(); }).start();
 			return true;
 		} else {
-			return webcam.close();
+			return source.close();
 		}
 	}
 	
 	public String getName() {
-		return webcam.getName();
+		return source.getName();
 	}
 	
 	public boolean isOpen() {
-		return webcam.isOpen();
+		return source.isOpen();
 	}
 	
 	public boolean isLocked() {
-		return webcam.getLock().isLocked();
+		return source.isLocked();
 	}
 	
 	public boolean isImageNew() {
-		return webcam.isImageNew();
+		return source.isImageNew();
 	}
 	
 	public double getFPS() {
-		return webcam.getFPS();
+		return source.getFPS();
+	}
+	
+	/**
+	 * @see FrameSource#getViewSizes()
+	 */
+	public Dimension[] getViewSizes() {
+		return source.getViewSizes();
 	}
 	
 	public void setViewSize(Dimension size) {
-		webcam.setViewSize(size);
+		source.setViewSize(size);
 	}
 }
@@ -0,0 +1,79 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reusable slot in a {@link FramePipeline} that carries one captured frame
+ * through the pipeline's stages. Every stage a frame is handed to holds a
+ * reference to it, and the slot goes back to the pipeline, and its image to the
+ * pipeline's frame pool, once the last reference is released. Stages must not
+ * modify the image because other stages may be reading it at the same time.
+ */
+public class CameraFrame {
+	private final FramePipeline pipeline;
+	private final AtomicInteger references = new AtomicInteger(0);
+
+	private BufferedImage image;
+	private long sequence;
+	private long captureTime;
+
+	protected CameraFrame(FramePipeline pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	protected void set(BufferedImage image, long sequence) {
+		this.image = image;
+		this.sequence = sequence;
+		this.captureTime = System.nanoTime();
+		references.set(1);
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @return the number of frames captured before this one
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the System.nanoTime() at which the frame entered the pipeline
+	 */
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	protected void retain() {
+		references.incrementAndGet();
+	}
+
+	protected void release() {
+		if (references.decrementAndGet() == 0) {
+			final BufferedImage released = image;
+			image = null;
+			pipeline.recycle(this, released);
+		}
+	}
+}
@@ -20,12 +20,13 @@ package com.shootoff.camera;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,17 +34,7 @@ import org.slf4j.LoggerFactory;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.CanvasManager;
 import com.shootoff.gui.DebuggerListener;
-import com.xuggle.mediatool.IMediaReader;
-import com.xuggle.mediatool.IMediaWriter;
-import com.xuggle.mediatool.MediaListenerAdapter;
-import com.xuggle.mediatool.ToolFactory;
-import com.xuggle.mediatool.event.ICloseEvent;
-import com.xuggle.mediatool.event.IVideoPictureEvent;
-import com.xuggle.xuggler.ICodec;
-import com.xuggle.xuggler.IPixelFormat;
-import com.xuggle.xuggler.IVideoPicture;
-import com.xuggle.xuggler.video.ConverterFactory;
-import com.xuggle.xuggler.video.IConverter;
+import com.shootoff.gui.DetectionRateListener;
 
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
@@ -61,6 +52,19 @@ public class CameraManager {
 	public static final int FEED_WIDTH = 640;
 	public static final int FEED_HEIGHT = 480;
 	public static final int MIN_SHOT_DETECTION_FPS = 5;
+	// Detection must see every frame, so its queue only needs to absorb short
+	// hiccups. The preview only cares about the newest frame.
+	public static final int DETECTION_QUEUE_SIZE = 4;
+	public static final int PREVIEW_QUEUE_SIZE = 1;
+	// Live frames that wait this long for a detection worker are skipped
+	public static final long STALE_FRAME_AGE = 500; // ms
+	// How long the capture thread sleeps waiting for a frame before it checks
+	// whether the webcam is still there
+	public static final long FRAME_WAIT_TIMEOUT = 1000; // ms
+	// How often the stream debugger's latency percentiles are refreshed
+	public static final long LATENCY_UPDATE_INTERVAL = 1000; // ms
+	// How often the share of frames that go through detection is reconsidered
+	public static final long DETECTION_RATE_UPDATE_INTERVAL = 1000; // ms
 
 	// These thresholds were calculated using all of the test videos
 	public static final int LIGHTING_CONDITION_VERY_BRIGHT_THRESHOLD = 130;
@@ -74,44 +78,55 @@ public class CameraManager {
 	public static final int INIT_FRAME_COUNT = 5; // Used by current pixel transformer to decide how many frames
 												  // to use for initialization
 
-	private final PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
-
 	private final Logger logger = LoggerFactory.getLogger(CameraManager.class);
 	private final Optional<Camera> webcam;
 	private final Object processingLock;
 	private boolean processedVideo = false;
 	private final CanvasManager canvasManager;
 	private final Configuration config;
-	private Optional<Bounds> projectionBounds = Optional.empty();
-
-	private boolean isStreaming = true;
-	private boolean isDetecting = true;
-	private boolean cropFeedToProjection = false;
-	private boolean limitDetectProjection = false;
+	private final Optional<DetectionScheduler> detectionScheduler;
+	private final ShotLatency shotLatency;
+	private final FrameDetector frameDetector;
+	private final FramePool framePool = new FramePool();
+	private final RateMeter previewRate = new RateMeter();
+	private final RateMeter detectionRate = new RateMeter();
+
+	private volatile boolean isStreaming = true;
+	private volatile boolean isPreviewVisible = true;
 	private Optional<Integer> centerApproxBorderSize = Optional.empty();
 	private Optional<Integer> minimumShotDimension = Optional.empty();
 	private Optional<DebuggerListener> debuggerListener = Optional.empty();
+	private Optional<DetectionRateListener> detectionRateListener = Optional.empty();
 
-	private boolean recording = false;
-	private boolean isFirstFrame = true;
-	private IMediaWriter videoWriter;
-	private long recordingStartTime;
-	private boolean[][] sectorStatuses;
+	private volatile Optional<VideoRecorder> videoRecorder = Optional.empty();
+	// The size of the camera's frames, which recordings are made at
+	private volatile Dimension frameSize = new Dimension(FEED_WIDTH, FEED_HEIGHT);
+	private FramePipeline framePipeline;
 
-	protected CameraManager(Camera webcam, CanvasManager canvas, Configuration config) {
+	protected CameraManager(Camera webcam, CanvasManager canvas, Configuration config,
+			DetectionScheduler detectionScheduler) {
 		this.webcam = Optional.of(webcam);
 		processingLock = null;
 		this.canvasManager = canvas;
 		this.config = config;
+		this.detectionScheduler = Optional.of(detectionScheduler);
+		this.shotLatency = new ShotLatency(webcam.getName());
+		this.frameDetector = new FrameDetector(config.getHistorySize());
+		canvas.setShotLatency(shotLatency);
 
 		init(new Detector());
 	}
 
-	protected CameraManager(File videoFile, CanvasManager canvas, Configuration config) {
+	protected CameraManager(File videoFile, CanvasManager canvas, Configuration config,
+			DetectionScheduler detectionScheduler) {
 		this.webcam = Optional.empty();
 		processingLock = null;
 		this.canvasManager = canvas;
 		this.config = config;
+		this.detectionScheduler = Optional.of(detectionScheduler);
+		this.shotLatency = new ShotLatency(videoFile.getName());
+		this.frameDetector = new FrameDetector(config.getHistorySize());
+		canvas.setShotLatency(shotLatency);
 
 		init(new Detector(videoFile));
 
@@ -123,43 +138,34 @@ public class CameraManager {
 		this.processingLock = processingLock;
 		this.canvasManager = canvas;
 		this.config = config;
+		this.detectionScheduler = Optional.empty();
+		this.shotLatency = new ShotLatency(videoFile.getName());
+		this.frameDetector = new FrameDetector(config.getHistorySize());
+		canvas.setShotLatency(shotLatency);
 
 		if (projectionBounds.isPresent()) {
 			setLimitDetectProjection(true);
 			setProjectionBounds(projectionBounds.get());
 		}
 
-		Detector detector = new Detector();
-
-	    IMediaReader reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
-	    reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
-	    reader.addListener(detector);
+		Detector detector = new Detector(videoFile);
 
-	    setSectorStatuses(sectorStatuses);
+		setSectorStatuses(sectorStatuses);
 
-	    while (reader.readPacket() == null)
-	      do {} while(false);
+		// The video is detected before the constructor returns
+		detector.run();
 	}
 
 	private void init(Detector detector) {
-		sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
-
-		// Turn on all shot sectors by default
-		for (int x = 0; x < ShotSearcher.SECTOR_COLUMNS; x++) {
-			for (int y = 0; y < ShotSearcher.SECTOR_ROWS; y++) {
-				sectorStatuses[y][x] = true;
-			}
-		}
-
 		new Thread(detector).start();
 	}
 
 	public boolean[][] getSectorStatuses() {
-		return sectorStatuses;
+		return frameDetector.getSectorStatuses();
 	}
 
 	public void setSectorStatuses(boolean[][] sectorStatuses) {
-		this.sectorStatuses = sectorStatuses;
+		frameDetector.setSectorStatuses(sectorStatuses);
 	}
 
 	public void clearShots() {
@@ -172,7 +178,9 @@ public class CameraManager {
 
 	public void close() {
 		if (webcam.isPresent()) webcam.get().close();
-		if (recording) stopRecording();
+		stopRecording();
+		// Frees a capture thread waiting on a full detection queue
+		if (framePipeline != null) framePipeline.stop();
 	}
 
 	public void setStreaming(boolean isStreaming) {
@@ -180,34 +188,73 @@ public class CameraManager {
 	}
 
 	public void setDetecting(boolean isDetecting) {
-		this.isDetecting = isDetecting;
+		frameDetector.setDetecting(isDetecting);
+	}
+
+	/**
+	 * Tell the camera whether its preview can currently be seen. A hidden
+	 * preview stops being updated unless the configuration says otherwise.
+	 * Detection carries on either way.
+	 */
+	public void setPreviewVisible(boolean isPreviewVisible) {
+		this.isPreviewVisible = isPreviewVisible;
+	}
+
+	/**
+	 * @return the number of frames per second the preview is actually showing
+	 */
+	public double getPreviewFPS() {
+		return previewRate.getRate();
+	}
+
+	/**
+	 * @return the number of frames per second detection is actually processing
+	 */
+	public double getDetectionFPS() {
+		return detectionRate.getRate();
 	}
 
 	public void setProjectionBounds(Bounds projectionBounds) {
-		this.projectionBounds = Optional.ofNullable(projectionBounds);
+		frameDetector.setProjectionBounds(projectionBounds);
 	}
 
 	public void setCropFeedToProjection(boolean cropFeed) {
-		cropFeedToProjection = cropFeed;
+		frameDetector.setCropFeedToProjection(cropFeed);
 	}
 
 	public void setLimitDetectProjection(boolean limitDetection) {
-		limitDetectProjection = limitDetection;
+		frameDetector.setLimitDetectProjection(limitDetection);
 	}
 
 	public void startRecording(File videoFile) {
 		logger.debug("Writing Video Feed To: {}", videoFile.getAbsoluteFile());
-		videoWriter = ToolFactory.makeWriter(videoFile.getName());
-		videoWriter.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, FEED_WIDTH, FEED_HEIGHT);
-		recordingStartTime = System.currentTimeMillis();
-		isFirstFrame = true;
+		stopRecording();
 
-		recording = true;
+		String name = webcam.isPresent() ? webcam.get().getName() : videoFile.getName();
+		final Dimension size = frameSize;
+		VideoRecorder recorder = new VideoRecorder(name, videoFile, size.width, size.height, framePool);
+		recorder.start();
+		videoRecorder = Optional.of(recorder);
 	}
 
+	/**
+	 * Stop recording. The encoder finishes the frames it already has in the
+	 * background, so this does not wait for the video to be written.
+	 */
 	public void stopRecording() {
-		recording = false;
-		videoWriter.close();
+		if (videoRecorder.isPresent()) {
+			videoRecorder.get().stop();
+			videoRecorder = Optional.empty();
+		}
+	}
+
+	/**
+	 * @return the recording in progress, which exposes how many frames were
+	 * 			recorded and how many were dropped because the encoder fell
+	 * 			behind
+	 */
+	public Optional<VideoRecorder> getVideoRecorder() {
+		return videoRecorder;
 	}
 
 	public Image getCurrentFrame() {
@@ -222,6 +269,30 @@ public class CameraManager {
 		return canvasManager;
 	}
 
+	/**
+	 * @return the pipeline that hands frames from this camera to the detection
+	 * 			and preview stages, which exposes each stage's queue depth and
+	 * 			dropped frames
+	 */
+	public FramePipeline getFramePipeline() {
+		return framePipeline;
+	}
+
+	/**
+	 * @return the number of frames this camera delivered that were identical to
+	 * 			the frame before them and were therefore skipped
+	 */
+	public long getDuplicateFrames() {
+		return frameDetector.getDuplicateFrames();
+	}
+
+	/**
+	 * @return the latency histograms for shots detected by this camera
+	 */
+	public ShotLatency getShotLatency() {
+		return shotLatency;
+	}
+
 	public boolean isVideoProcessed() {
 		return processedVideo;
 	}
@@ -240,42 +311,57 @@ public class CameraManager {
 		this.debuggerListener = Optional.ofNullable(thresholdListener);
 	}
 
-	private class Detector extends MediaListenerAdapter implements Runnable {
-		private boolean showedFPSWarning = false;
-		private boolean pixelTransformerInitialized = false;
-		private int seenFrames = 0;
-		private final ExecutorService detectionExecutor = Executors.newFixedThreadPool(200);
+	/**
+	 * @param detectionRateListener	told when the camera starts or stops
+	 * 								skipping frames or can no longer be detected
+	 * 								fast enough
+	 */
+	public void setDetectionRateListener(DetectionRateListener detectionRateListener) {
+		this.detectionRateListener = Optional.ofNullable(detectionRateListener);
+	}
 
-		private BufferedImage[] frameHistory = new BufferedImage[HISTORY_SIZE];
-	    int[][] amplitudeR = new int [640][480];
-	    int[][] amplitudeG = new int [640][480];
-	    int[][] amplitudeB = new int [640][480];
-	    int[][] shotTransform = new int [640][480];
-		private int historyIndex;
-		private boolean historyReady;
+	/**
+	 * @return the lowest rate frames may be detected at, which is high enough
+	 * 			that a laser pulse as long as the configured detection rate
+	 * 			lands on a detected frame
+	 */
+	private double getMinimumDetectionFPS() {
+		return Math.max(MIN_SHOT_DETECTION_FPS, 1000.0 / config.getDetectionRate());
+	}
 
-		private File videoFile;
-		private IMediaReader reader;
+	private class Detector implements Runnable {
+		private final List<ShotCandidate> shotCandidates = new ArrayList<ShotCandidate>();
+		private final FrameThrottle previewThrottle = new FrameThrottle(config.getPreviewFPS());
+		private boolean checkedBrightness = false;
 
-		private int framesProcessed;
-		long startTime;
+		private Optional<VideoFrameSource> videoSource = Optional.empty();
 
-		public Detector()
-		{
-			for (int i=0;i<HISTORY_SIZE;i++) {
-				frameHistory[i] = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
-			}
+		private long lastLatencyUpdate = 0;
+		private long lastRateUpdate = 0;
 
-			historyReady = false;
+		public Detector() {
+			startPipeline();
 		}
 
-		public Detector(File inVideoFile) {
-			this();
-			videoFile = inVideoFile;
-			reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
-			reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
-			reader.addListener(this);
-			framesProcessed=0;
+		public Detector(File videoFile) {
+			startPipeline();
+
+			// Frames are decoded as fast as detection takes them, into the
+			// camera's frame pool
+			videoSource = Optional.of(new VideoFrameSource(videoFile, false, false, framePool));
+		}
+
+		private void startPipeline() {
+			String name = webcam.isPresent() ? webcam.get().getName() : "Video";
+			framePipeline = new FramePipeline(name, framePool);
+			FrameStage detectionStage = framePipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP,
+					DETECTION_QUEUE_SIZE, (frame) -> detectFrame(frame.getImage(), frame.getCaptureTime()),
+					detectionScheduler.orElse(null));
+			// Every frame of a video is detected no matter how long it waits
+			if (webcam.isPresent()) detectionStage.setMaxFrameAge(STALE_FRAME_AGE);
+			framePipeline.addStage("Preview", FrameStage.DropPolicy.DROP_OLDEST, PREVIEW_QUEUE_SIZE,
+					(frame) -> previewFrame(frame.getImage()));
+			framePipeline.start();
 		}
 
 		@Override
@@ -283,176 +369,230 @@ public class CameraManager {
 
 			if (webcam.isPresent()) {
 				if (!webcam.get().isOpen()) {
-					webcam.get().setViewSize(new Dimension(FEED_WIDTH, FEED_HEIGHT));
-					webcam.get().open();
+					final Optional<Dimension> viewSize = selectViewSize(webcam.get());
+					if (viewSize.isPresent()) {
+						webcam.get().setViewSize(viewSize.get());
+						frameSize = viewSize.get();
+					}
+					webcam.get().openStreaming();
 				}
 
 				streamCameraFrames();
 			}
 			else
 			{
-				while (reader.readPacket() == null);
+				streamVideoFrames();
 			}
 		}
 
-		@Override
 		/**
-		 * From the MediaListenerAdapter. This method is used to get a new frame
-		 * from a video that is being played back in a unit test, not to get
-		 * a frame from the webcam.
+		 * Cameras open at the configured resolution, or the largest one they
+		 * support when none is configured. Detection downsamples large frames,
+		 * so a bigger view size costs little more CPU.
+		 *
+		 * @return empty if the camera's frames have a fixed size
 		 */
-		public void onVideoPicture(IVideoPictureEvent event)
-		{
-			//frameProcessing=true;
-			BufferedImage currentFrame = event.getImage();
-			ProcessImage(currentFrame);
+		private Optional<Dimension> selectViewSize(Camera camera) {
+			if (config.getWebcamResolution().isPresent()) return config.getWebcamResolution();
+
+			Optional<Dimension> largest = Optional.empty();
+			for (Dimension size : camera.getViewSizes()) {
+				if (!largest.isPresent() || size.width * size.height > largest.get().width * largest.get().height) {
+					largest = Optional.of(size);
+				}
+			}
+
+			return largest;
 		}
 
-		@Override
-		public void onClose(ICloseEvent event) {
-			synchronized (processingLock) {
+		/**
+		 * Feeds every frame of a video that is being played back in a unit
+		 * test to the pipeline, not frames from the webcam.
+		 */
+		private void streamVideoFrames() {
+			final VideoFrameSource source = videoSource.get();
+			source.open();
+
+			try {
+				while (source.awaitImage(FRAME_WAIT_TIMEOUT)) {
+					ProcessImage(source.getImage(framePool));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			// Every frame must reach the detector before the video counts as processed
+			try {
+				framePipeline.drain();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			framePipeline.stop();
+
+			if (processingLock != null) {
+				synchronized (processingLock) {
+					processedVideo = true;
+					processingLock.notifyAll();
+				}
+			} else {
 				processedVideo = true;
-				processingLock.notifyAll();
 			}
 
-			detectionExecutor.shutdown();
 		}
 
 		private void streamCameraFrames() {
 
 			while (isStreaming) {
-				if (!webcam.isPresent() || !webcam.get().isImageNew()) continue;
+				// Sleep until the webcam has a new frame instead of polling for one
+				try {
+					if (!webcam.get().awaitImage(FRAME_WAIT_TIMEOUT)) {
+						if (isStreaming && !webcam.get().isOpen()) {
+							// A video file that reached its end is not missing
+							if (webcam.get().isWebcam()) showMissingCameraError();
+							break;
+						}
+
+						continue;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
 
-				BufferedImage currentFrame = webcam.get().getImage();
+				BufferedImage currentFrame = webcam.get().getImage(framePool);
 
 				if (currentFrame == null && webcam.isPresent() && !webcam.get().isOpen()) {
 					showMissingCameraError();
-					detectionExecutor.shutdown();
+					framePipeline.stop();
 					return;
 				}
-                ProcessImage(currentFrame);
-			}
 
+				ProcessImage(currentFrame);
+			}
 
-			detectionExecutor.shutdown();
+			framePipeline.stop();
+			logger.debug("[{}] Skipped {} duplicate frames, allocated {} pooled frames", webcam.get().getName(),
+					frameDetector.getDuplicateFrames(), framePool.getAllocatedFrames());
 		}
 
+		/**
+		 * Runs on the capture thread: queues the raw frame for the recorder and
+		 * hands it to the detection and preview stages. Frames identical to the
+		 * previous frame are still recorded but are not handed on. Either way the
+		 * frame goes back to the frame pool once nothing needs it anymore.
+		 */
 		private void ProcessImage(BufferedImage currentFrame) {
-			long startDetectionCycle = System.currentTimeMillis();
-
-			final AverageFrameComponents averages = averageFrameComponents(currentFrame);
-
-			if (pixelTransformerInitialized == false) {
-				seenFrames++;
-				if (seenFrames == INIT_FRAME_COUNT) {
-					if (averages.getLightingCondition() == LightingCondition.VERY_BRIGHT) {
-						showBrightnessWarning();
-					}
-
-					pixelTransformerInitialized = true;
-				} else {
-					return;
-				}
+			if (currentFrame.getWidth() != frameSize.width || currentFrame.getHeight() != frameSize.height) {
+				frameSize = new Dimension(currentFrame.getWidth(), currentFrame.getHeight());
 			}
 
-			if (recording) {
-				BufferedImage image = ConverterFactory.convertToType(currentFrame, BufferedImage.TYPE_3BYTE_BGR);
-				IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
+			final Optional<VideoRecorder> recorder = videoRecorder;
+			if (recorder.isPresent()) recorder.get().record(currentFrame);
 
-				IVideoPicture frame = converter.toPicture(image,
-						(System.currentTimeMillis() - recordingStartTime) * 1000);
-				frame.setKeyFrame(isFirstFrame);
-				frame.setQuality(0);
-				isFirstFrame = false;
-
-				videoWriter.encodeVideo(0, frame);
+			if (frameDetector.isDuplicate(currentFrame)) {
+				framePool.release(currentFrame);
+				return;
 			}
 
-			if (cropFeedToProjection && projectionBounds.isPresent()) {
-				Bounds b = projectionBounds.get();
-				currentFrame = currentFrame.getSubimage((int)b.getMinX(), (int)b.getMinY(),
-						(int)b.getWidth(), (int)b.getHeight());
+			try {
+				framePipeline.publish(currentFrame);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
+		}
 
-			Image img = SwingFXUtils.toFXImage(currentFrame, null);
+		private void previewFrame(BufferedImage currentFrame) {
+			if (!isPreviewVisible && config.pauseHiddenPreview()) return;
 
-			if (cropFeedToProjection) {
-				canvasManager.updateBackground(img, projectionBounds);
-			} else {
-				canvasManager.updateBackground(img, Optional.empty());
-			}
-
-			final BufferedImage frame = currentFrame;
-			detectShotsNew(frame, averages);
-			if (System.currentTimeMillis() -
-					startDetectionCycle >= config.getDetectionRate()) {
+			previewThrottle.setFPS(config.getPreviewFPS());
+			if (!previewThrottle.accept()) return;
+			previewRate.mark();
 
-				startDetectionCycle = System.currentTimeMillis();
-				//detectionExecutor.submit(new Thread(() -> {detectShotsNew(frame, averages);}));
+			// The cropped region is read straight out of the frame, no sub-image needed
+			final Optional<Bounds> projectionBounds = frameDetector.getProjectionBounds();
+			if (frameDetector.isCropFeedToProjection() && projectionBounds.isPresent()) {
+				canvasManager.updateBackground(currentFrame,
+						FrameDetector.toFrameBounds(projectionBounds.get(), currentFrame), projectionBounds);
+			} else {
+				canvasManager.updateBackground(currentFrame,
+						new Rectangle(currentFrame.getWidth(), currentFrame.getHeight()), Optional.empty());
 			}
 		}
 
-		private class AverageFrameComponents {
-			private final float averageLum;
-			private final float averageRed;
+		private void detectFrame(BufferedImage frame, long captureTime) {
+			final long detectionStart = System.nanoTime();
 
-			public AverageFrameComponents(float lum, float red) {
-				averageLum = lum; averageRed = red;
-			}
+			// Detection settings can change while the camera is running
+			final ShotDetectionKernel detectionKernel = frameDetector.getDetectionKernel();
+			detectionKernel.setHistorySize(config.getHistorySize());
+			detectionKernel.setParallelism(config.getDetectionParallelism());
+			detectionKernel.setPeakRadius(config.getPeakRadius());
+			detectionKernel.setMaxShots(config.getMaxShotsPerFrame());
 
-			public float getAverageRed() {
-				return averageRed;
-			}
+			shotCandidates.clear();
+			if (!frameDetector.detectShots(frame, shotCandidates)) return;
 
-			public LightingCondition getLightingCondition() {
-				if (averageLum > LIGHTING_CONDITION_VERY_BRIGHT_THRESHOLD) {
-					return LightingCondition.VERY_BRIGHT;
-				} else if (averageLum > LIGHTING_CONDITION__BRIGHT_THRESHOLD) {
-					return LightingCondition.BRIGHT;
-				} else {
-					return LightingCondition.DARK;
+			shotLatency.record(ShotLatency.Stage.QUEUE, detectionStart - captureTime);
+			detectionRate.mark();
+
+			if (frameDetector.isInitialized()) {
+				if (!checkedBrightness) {
+					checkedBrightness = true;
+					if (frameDetector.getLightingCondition() == LightingCondition.VERY_BRIGHT) {
+						showBrightnessWarning();
+					}
 				}
-			}
-		}
 
-		private AverageFrameComponents averageFrameComponents(BufferedImage frame) {
-			long totalLum = 0;
-			long totalRed = 0;
+				addShots(frame, captureTime);
 
-			int minX;
-			int maxX;
-			int minY;
-			int maxY;
+				shotLatency.recordSince(ShotLatency.Stage.DETECTION, detectionStart);
+				shotLatency.logIfDue();
 
-			if (limitDetectProjection && projectionBounds.isPresent()) {
-				minX = (int)projectionBounds.get().getMinX();
-				maxX = (int)projectionBounds.get().getMaxX();
-				minY = (int)projectionBounds.get().getMinY();
-				maxY = (int)projectionBounds.get().getMaxY();
-			} else {
-				minX = 0;
-				maxX = frame.getWidth();
-				minY = 0;
-				maxY = frame.getHeight();
+				if (debuggerListener.isPresent() &&
+						System.currentTimeMillis() - lastLatencyUpdate >= LATENCY_UPDATE_INTERVAL) {
+					lastLatencyUpdate = System.currentTimeMillis();
+					debuggerListener.get().updateLatencyData(shotLatency);
+				}
 			}
 
-			for (int x = minX; x < maxX; x++) {
-				for (int y = minY; y < maxY; y++) {
-					Color c = new Color(frame.getRGB(x, y));
-
-					pixelTransformer.updateFilter(x, y, c);
-
-					totalLum += (c.getRed() + c.getRed() + c.getRed() +
-							c.getBlue() +
-							c.getGreen() + c.getGreen() + c.getGreen() + c.getGreen()) >> 3;
-					totalRed += c.getRed();
-				}
+			// The rate controller detects every frame of a video because only
+			// a webcam's rate is ever adjusted
+			if (webcam.isPresent() &&
+					System.currentTimeMillis() - lastRateUpdate >= DETECTION_RATE_UPDATE_INTERVAL) {
+				lastRateUpdate = System.currentTimeMillis();
+				adjustDetectionRate();
 			}
+		}
 
-			float totalPixels = (float)(frame.getWidth() * frame.getHeight());
+		private void adjustDetectionRate() {
+			final DetectionRateController rateController = frameDetector.getRateController();
+			final double cameraFPS = webcam.get().getFPS();
+			final DetectionRateController.State previousState = rateController.getState();
+			final DetectionRateController.State state = rateController.adjust(cameraFPS,
+					config.getDetectionCPUBudget() / 100.0, getMinimumDetectionFPS());
+
+			if (state == previousState) return;
+
+			switch (state) {
+			case CAMERA_TOO_SLOW:
+				logger.warn("[{}] Current webcam FPS is {}, which is too low for reliable shot detection",
+						webcam.get().getName(), cameraFPS);
+				break;
+
+			case OVER_BUDGET:
+				logger.warn("[{}] Detecting a frame takes {} ms, more than the CPU budget allows at {} FPS",
+						webcam.get().getName(), String.format("%.1f", rateController.getAverageCost() * 1000),
+						String.format("%.1f", Math.min(getMinimumDetectionFPS(), cameraFPS)));
+				break;
+
+			default:
+				logger.debug("[{}] Detecting every {} frame(s), {} FPS", webcam.get().getName(),
+						rateController.getStride(), String.format("%.1f", rateController.getDetectionFPS()));
+			}
 
-			return new AverageFrameComponents((float)(totalLum) / totalPixels,
-					(float)(totalRed) / totalPixels);
+			if (detectionRateListener.isPresent()) {
+				detectionRateListener.get().detectionRateChanged(state, cameraFPS, rateController.getDetectionFPS());
+			}
 		}
 
 		/* This is not perfect because it treats color temps as linear.
@@ -474,141 +614,26 @@ public class CameraManager {
 			frame.setRGB(x, y, new Color((int)r, c.getGreen(), (int)b).getRGB());
 		}
 
-		private void detectShotsNew(BufferedImage frame, AverageFrameComponents averages) {
-			int R,G,B,maxR,maxG,maxB;
-			if (!isDetecting) {
-				//frameProcessing=false;
-				return;
-			}
-
-			for (int x = 0; x < 640; x++) {
-				for (int y = 0; y < 480; y++) {
-					shotTransform[x][y]=0;
-				}
-			}
-
-			for (int x = 2; x < 638; x++) {
-				for (int y = 2; y < 478; y++) {
-					// Reset the minimum values
-					maxR=0;
-					maxG=0;
-					maxB=0;
-					int rgbPixel;
-
-					for (int i = 0; i < HISTORY_SIZE; i++) {
-						rgbPixel=frameHistory[i].getRGB(x,y);
-						maxR=Math.max(maxR, (rgbPixel >> 16) & 0x000000FF);
-						maxG=Math.max(maxG, (rgbPixel >> 8) & 0x000000FF);
-						maxB=Math.max(maxB, (rgbPixel >> 0) & 0x000000FF);
-					}
-
-					rgbPixel=frame.getRGB(x,y);
-					R = (rgbPixel >> 16) & 0x000000FF;
-					G = (rgbPixel >> 8) & 0x000000FF;
-					B = (rgbPixel >> 0) & 0x000000FF;
-
-					amplitudeR[x][y]=Math.max(-10, Math.min(40, (R-maxR)));
-					amplitudeG[x][y]=Math.max(-10, Math.min(40, (G-maxG)));
-					amplitudeB[x][y]=Math.max(-10, Math.min(40, (B-maxB)));
-				}
-			}
-			// Perform hough transform
-			int amplitude;
-			for (int x = 2; x < 638; x++) {
-				for (int y = 2; y < 478; y++) {
-					amplitude=0;
-					int offamplitude=amplitudeR[x][y];
-					// Seach for bright pixels that are potientially edges (must neighbor a dark pixel)
-					if(amplitudeR[x][y]>LASER_TRANSITION &&
-							(
-							  	  (amplitudeR[x+1][y]<offamplitude&&amplitudeR[x+2][y]<offamplitude)
-								||(amplitudeR[x-1][y]<offamplitude&&amplitudeR[x-2][y]<offamplitude)
-								||(amplitudeR[x][y+1]<offamplitude&&amplitudeR[x][y+2]<offamplitude)
-								||(amplitudeR[x][y-1]<offamplitude&&amplitudeR[x][y-2]<offamplitude))) {
-						// Update acumulator space for Hough transform
-						amplitude = amplitudeR[x][y]-LASER_TRANSITION;
-					}
-
-					// Seach for bright pixels that are potientially edges (must neighbor a dark pixel)
-					if(amplitudeG[x][y]>LASER_TRANSITION && (amplitudeG[x+1][y]<LASER_TRANSITION||amplitudeG[x-1][y]<LASER_TRANSITION||amplitudeG[x][y+1]<LASER_TRANSITION||amplitudeG[x][y-1]<LASER_TRANSITION)) {
-						// Update acumulator space for Hough transform
-						amplitude += amplitudeG[x][y]-LASER_TRANSITION;
-					}
-
-					// Seach for bright pixels that are potientially edges (must neighbor a dark pixel)
-					if(amplitudeB[x][y]>LASER_TRANSITION && (amplitudeB[x+1][y]<LASER_TRANSITION||amplitudeB[x-1][y]<LASER_TRANSITION||amplitudeB[x][y+1]<LASER_TRANSITION||amplitudeB[x][y-1]<LASER_TRANSITION)) {
-						// Update acumulator space for Hough transform
-						amplitude += amplitudeB[x][y]-LASER_TRANSITION;
-					}
-					for(int dx=-1;dx<=1;dx++) {
-						shotTransform[x+dx][y+1] += amplitude;
-						shotTransform[x+dx][y-1] += amplitude;
-					}
-					shotTransform[x-1][y] += amplitude;
-					shotTransform[x+1][y] += amplitude;
-
-					shotTransform[x-2][y] += amplitude;
-					shotTransform[x+2][y] += amplitude;
-					shotTransform[x][y-2] += amplitude;
-					shotTransform[x][y+2] += amplitude;
-				}
-			}
-
-			// Copy the current frame into the circular buffer
-			frameHistory[historyIndex].createGraphics().drawImage(frame, 0, 0, null);
+		private void addShots(BufferedImage frame, long captureTime) {
+			// Shots are found in frame coordinates and shown in feed coordinates
+			final double scaleX = (double)frame.getWidth() / FEED_WIDTH;
+			final double scaleY = (double)frame.getHeight() / FEED_HEIGHT;
 
-			historyIndex=(historyIndex+1) % HISTORY_SIZE;
-			if (historyIndex==0) historyReady=true;
-			if(!historyReady) startTime = System.currentTimeMillis();
-
-			if (historyReady==false) {
-				//frameProcessing=false;
-				return;
+			for (ShotCandidate shot : shotCandidates) {
+				logger.debug("Suspected shot accepted: ({}, {})", shot.getX(), shot.getY());
+				canvasManager.addShot(javafx.scene.paint.Color.RED, shot.getX() / scaleX, shot.getY() / scaleY,
+						captureTime);
 			}
-			framesProcessed++;
-
-			// Check for hit
-			float max;
-			max=0;
-			for (int x = 10; x < 630; x++) {
-				for (int y = 10; y < 470; y++) {
-					if (max<shotTransform[x][y]) max = shotTransform[x][y];
-					if (shotTransform[x][y]>HUGHES_TRANFORM_THRESHOLD) {
-						int xLocalMaxima=0, yLocalMaxima=0;
-						int Maxima=0;
-						for(int dx = -10; dx<=10;dx++){
-							for(int dy = -10; dy<=10;dy++){
-								if (Maxima<shotTransform[dx+x][dy+y]) {
-									xLocalMaxima=dx+x;
-									yLocalMaxima=dy+y;
-									Maxima=shotTransform[dx+x][dy+y];
-								}
-							}
-						}
 
-						logger.debug("Suspected shot accepted: ({}, {})", xLocalMaxima, yLocalMaxima);
-  				    	canvasManager.addShot(javafx.scene.paint.Color.RED, (double)xLocalMaxima, (double)yLocalMaxima);
-					}
-				}
-			}
-			System.out.printf("Max shottransform %f \n", max);
-			System.out.printf("FPS %f \n", (framesProcessed*1000.0/(System.currentTimeMillis()-startTime)));
+			logger.trace("Max shot transform {}", frameDetector.getDetectionKernel().getMaxTransform());
 
 
 			//frameProcessing=false;
 
-			if (webcam.isPresent()) {
-				double webcamFPS = webcam.get().getFPS();
-				if (debuggerListener.isPresent()) {
-					debuggerListener.get().updateFeedData(webcamFPS, LightingCondition.BRIGHT);
-					// Not currently analyzing lighting condition
-				}
-				if (webcamFPS < MIN_SHOT_DETECTION_FPS && !showedFPSWarning) {
-					logger.warn("[{}] Current webcam FPS is {}, which is too low for reliable shot detection",
-							webcam.get().getName(), webcamFPS);
-					showFPSWarning(webcamFPS);
-					showedFPSWarning = true;
-				}
+			if (webcam.isPresent() && debuggerListener.isPresent()) {
+				// Not currently analyzing lighting condition
+				debuggerListener.get().updateFeedData(webcam.get().getFPS(), detectionRate.getRate(),
+						previewRate.getRate(), frameDetector.getDuplicateFrames(), LightingCondition.BRIGHT);
 			}
 
 			if (debuggerListener.isPresent()) {
@@ -638,28 +663,6 @@ public class CameraManager {
 			});
 		}
 
-		private void showFPSWarning(double fps) {
-			Platform.runLater(() -> {
-				Alert cameraAlert = new Alert(AlertType.WARNING);
-
-				Optional<String> cameraName = config.getWebcamsUserName(webcam.get());
-				String messageFormat = "The FPS from %s has dropped to %f, which is too low for reliable shot detection. Some"
-						+ " shots may be missed. You may be able to raise the FPS by closing other applications.";
-				String message;
-				if (cameraName.isPresent()) {
-					message = String.format(messageFormat, cameraName.get(), fps);
-				} else {
-					message = String.format(messageFormat, webcam.get().getName(), fps);
-				}
-
-				cameraAlert.setTitle("Webcam FPS Too Low");
-				cameraAlert.setHeaderText("Webcam FPS is too low!");
-				cameraAlert.setResizable(true);
-				cameraAlert.setContentText(message);
-				cameraAlert.show();
-			});
-		}
-
 		private void showBrightnessWarning() {
 			Platform.runLater(() -> {
 				Alert cameraAlert = new Alert(AlertType.WARNING);
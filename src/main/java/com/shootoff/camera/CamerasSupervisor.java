@@ -18,7 +18,6 @@
 
 package com.shootoff.camera;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,27 +25,21 @@ import javafx.scene.Group;
 
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.CanvasManager;
-import com.shootoff.gui.MockCanvasManager;
 
 public class CamerasSupervisor {
 	private final Configuration config;
 	private final List<CameraManager> managers = new ArrayList<CameraManager>();
+	private DetectionScheduler detectionScheduler;
 
 	public CamerasSupervisor(Configuration config) {
 		this.config = config;
+		detectionScheduler = new DetectionScheduler();
 	}
 
-	public void addCameraManager(Camera webcam, CanvasManager canvasManager) {
-		//managers.add(new CameraManager(webcam, canvasManager, config));
-
-		File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_ambient_light_nature_scene.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_bright_room.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_projector_dark_room.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_safari_green_laser_lights_off.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_safari_green_laser_lights_on.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_safari_red_laser_lights_off.mp4").getFile());
-		//File videoFile = new  File(getClass().getResource("/shotsearcher/ps3eye_hardware_defaults_safari_red_laser_lights_on.mp4").getFile());
-		managers.add(new CameraManager(videoFile, canvasManager, config));
+	public CameraManager addCameraManager(Camera webcam, CanvasManager canvasManager) {
+		CameraManager manager = new CameraManager(webcam, canvasManager, config, detectionScheduler);
+		managers.add(manager);
+		return manager;
 	}
 
 	public void clearManagers() {
@@ -58,6 +51,10 @@ public class CamerasSupervisor {
 		}
 
 		managers.clear();
+
+		// Closing the managers stopped their pipelines. Cameras added from here on get a scheduler whose workers start with them
+		detectionScheduler.shutdown();
+		detectionScheduler = new DetectionScheduler();
 	}
 
 	public void clearShots() {
@@ -89,6 +86,15 @@ public class CamerasSupervisor {
 			manager.setStreaming(false);
 			manager.close();
 		}
+
+		detectionScheduler.shutdown();
+	}
+
+	/**
+	 * @return the scheduler that runs shot detection for every camera
+	 */
+	public DetectionScheduler getDetectionScheduler() {
+		return detectionScheduler;
 	}
 
 	public List<CameraManager> getCameraManagers() {
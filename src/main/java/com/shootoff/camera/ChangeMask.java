@@ -0,0 +1,186 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Marks which TILE_SIZE x TILE_SIZE tiles of a frame changed. The detector
+ * marks a tile when one of its pixels got brighter than its background by more
+ * than the laser transition, and only runs its expensive passes on the marked
+ * tiles and the pixels around them.
+ *
+ * Like {@link DetectionArea}, the marked tiles are handed to the passes as row
+ * spans, optionally grown by a margin in every direction.
+ */
+public class ChangeMask {
+	public static final int TILE_SIZE = 16;
+	private static final int TILE_SHIFT = 4;
+
+	private final int width;
+	private final int height;
+	private final int tilesX;
+	private final int tilesY;
+	private final boolean[] changed;
+
+	public ChangeMask(int width, int height) {
+		this.width = width;
+		this.height = height;
+		tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+		tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+		changed = new boolean[tilesX * tilesY];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void clear() {
+		Arrays.fill(changed, false);
+	}
+
+	/**
+	 * Mark the tile containing pixel (x, y) as changed. Tiles may be marked from
+	 * several threads at once.
+	 */
+	public void mark(int x, int y) {
+		changed[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)] = true;
+	}
+
+	/**
+	 * @return whether the tile containing pixel (x, y) has been marked
+	 */
+	public boolean isChanged(int x, int y) {
+		return changed[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)];
+	}
+
+	/**
+	 * @return the first column of the tile to the right of the one containing
+	 * 		   column x
+	 */
+	public static int nextTileX(int x) {
+		return ((x >> TILE_SHIFT) + 1) << TILE_SHIFT;
+	}
+
+	public int getChangedTileCount() {
+		int count = 0;
+
+		for (boolean tile : changed) {
+			if (tile) count++;
+		}
+
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return getChangedTileCount() == 0;
+	}
+
+	/**
+	 * @param margin	pixels the marked tiles are grown by in every direction
+	 * @return for each row y, the [startX, endX) pairs of the columns within
+	 * 		   <tt>margin</tt> of a marked tile, clipped to the frame
+	 */
+	public int[][] rowSpans(int margin) {
+		final int[][] spans = new int[height][];
+		final int[][] tileRowSpans = new int[tilesY][];
+
+		for (int ty = 0; ty < tilesY; ty++) {
+			List<int[]> ranges = new ArrayList<int[]>();
+
+			for (int tx = 0; tx < tilesX; tx++) {
+				if (changed[ty * tilesX + tx]) {
+					ranges.add(new int[] { tx * TILE_SIZE - margin, (tx + 1) * TILE_SIZE + margin });
+				}
+			}
+
+			tileRowSpans[ty] = DetectionArea.merge(ranges, width);
+		}
+
+		for (int y = 0; y < height; y++) {
+			final int fromTile = Math.max(0, (y - margin) >> TILE_SHIFT);
+			final int toTile = Math.min(tilesY - 1, (y + margin) >> TILE_SHIFT);
+
+			if (fromTile == toTile) {
+				spans[y] = tileRowSpans[fromTile];
+				continue;
+			}
+
+			List<int[]> ranges = new ArrayList<int[]>();
+			for (int ty = fromTile; ty <= toTile; ty++) {
+				final int[] tileSpans = tileRowSpans[ty];
+
+				for (int i = 0; i < tileSpans.length; i += 2) {
+					ranges.add(new int[] { tileSpans[i], tileSpans[i + 1] });
+				}
+			}
+
+			spans[y] = DetectionArea.merge(ranges, width);
+		}
+
+		return spans;
+	}
+
+	/**
+	 * @return for each row, the spans covered by both <tt>a</tt> and
+	 * 		   <tt>b</tt>
+	 */
+	public static int[][] intersect(int[][] a, int[][] b) {
+		final int[][] spans = new int[a.length][];
+
+		for (int y = 0; y < a.length; y++) {
+			spans[y] = intersect(a[y], b[y]);
+		}
+
+		return spans;
+	}
+
+	private static int[] intersect(int[] a, int[] b) {
+		if (a.length == 0 || b.length == 0) return DetectionArea.NO_SPANS;
+
+		final int[] spans = new int[a.length + b.length];
+		int count = 0;
+
+		for (int i = 0, j = 0; i < a.length && j < b.length;) {
+			final int start = Math.max(a[i], b[j]);
+			final int end = Math.min(a[i + 1], b[j + 1]);
+
+			if (start < end) {
+				spans[count++] = start;
+				spans[count++] = end;
+			}
+
+			if (a[i + 1] < b[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+
+		if (count == 0) return DetectionArea.NO_SPANS;
+
+		return Arrays.copyOf(spans, count);
+	}
+}
@@ -21,28 +21,32 @@ package com.shootoff.camera;
 import java.util.Optional;
 
 public class DeduplicationProcessor implements ShotProcessor {
+	public static final int TIME_THRESHOLD = 155; // This is Miculek constant because it's based on how fast Jerry Miculek
+												  // can pull the trigger. It's a safe bet ShootOFF users aren't faster :).
+	public static final double DISTANCE_THRESHOLD = 0.10;
+
 	private Optional<Shot> lastShot = Optional.empty();
-	private final double DISTANCE_THRESHOLD_X;
-	private final double DISTANCE_THRESHOLD_Y;
 	
-	public DeduplicationProcessor() {
-		final double DISTANCE_THRESHOLD = 0.10;
-		DISTANCE_THRESHOLD_X = 640 * DISTANCE_THRESHOLD;
-		DISTANCE_THRESHOLD_Y = 480 * DISTANCE_THRESHOLD;
+	/**
+	 * Two shots of the same color are duplicates if they appear to have happened
+	 * faster than Jerry Miculek can shoot and are very close to each other.
+	 * Timestamps are in milliseconds and coordinates are in the 640x480 feed,
+	 * which shots are mapped to whatever size the camera's frames are.
+	 */
+	public static boolean isDuplicate(double lastX, double lastY, long lastTimestamp,
+			double x, double y, long timestamp) {
+		return timestamp - lastTimestamp <= TIME_THRESHOLD &&
+				Math.abs(lastX - x) <= CameraManager.FEED_WIDTH * DISTANCE_THRESHOLD &&
+				Math.abs(lastY - y) <= CameraManager.FEED_HEIGHT * DISTANCE_THRESHOLD;
 	}
-	
+
 	@Override
 	public boolean processShot(Shot shot) {
 		if (lastShot.isPresent()) {
-			final int TIME_THRESHOLD = 155; // This is Miculek constant because it's based on how fast Jerry Miculek
-											// can pull the trigger. It's a safe bet ShootOFF users aren't faster :).
-			
-			// If two shots have the same color, appear to have happened fast than Jerry Miculek can shoot
-			// and are very close to each other, ignore the new shot
+			// If two shots have the same color and are otherwise duplicates, ignore the new shot
 			if (shot.getColor().equals(lastShot.get().getColor()) && 
-					shot.getTimestamp() - lastShot.get().getTimestamp() <= TIME_THRESHOLD &&
-					Math.abs(lastShot.get().getX() - shot.getX()) <= DISTANCE_THRESHOLD_X &&
-					Math.abs(lastShot.get().getY() - shot.getY()) <= DISTANCE_THRESHOLD_Y) {
+					isDuplicate(lastShot.get().getX(), lastShot.get().getY(), lastShot.get().getTimestamp(),
+							shot.getX(), shot.getY(), shot.getTimestamp())) {
 				return false;
 			}
 		}
@@ -0,0 +1,183 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The part of a frame shots are searched for in: the union of the enabled shot
+ * sectors, clipped to the projection bounds when detection is limited to the
+ * projection. Sectors are laid out the same way ShotSearcher lays them out,
+ * except that the last row and column of sectors extend to the edge of the
+ * frame so that a frame with every sector enabled is covered completely.
+ *
+ * The area is handed to the detection passes as spans: for every column (or
+ * row) of the frame, the sorted, non-overlapping [start, end) ranges of rows
+ * (or columns) inside the area, optionally grown by a margin in every
+ * direction so passes can cover the pixels their neighbors read.
+ */
+public class DetectionArea {
+	static final int[] NO_SPANS = new int[0];
+
+	private final int width;
+	private final int height;
+	private final List<Rectangle> regions = new ArrayList<Rectangle>();
+
+	/**
+	 * @param width				frame width
+	 * @param height			frame height
+	 * @param sectorStatuses	enabled shot sectors, indexed [row][column]
+	 * @param bounds			if present, only the part of the sectors inside
+	 * 							these bounds is included
+	 */
+	public DetectionArea(int width, int height, boolean[][] sectorStatuses, Optional<Rectangle> bounds) {
+		this.width = width;
+		this.height = height;
+
+		final int rows = sectorStatuses.length;
+		final int subHeight = height / rows;
+
+		for (int sectorY = 0; sectorY < rows; sectorY++) {
+			final int columns = sectorStatuses[sectorY].length;
+			final int subWidth = width / columns;
+
+			for (int sectorX = 0; sectorX < columns; sectorX++) {
+				if (!sectorStatuses[sectorY][sectorX]) continue;
+
+				final int startX = sectorX * subWidth;
+				final int startY = sectorY * subHeight;
+				final int endX = sectorX == columns - 1 ? width : startX + subWidth;
+				final int endY = sectorY == rows - 1 ? height : startY + subHeight;
+
+				Rectangle sector = new Rectangle(startX, startY, endX - startX, endY - startY);
+				if (bounds.isPresent()) sector = sector.intersection(bounds.get());
+
+				if (!sector.isEmpty()) regions.add(sector);
+			}
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean isEmpty() {
+		return regions.isEmpty();
+	}
+
+	/**
+	 * @return the number of pixels in the area
+	 */
+	public int getPixelCount() {
+		int count = 0;
+
+		for (int[] spans : rowSpans(0)) {
+			for (int i = 0; i < spans.length; i += 2) count += spans[i + 1] - spans[i];
+		}
+
+		return count;
+	}
+
+	public boolean contains(int x, int y) {
+		for (Rectangle region : regions) {
+			if (region.contains(x, y)) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param margin	pixels the area is grown by in every direction
+	 * @return for each column x, the [startY, endY) pairs of the rows in the
+	 * 		   area, clipped to the frame
+	 */
+	public int[][] columnSpans(int margin) {
+		final int[][] spans = new int[width][];
+
+		for (int x = 0; x < width; x++) {
+			List<int[]> ranges = new ArrayList<int[]>();
+
+			for (Rectangle region : regions) {
+				if (x >= region.x - margin && x < region.x + region.width + margin) {
+					ranges.add(new int[] { region.y - margin, region.y + region.height + margin });
+				}
+			}
+
+			spans[x] = merge(ranges, height);
+		}
+
+		return spans;
+	}
+
+	/**
+	 * @param margin	pixels the area is grown by in every direction
+	 * @return for each row y, the [startX, endX) pairs of the columns in the
+	 * 		   area, clipped to the frame
+	 */
+	public int[][] rowSpans(int margin) {
+		final int[][] spans = new int[height][];
+
+		for (int y = 0; y < height; y++) {
+			List<int[]> ranges = new ArrayList<int[]>();
+
+			for (Rectangle region : regions) {
+				if (y >= region.y - margin && y < region.y + region.height + margin) {
+					ranges.add(new int[] { region.x - margin, region.x + region.width + margin });
+				}
+			}
+
+			spans[y] = merge(ranges, width);
+		}
+
+		return spans;
+	}
+
+	// Sort and merge [start, end) ranges, clipping them to [0, limit)
+	static int[] merge(List<int[]> ranges, int limit) {
+		if (ranges.isEmpty()) return NO_SPANS;
+
+		ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+		int[] merged = new int[ranges.size() * 2];
+		int count = 0;
+
+		for (int[] range : ranges) {
+			final int start = Math.max(0, range[0]);
+			final int end = Math.min(limit, range[1]);
+			if (start >= end) continue;
+
+			if (count > 0 && start <= merged[count - 1]) {
+				merged[count - 1] = Math.max(merged[count - 1], end);
+			} else {
+				merged[count++] = start;
+				merged[count++] = end;
+			}
+		}
+
+		return Arrays.copyOf(merged, count);
+	}
+}
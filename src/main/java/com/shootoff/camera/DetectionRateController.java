@@ -0,0 +1,142 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how often a camera's frames go through full shot detection so that
+ * detection stays within a CPU budget. The controller keeps a moving average
+ * of how long detecting a frame takes and, given the camera's frame rate,
+ * works out the highest rate the budget allows. Frames are then detected at a
+ * fixed stride (every frame, every other frame, ...), but never so rarely that
+ * detection falls below the minimum rate, which is what keeps short laser
+ * pulses from falling between detected frames. A minimum above the camera's
+ * frame rate is met by detecting every frame.
+ *
+ * Detection cost is measured here for each camera, the shared
+ * {@link DetectionScheduler} only decides which camera a worker serves next.
+ */
+public class DetectionRateController {
+	public enum State {
+		/** Every frame is detected */
+		FULL_RATE,
+		/** Some frames are skipped to stay within the CPU budget */
+		THROTTLED,
+		/** Even detecting at the minimum rate takes more than the budget */
+		OVER_BUDGET,
+		/**
+		 * The camera delivers fewer than
+		 * {@link CameraManager#MIN_SHOT_DETECTION_FPS} frames per second
+		 */
+		CAMERA_TOO_SLOW
+	}
+
+	// Weight of the newest sample in the moving average of the detection cost
+	private static final double COST_SMOOTHING = 0.1;
+
+	private double averageCost = 0; // s
+	private int stride = 1;
+	private long frameCount = 0;
+	private double detectionFPS = 0;
+	private State state = State.FULL_RATE;
+
+	/**
+	 * @return <tt>true</tt> if the next frame should be detected
+	 */
+	public synchronized boolean shouldDetect() {
+		return frameCount++ % stride == 0;
+	}
+
+	/**
+	 * Record how long detecting one frame took.
+	 */
+	public synchronized void recordCost(long cost, TimeUnit unit) {
+		final double seconds = (double)unit.toNanos(cost) / TimeUnit.SECONDS.toNanos(1);
+
+		averageCost = averageCost == 0 ? seconds : averageCost + COST_SMOOTHING * (seconds - averageCost);
+	}
+
+	/**
+	 * Choose a new detection rate.
+	 *
+	 * @param cameraFPS	the rate frames arrive at
+	 * @param cpuBudget	the share of one core detection may use, e.g. 0.5
+	 * @param minFPS	the lowest rate frames may be detected at, a minimum the
+	 * 					camera cannot reach means every frame is detected
+	 * @return the new state
+	 */
+	public synchronized State adjust(double cameraFPS, double cpuBudget, double minFPS) {
+		if (cameraFPS <= 0 || averageCost == 0) return state;
+
+		if (cameraFPS < CameraManager.MIN_SHOT_DETECTION_FPS) {
+			setStride(1);
+			state = State.CAMERA_TOO_SLOW;
+		} else {
+			minFPS = Math.min(minFPS, cameraFPS);
+			final double budgetFPS = cpuBudget / averageCost;
+			final double targetFPS = Math.max(Math.min(cameraFPS, budgetFPS), minFPS);
+
+			// Round the stride down so detection never drops below the target
+			setStride(Math.max(1, (int)(cameraFPS / targetFPS)));
+
+			if (budgetFPS < minFPS) {
+				state = State.OVER_BUDGET;
+			} else {
+				state = stride == 1 ? State.FULL_RATE : State.THROTTLED;
+			}
+		}
+
+		detectionFPS = cameraFPS / stride;
+		return state;
+	}
+
+	private void setStride(int stride) {
+		if (stride != this.stride) {
+			this.stride = stride;
+			// Detect the next frame so the gap never exceeds either stride
+			frameCount = 0;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return how many frames are skipped for every frame that is detected,
+	 * 			plus one
+	 */
+	public synchronized int getStride() {
+		return stride;
+	}
+
+	/**
+	 * @return the average time it takes to detect one frame in seconds
+	 */
+	public synchronized double getAverageCost() {
+		return averageCost;
+	}
+
+	/**
+	 * @return the rate frames are detected at as of the last adjustment
+	 */
+	public synchronized double getDetectionFPS() {
+		return detectionFPS;
+	}
+}
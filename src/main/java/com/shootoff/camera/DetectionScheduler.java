@@ -0,0 +1,207 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the detection stages of every camera on one set of worker threads
+ * sized to the machine. Each camera's frames are still processed one at a
+ * time and in order because detection keeps per-camera state, but cameras
+ * take turns so a busy camera cannot starve the others. Each stage's queue is
+ * bounded, and stages can discard frames that have gone stale waiting for a
+ * worker.
+ */
+public class DetectionScheduler {
+	// How often the scheduler logs whether detection is keeping up
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+	private final Logger logger = LoggerFactory.getLogger(DetectionScheduler.class);
+	private final int threadCount;
+	private final Object lock = new Object();
+	private final List<FrameStage> stages = new ArrayList<FrameStage>();
+
+	private int nextStage = 0;
+	private boolean running = true;
+	private boolean started = false;
+
+	// Busy time accounting for the report, guarded by lock
+	private long busyTime = 0; // ns
+	private long sampleStart = System.nanoTime();
+	private long lastReport = sampleStart;
+	private final List<Long> reportedFrames = new ArrayList<Long>();
+
+	public DetectionScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public DetectionScheduler(int threadCount) {
+		if (threadCount < 1) throw new IllegalArgumentException("A scheduler needs at least one thread");
+
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	protected void register(FrameStage stage) {
+		synchronized (lock) {
+			if (!running) throw new IllegalStateException("The detection scheduler has been shut down");
+
+			stages.add(stage);
+			reportedFrames.add(stage.getProcessedFrames());
+			if (!started) startWorkers();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stop scheduling <tt>stage</tt>, waiting for a worker that is processing
+	 * one of its frames to finish.
+	 */
+	protected void unregister(FrameStage stage) {
+		synchronized (lock) {
+			try {
+				while (stage.isClaimed()) lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			int index = stages.indexOf(stage);
+			if (index < 0) return;
+
+			stages.remove(index);
+			reportedFrames.remove(index);
+			if (nextStage > index) nextStage--;
+		}
+	}
+
+	protected void frameQueued() {
+		synchronized (lock) {
+			lock.notify();
+		}
+	}
+
+	/**
+	 * Stop the workers once they finish the frames they are processing. Stages
+	 * that are still registered are stopped too, which releases their queued
+	 * frames and the producers waiting on them. No stages can be registered
+	 * afterwards.
+	 */
+	public void shutdown() {
+		final List<FrameStage> registered;
+
+		synchronized (lock) {
+			running = false;
+			registered = new ArrayList<FrameStage>(stages);
+			lock.notifyAll();
+		}
+
+		// Stopping a stage waits for the worker processing it
+		for (FrameStage stage : registered) stage.stop();
+	}
+
+	private void startWorkers() {
+		started = true;
+
+		for (int i = 0; i < threadCount; i++) {
+			Thread worker = new Thread(this::work, String.format("Detection Worker %d", i));
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Claim the next stage in round-robin order that has a frame waiting and is
+	 * not already being processed by another worker. Must be called with the
+	 * lock held.
+	 */
+	private FrameStage claimNextStage() {
+		for (int i = 0; i < stages.size(); i++) {
+			int index = (nextStage + i) % stages.size();
+			FrameStage stage = stages.get(index);
+
+			if (!stage.isClaimed() && stage.isRunning() && stage.getQueueDepth() > 0) {
+				stage.setClaimed(true);
+				nextStage = (index + 1) % stages.size();
+				return stage;
+			}
+		}
+
+		return null;
+	}
+
+	private void work() {
+		while (true) {
+			FrameStage stage = null;
+
+			synchronized (lock) {
+				try {
+					while (running && (stage = claimNextStage()) == null) lock.wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				if (!running) return;
+			}
+
+			long start = System.nanoTime();
+			try {
+				stage.processNext();
+			} finally {
+				long end = System.nanoTime();
+
+				synchronized (lock) {
+					busyTime += end - start;
+					stage.setClaimed(false);
+					// The stage may have more frames, and unregister may be waiting on it
+					lock.notifyAll();
+
+					if (end - lastReport >= REPORT_INTERVAL) report(end);
+				}
+			}
+		}
+	}
+
+	private void report(long now) {
+		double seconds = (double)(now - lastReport) / TimeUnit.SECONDS.toNanos(1);
+		double overall = (double)(busyTime) / (double)((now - sampleStart) * threadCount);
+
+		logger.debug("Detection workers {}% busy on {} threads", Math.round(overall * 100), threadCount);
+
+		for (int i = 0; i < stages.size(); i++) {
+			FrameStage stage = stages.get(i);
+			long processed = stage.getProcessedFrames();
+
+			logger.debug("  {}: {} FPS, {} queued, {} stale", stage.getName(),
+					String.format("%.1f", (processed - reportedFrames.get(i)) / seconds), stage.getQueueDepth(),
+					stage.getStaleFrames());
+
+			reportedFrames.set(i, processed);
+		}
+
+		lastReport = now;
+	}
+}
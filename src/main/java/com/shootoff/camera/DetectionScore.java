@@ -0,0 +1,134 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.util.List;
+
+/**
+ * Scores the shots a detector reported against the shots a
+ * {@link LaserShotGenerator} drew. A reported shot counts as a hit if it was
+ * found while a generated dot was on, or within <tt>lateFrames</tt> after it
+ * went off, and within <tt>tolerance</tt> pixels of the dot's center. The first
+ * hit on a dot finds it, later hits on the same dot are counted as repeats,
+ * which the camera manager's deduplication would discard. Every other reported
+ * shot is a false positive.
+ */
+public class DetectionScore {
+	private final List<LaserShotGenerator.GeneratedShot> expectedShots;
+	private final boolean[] found;
+	private final int tolerance;
+	private final int lateFrames;
+
+	private int truePositives = 0;
+	private int falsePositives = 0;
+	private int repeats = 0;
+	private double totalError = 0;
+
+	public DetectionScore(List<LaserShotGenerator.GeneratedShot> expectedShots, int tolerance, int lateFrames) {
+		this.expectedShots = expectedShots;
+		this.found = new boolean[expectedShots.size()];
+		this.tolerance = tolerance;
+		this.lateFrames = lateFrames;
+	}
+
+	/**
+	 * Score a shot reported in frame <tt>frameNumber</tt>.
+	 */
+	public void addDetection(long frameNumber, int x, int y) {
+		int match = -1;
+		double matchDistance = Double.MAX_VALUE;
+
+		for (int i = 0; i < expectedShots.size(); i++) {
+			LaserShotGenerator.GeneratedShot shot = expectedShots.get(i);
+			if (frameNumber < shot.getFrame() || frameNumber >= shot.getFrame() + shot.getDuration() + lateFrames)
+				continue;
+
+			final double distance = Math.hypot(x - shot.getX(), y - shot.getY());
+			if (distance > tolerance) continue;
+
+			// Prefer a dot that has not been found yet over the closest one
+			if (match == -1 || (found[match] && !found[i]) ||
+					(found[match] == found[i] && distance < matchDistance)) {
+				match = i;
+				matchDistance = distance;
+			}
+		}
+
+		if (match == -1) {
+			falsePositives++;
+		} else if (found[match]) {
+			repeats++;
+		} else {
+			found[match] = true;
+			truePositives++;
+			totalError += matchDistance;
+		}
+	}
+
+	public int getTruePositives() {
+		return truePositives;
+	}
+
+	public int getFalsePositives() {
+		return falsePositives;
+	}
+
+	/**
+	 * @return the number of generated shots that were never found
+	 */
+	public int getFalseNegatives() {
+		return expectedShots.size() - truePositives;
+	}
+
+	/**
+	 * @return the number of reported shots that hit a dot that was already found
+	 */
+	public int getRepeats() {
+		return repeats;
+	}
+
+	/**
+	 * @return the share of reported shots, repeats aside, that were real shots
+	 */
+	public double getPrecision() {
+		final int reported = truePositives + falsePositives;
+		return reported == 0 ? 1 : truePositives / (double)reported;
+	}
+
+	/**
+	 * @return the share of generated shots that were found
+	 */
+	public double getRecall() {
+		return expectedShots.isEmpty() ? 1 : truePositives / (double)expectedShots.size();
+	}
+
+	/**
+	 * @return the average distance in pixels between found shots and the
+	 * 		   centers of their dots
+	 */
+	public double getMeanError() {
+		return truePositives == 0 ? 0 : totalError / truePositives;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("precision %.3f, recall %.3f (%d found, %d missed, %d false, %d repeats), "
+				+ "mean error %.2f px", getPrecision(), getRecall(), truePositives, getFalseNegatives(),
+				falsePositives, repeats, getMeanError());
+	}
+}
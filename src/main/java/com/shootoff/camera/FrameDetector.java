@@ -0,0 +1,234 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javafx.geometry.Bounds;
+
+/**
+ * The steps every camera frame goes through on its way to the detection
+ * kernel. The camera manager and {@link VideoReplay} both search frames with
+ * this class, so a replayed video finds exactly the shots a live lane would.
+ *
+ * Frames identical to the previous frame are recognized on the capture side
+ * (see {@link #isDuplicate(BufferedImage)}) so that they never reach detection.
+ * Every other frame is passed to {@link #detectShots(BufferedImage, List)},
+ * which skips the frames the rate controller does not want detected, updates
+ * the pixel transformer's averages, waits for the transformer to initialize and
+ * then searches the enabled sectors of the frame, or only the projection if
+ * detection is limited to it. The rate controller detects every frame until
+ * its owner adjusts it, which the camera manager only does for webcams.
+ *
+ * Shots are reported in frame coordinates. Projection bounds are given in the
+ * coordinates of the feed the canvas shows, like everything else the GUI
+ * hands the camera manager.
+ */
+public class FrameDetector {
+	private final PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
+	private final AverageFrameComponents averages = new AverageFrameComponents();
+	private final ShotDetectionKernel detectionKernel;
+	private final FrameIdentity frameIdentity = new FrameIdentity();
+	private final DetectionRateController rateController = new DetectionRateController();
+	private final List<ShotCandidate> shotCandidates = new ArrayList<ShotCandidate>();
+
+	private int seenFrames = 0;
+	private boolean isDetecting = true;
+	private boolean cropFeedToProjection = false;
+	private boolean limitDetectProjection = false;
+	private Optional<Bounds> projectionBounds = Optional.empty();
+	private boolean[][] sectorStatuses;
+
+	public FrameDetector(int historySize) {
+		detectionKernel = new ShotDetectionKernel(historySize);
+		sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+
+		// Turn on all shot sectors by default
+		for (int x = 0; x < ShotSearcher.SECTOR_COLUMNS; x++) {
+			for (int y = 0; y < ShotSearcher.SECTOR_ROWS; y++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+	}
+
+	/**
+	 * Projection bounds are in the coordinates of the 640x480 feed the canvas
+	 * shows. Frames of any other size are shown scaled to the feed, so the
+	 * bounds are scaled the other way to find the same region of a frame.
+	 */
+	public static Rectangle toFrameBounds(Bounds b, BufferedImage frame) {
+		final double scaleX = (double)frame.getWidth() / CameraManager.FEED_WIDTH;
+		final double scaleY = (double)frame.getHeight() / CameraManager.FEED_HEIGHT;
+
+		return new Rectangle((int)(b.getMinX() * scaleX), (int)(b.getMinY() * scaleY),
+				(int)(b.getWidth() * scaleX), (int)(b.getHeight() * scaleY));
+	}
+
+	/**
+	 * Called for every frame the source delivers, before the frame is handed
+	 * to detection.
+	 *
+	 * @return <tt>true</tt> if <tt>frame</tt> has the same pixels as the
+	 * 		   previous frame and should not be detected
+	 */
+	public boolean isDuplicate(BufferedImage frame) {
+		return frameIdentity.isDuplicate(frame);
+	}
+
+	/**
+	 * @return the number of frames skipped because they were identical to the
+	 * 			frame before them
+	 */
+	public long getDuplicateFrames() {
+		return frameIdentity.getDuplicateFrames();
+	}
+
+	/**
+	 * Search the next frame for shots.
+	 *
+	 * @param shots	the list found shots are added to, in frame coordinates
+	 * @return <tt>false</tt> if the rate controller skipped the frame
+	 */
+	public boolean detectShots(BufferedImage frame, List<ShotCandidate> shots) {
+		if (!rateController.shouldDetect()) return false;
+
+		final long start = System.nanoTime();
+
+		try {
+			updateAverages(frame);
+
+			// The pixel transformer needs a few frames to initialize
+			if (seenFrames < CameraManager.INIT_FRAME_COUNT) {
+				seenFrames++;
+				if (seenFrames < CameraManager.INIT_FRAME_COUNT) return true;
+			}
+
+			if (isDetecting) searchFrame(frame, shots);
+		} finally {
+			rateController.recordCost(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+
+		return true;
+	}
+
+	private void updateAverages(BufferedImage frame) {
+		if (limitDetectProjection && projectionBounds.isPresent()) {
+			Rectangle b = toFrameBounds(projectionBounds.get(), frame);
+			averages.update(frame, b.x, b.y, b.x + b.width, b.y + b.height, pixelTransformer);
+		} else {
+			averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+		}
+	}
+
+	private void searchFrame(BufferedImage frame, List<ShotCandidate> shots) {
+		BufferedImage detectedFrame = frame;
+		Optional<Rectangle> detectionBounds = Optional.empty();
+		int offsetX = 0, offsetY = 0;
+
+		if (projectionBounds.isPresent()) {
+			Rectangle b = toFrameBounds(projectionBounds.get(), frame);
+
+			// A cropped frame already only contains the projection
+			if (cropFeedToProjection) {
+				detectedFrame = frame.getSubimage(b.x, b.y, b.width, b.height);
+				offsetX = b.x;
+				offsetY = b.y;
+			} else if (limitDetectProjection) {
+				detectionBounds = Optional.of(b);
+			}
+		}
+
+		detectionKernel.setDetectionArea(sectorStatuses, detectionBounds);
+
+		shotCandidates.clear();
+		if (!detectionKernel.detectShots(detectedFrame, shotCandidates)) return;
+
+		for (ShotCandidate shot : shotCandidates) {
+			if (offsetX == 0 && offsetY == 0) {
+				shots.add(shot);
+			} else {
+				shots.add(new ShotCandidate(shot.getX() + offsetX, shot.getY() + offsetY, shot.getStrength()));
+			}
+		}
+	}
+
+	/**
+	 * @return <tt>true</tt> once the pixel transformer has seen enough frames
+	 * 		   for shots to be searched for
+	 */
+	public boolean isInitialized() {
+		return seenFrames >= CameraManager.INIT_FRAME_COUNT;
+	}
+
+	public LightingCondition getLightingCondition() {
+		return averages.getLightingCondition();
+	}
+
+	/**
+	 * @return the kernel frames are searched with, which may be configured
+	 * 		   between frames
+	 */
+	public ShotDetectionKernel getDetectionKernel() {
+		return detectionKernel;
+	}
+
+	/**
+	 * @return the controller that decides which frames are detected
+	 */
+	public DetectionRateController getRateController() {
+		return rateController;
+	}
+
+	public boolean[][] getSectorStatuses() {
+		return sectorStatuses;
+	}
+
+	public void setSectorStatuses(boolean[][] sectorStatuses) {
+		this.sectorStatuses = sectorStatuses;
+	}
+
+	public void setDetecting(boolean isDetecting) {
+		this.isDetecting = isDetecting;
+	}
+
+	public Optional<Bounds> getProjectionBounds() {
+		return projectionBounds;
+	}
+
+	public void setProjectionBounds(Bounds projectionBounds) {
+		this.projectionBounds = Optional.ofNullable(projectionBounds);
+	}
+
+	public boolean isCropFeedToProjection() {
+		return cropFeedToProjection;
+	}
+
+	public void setCropFeedToProjection(boolean cropFeed) {
+		cropFeedToProjection = cropFeed;
+	}
+
+	public void setLimitDetectProjection(boolean limitDetection) {
+		limitDetectProjection = limitDetection;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Recognizes frames whose pixels are identical to the previous frame's. Many
+ * webcams and the video reader hand back the same picture more than once, and
+ * a repeated frame has nothing new for detection, the background history or
+ * the preview.
+ *
+ * Frames are compared by a checksum of all of their pixels read straight from
+ * the frame's data buffer (see {@link PackedRaster}). A laser spot only covers
+ * a few pixels, so a checksum of a sample of the pixels could take the frame a
+ * shot first shows up in for a repeat.
+ */
+public class FrameIdentity {
+	private static final long PRIME = 0x100000001B3L;
+
+	private long lastChecksum = 0;
+	private boolean hasLastFrame = false;
+	private volatile long duplicateFrames = 0;
+
+	/**
+	 * @return <tt>true</tt> if <tt>frame</tt> has the same size and pixels as
+	 * 		   the frame passed to the previous call
+	 */
+	public boolean isDuplicate(BufferedImage frame) {
+		final long checksum = checksum(frame);
+		final boolean duplicate = hasLastFrame && checksum == lastChecksum;
+
+		lastChecksum = checksum;
+		hasLastFrame = true;
+		if (duplicate) duplicateFrames++;
+
+		return duplicate;
+	}
+
+	/**
+	 * @return the number of frames that were found to be duplicates
+	 */
+	public long getDuplicateFrames() {
+		return duplicateFrames;
+	}
+
+	/**
+	 * @return a checksum of the size and every pixel of <tt>frame</tt>
+	 */
+	public static long checksum(BufferedImage frame) {
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final WritableRaster raster = frame.getRaster();
+		final int originX = -raster.getSampleModelTranslateX();
+		final int originY = -raster.getSampleModelTranslateY();
+
+		// Fletcher style: the running sum of the running sum makes the checksum
+		// depend on where each value is, not just on the values
+		long sum = 0, sumOfSums = 0;
+
+		if (frame.getType() == BufferedImage.TYPE_INT_RGB) {
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel)raster.getSampleModel();
+			DataBufferInt db = (DataBufferInt)raster.getDataBuffer();
+			int[] data = db.getData();
+			int scanline = sm.getScanlineStride();
+			int rowStart = db.getOffset() + originY * scanline + originX;
+
+			for (int y = 0; y < height; y++, rowStart += scanline) {
+				for (int p = rowStart, rowEnd = rowStart + width; p < rowEnd; p++) {
+					sum += data[p] & 0x00FFFFFF;
+					sumOfSums += sum;
+				}
+			}
+		} else if (frame.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+			DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+			byte[] data = db.getData();
+			int scanline = sm.getScanlineStride();
+			int pixelStride = sm.getPixelStride();
+			int rowStart = db.getOffset() + originY * scanline + originX * pixelStride;
+
+			// Every byte of the row, the pixels of a 3 byte BGR frame are packed
+			for (int y = 0; y < height; y++, rowStart += scanline) {
+				for (int p = rowStart, rowEnd = rowStart + width * pixelStride; p < rowEnd; p++) {
+					sum += data[p] & 0xFF;
+					sumOfSums += sum;
+				}
+			}
+		} else {
+			int[] row = new int[width];
+
+			for (int y = 0; y < height; y++) {
+				frame.getRGB(0, y, width, 1, row, 0, width);
+
+				for (int x = 0; x < width; x++) {
+					sum += row[x] & 0x00FFFFFF;
+					sumOfSums += sum;
+				}
+			}
+		}
+
+		return (((sumOfSums * PRIME) + sum) * PRIME + width) * PRIME + height;
+	}
+}
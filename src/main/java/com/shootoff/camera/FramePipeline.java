@@ -0,0 +1,181 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands captured frames from the capture thread to a set of {@link FrameStage}s
+ * that each run on their own thread, so a slow stage (e.g. detection) does not
+ * stall the others (e.g. the preview). Frames travel in a bounded ring of
+ * reusable {@link CameraFrame} slots sized so that the capture thread only ever
+ * waits on a full stage whose policy is {@link FrameStage.DropPolicy#NEVER_DROP}.
+ * Once every stage is done with a frame its image is released to the
+ * pipeline's {@link FramePool}.
+ */
+public class FramePipeline {
+	private final Logger logger = LoggerFactory.getLogger(FramePipeline.class);
+	private final String name;
+	private final FramePool framePool;
+	private final List<FrameStage> stages = new ArrayList<FrameStage>();
+	private final Deque<CameraFrame> freeFrames = new ArrayDeque<CameraFrame>();
+
+	private volatile long capturedFrames = 0;
+	private boolean started = false;
+	private volatile boolean stopped = false;
+
+	public FramePipeline(String name) {
+		this(name, new FramePool());
+	}
+
+	public FramePipeline(String name, FramePool framePool) {
+		this.name = name;
+		this.framePool = framePool;
+	}
+
+	/**
+	 * Add a stage that every published frame is handed to. Stages can only be
+	 * added before the pipeline is started.
+	 */
+	public FrameStage addStage(String stageName, FrameStage.DropPolicy dropPolicy, int capacity,
+			FrameStage.FrameHandler handler) {
+		return addStage(stageName, dropPolicy, capacity, handler, null);
+	}
+
+	/**
+	 * Add a stage whose frames are processed by <tt>scheduler</tt> instead of a
+	 * thread of its own.
+	 */
+	public FrameStage addStage(String stageName, FrameStage.DropPolicy dropPolicy, int capacity,
+			FrameStage.FrameHandler handler, DetectionScheduler scheduler) {
+		if (started) throw new IllegalStateException("Stages cannot be added to a running pipeline");
+
+		FrameStage stage = new FrameStage(String.format("%s %s", name, stageName), dropPolicy, capacity,
+				handler, scheduler);
+		stages.add(stage);
+		return stage;
+	}
+
+	public void start() {
+		if (started) return;
+		started = true;
+
+		// Every stage can queue a full buffer and process one more frame, and the
+		// capture thread fills one slot while it waits on a full stage
+		int ringSize = 1;
+		for (FrameStage stage : stages) ringSize += stage.getCapacity() + 1;
+		synchronized (freeFrames) {
+			for (int i = 0; i < ringSize; i++) freeFrames.add(new CameraFrame(this));
+		}
+
+		for (FrameStage stage : stages) {
+			if (stage.getScheduler() != null) {
+				stage.getScheduler().register(stage);
+			} else {
+				Thread stageThread = new Thread(stage, stage.getName());
+				stageThread.setDaemon(true);
+				stageThread.start();
+			}
+		}
+	}
+
+	/**
+	 * Hand a frame to every stage, applying each stage's drop policy. Only one
+	 * thread may publish frames to a pipeline. The pipeline owns <tt>image</tt>
+	 * from here on.
+	 */
+	public void publish(BufferedImage image) throws InterruptedException {
+		final CameraFrame frame;
+		try {
+			frame = acquire();
+		} catch (InterruptedException e) {
+			framePool.release(image);
+			throw e;
+		}
+
+		frame.set(image, capturedFrames++);
+
+		try {
+			for (FrameStage stage : stages) stage.offer(frame);
+		} finally {
+			// Drop the capture thread's reference, the stages hold their own
+			frame.release();
+		}
+	}
+
+	private CameraFrame acquire() throws InterruptedException {
+		synchronized (freeFrames) {
+			while (freeFrames.isEmpty()) freeFrames.wait();
+			return freeFrames.poll();
+		}
+	}
+
+	protected void recycle(CameraFrame frame, BufferedImage image) {
+		framePool.release(image);
+
+		synchronized (freeFrames) {
+			freeFrames.add(frame);
+			freeFrames.notifyAll();
+		}
+	}
+
+	/**
+	 * Wait until every published frame has been processed or dropped by every
+	 * stage.
+	 */
+	public void drain() throws InterruptedException {
+		for (FrameStage stage : stages) stage.awaitIdle();
+	}
+
+	/**
+	 * Stop every stage. Frames published afterwards are released right away.
+	 * Stopping a stopped pipeline does nothing.
+	 */
+	public void stop() {
+		if (stopped) return;
+		stopped = true;
+
+		for (FrameStage stage : stages) stage.stop();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Stopped frame pipeline {} after {} frames", name, capturedFrames);
+			for (FrameStage stage : stages) logger.debug("  {}", stage);
+		}
+	}
+
+	public FramePool getFramePool() {
+		return framePool;
+	}
+
+	public long getCapturedFrames() {
+		return capturedFrames;
+	}
+
+	public List<FrameStage> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reusable frame buffers for one camera. A frame is acquired for a size and
+ * type, handed along, and released by whoever is done with it last, after
+ * which the next acquire of the same size and type gets it back instead of a
+ * newly allocated frame. Releasing an image the pool did not hand out, such as
+ * one a webcam driver or video decoder allocated, does nothing, so frames can
+ * be released without tracking where they came from.
+ *
+ * Video files are decoded into pooled frames (see {@link VideoPictureConverter})
+ * and so are webcams whose driver gives buffer access, like the synthetic
+ * source and the video recorder's buffers. Only webcams read through
+ * webcam-capture's grabbing thread still get a new image for every frame.
+ */
+public class FramePool {
+	// A camera only uses a handful of sizes, so a list is searched instead of
+	// building a map key for every acquire
+	private final List<FreeFrames> freeFrames = new ArrayList<FreeFrames>();
+	private final Set<BufferedImage> acquiredFrames = Collections
+			.newSetFromMap(new IdentityHashMap<BufferedImage, Boolean>());
+	private long allocatedFrames = 0;
+
+	private static class FreeFrames {
+		private final int width;
+		private final int height;
+		private final int type;
+		private final Deque<BufferedImage> frames = new ArrayDeque<BufferedImage>();
+
+		private FreeFrames(int width, int height, int type) {
+			this.width = width;
+			this.height = height;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * @return a frame of the given size and type whose contents are whatever
+	 * 		   its last user left in it
+	 */
+	public synchronized BufferedImage acquire(int width, int height, int type) {
+		BufferedImage frame = getFreeFrames(width, height, type).frames.poll();
+
+		if (frame == null) {
+			frame = new BufferedImage(width, height, type);
+			allocatedFrames++;
+		}
+
+		acquiredFrames.add(frame);
+		return frame;
+	}
+
+	/**
+	 * Give a frame back to the pool. The frame must not be used afterwards.
+	 *
+	 * @return <tt>true</tt> if the frame came from this pool and was not
+	 * 		   already released
+	 */
+	public synchronized boolean release(BufferedImage frame) {
+		if (frame == null || !acquiredFrames.remove(frame)) return false;
+
+		// Most recently used first, its pixels are the most likely to be cached
+		getFreeFrames(frame.getWidth(), frame.getHeight(), frame.getType()).frames.push(frame);
+		return true;
+	}
+
+	private FreeFrames getFreeFrames(int width, int height, int type) {
+		for (FreeFrames free : freeFrames) {
+			if (free.width == width && free.height == height && free.type == type) return free;
+		}
+
+		FreeFrames free = new FreeFrames(width, height, type);
+		freeFrames.add(free);
+		return free;
+	}
+
+	/**
+	 * @return the number of frames the pool has allocated, which stops growing
+	 * 		   once every frame in use is being reused
+	 */
+	public synchronized long getAllocatedFrames() {
+		return allocatedFrames;
+	}
+
+	/**
+	 * @return the number of frames that are acquired and not yet released
+	 */
+	public synchronized int getAcquiredFrames() {
+		return acquiredFrames.size();
+	}
+}
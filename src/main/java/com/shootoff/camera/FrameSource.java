@@ -0,0 +1,110 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+/**
+ * Where a {@link Camera} gets its frames from: a webcam, a video file or a
+ * generator. Frames are pulled by one capture thread, which waits for each
+ * frame with {@link #awaitImage(long)} and then reads it with
+ * {@link #getImage()}. Sources other than webcams let ShootOFF run, and its
+ * detection be measured, without a physical camera.
+ */
+public interface FrameSource {
+	public String getName();
+
+	/**
+	 * Open the source so that single images can be read from it.
+	 */
+	public boolean open();
+
+	/**
+	 * Open the source to deliver a stream of frames. Sources that can deliver
+	 * frames on a thread of their own do so, the rest open like
+	 * {@link #open()}.
+	 */
+	public default boolean openStreaming() {
+		return open();
+	}
+
+	public boolean close();
+
+	public boolean isOpen();
+
+	/**
+	 * @return whether another program holds the source, which only applies to
+	 * 		   webcams
+	 */
+	public default boolean isLocked() {
+		return false;
+	}
+
+	/**
+	 * @return <tt>true</tt> if the source has a frame that has not been read
+	 * 		   with {@link #getImage()} yet
+	 */
+	public boolean isImageNew();
+
+	/**
+	 * Block until the source has a frame that has not been read yet, it is
+	 * closed, or <tt>timeout</tt> passes. The calling thread sleeps while it
+	 * waits.
+	 *
+	 * @param timeout	the longest time to wait in milliseconds
+	 * @return <tt>true</tt> if a new frame can be read with {@link #getImage()}
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean awaitImage(long timeout) throws InterruptedException;
+
+	/**
+	 * @return the newest frame, or <tt>null</tt> if the source has none
+	 */
+	public BufferedImage getImage();
+
+	/**
+	 * Read the newest frame like {@link #getImage()}, into a frame acquired from
+	 * <tt>pool</tt> if the source can. The caller owns the frame and releases it
+	 * to <tt>pool</tt> once it is done with it. Sources whose frames are
+	 * allocated for them, like webcams whose driver has no buffer access,
+	 * return those frames.
+	 */
+	public default BufferedImage getImage(FramePool pool) {
+		return getImage();
+	}
+
+	/**
+	 * @return the rate the source has been delivering frames at
+	 */
+	public double getFPS();
+
+	/**
+	 * @return the sizes the source can deliver frames at, empty for sources
+	 * 		   whose frames have a fixed size
+	 */
+	public default Dimension[] getViewSizes() {
+		return new Dimension[0];
+	}
+
+	/**
+	 * Ask for frames of <tt>size</tt>. Sources whose frames have a fixed size
+	 * ignore this.
+	 */
+	public void setViewSize(Dimension size);
+}
@@ -0,0 +1,276 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of a {@link FramePipeline}. Frames handed to the stage wait in a
+ * bounded queue and are processed in order, either on the stage's own thread
+ * or by a shared {@link DetectionScheduler}. What happens when the queue is
+ * full is decided by the stage's {@link DropPolicy}.
+ */
+public class FrameStage implements Runnable {
+	public enum DropPolicy {
+		/** Block the producer until there is room, frames are never lost */
+		NEVER_DROP,
+		/** Discard the oldest queued frame to make room for the new one */
+		DROP_OLDEST,
+		/** Discard the new frame */
+		DROP_NEWEST
+	}
+
+	public interface FrameHandler {
+		void handleFrame(CameraFrame frame);
+	}
+
+	private static final long POLL_TIMEOUT = 100; // ms
+
+	private final Logger logger = LoggerFactory.getLogger(FrameStage.class);
+	private final String name;
+	private final DropPolicy dropPolicy;
+	private final BlockingQueue<CameraFrame> queue;
+	private final FrameHandler handler;
+
+	private final AtomicLong processedFrames = new AtomicLong(0);
+	private final AtomicLong droppedFrames = new AtomicLong(0);
+	private final AtomicLong staleFrames = new AtomicLong(0);
+	private final Object idleLock = new Object();
+	// Frames accepted by the stage that have not been processed or dropped yet
+	private int pendingFrames = 0;
+	private volatile boolean running = true;
+	private volatile long maxFrameAge = 0; // ns
+
+	private final DetectionScheduler scheduler;
+	// Only accessed while holding the scheduler's lock
+	private boolean claimed = false;
+
+	public FrameStage(String name, DropPolicy dropPolicy, int capacity, FrameHandler handler) {
+		this(name, dropPolicy, capacity, handler, null);
+	}
+
+	/**
+	 * @param scheduler	the scheduler that processes this stage's frames, or
+	 * 					<tt>null</tt> if the stage runs on its own thread
+	 */
+	public FrameStage(String name, DropPolicy dropPolicy, int capacity, FrameHandler handler,
+			DetectionScheduler scheduler) {
+		this.name = name;
+		this.dropPolicy = dropPolicy;
+		this.queue = new ArrayBlockingQueue<CameraFrame>(capacity);
+		this.handler = handler;
+		this.scheduler = scheduler;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+
+	public int getCapacity() {
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getProcessedFrames() {
+		return processedFrames.get();
+	}
+
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames that were discarded instead of processed
+	 * 			because they waited longer than the maximum frame age
+	 */
+	public long getStaleFrames() {
+		return staleFrames.get();
+	}
+
+	/**
+	 * Discard frames that have waited longer than <tt>maxFrameAge</tt>
+	 * milliseconds since they were captured when their turn comes. Zero, the
+	 * default, processes every frame no matter how old it is.
+	 */
+	public void setMaxFrameAge(long maxFrameAge) {
+		this.maxFrameAge = TimeUnit.MILLISECONDS.toNanos(maxFrameAge);
+	}
+
+	protected DetectionScheduler getScheduler() {
+		return scheduler;
+	}
+
+	protected boolean isClaimed() {
+		return claimed;
+	}
+
+	protected void setClaimed(boolean claimed) {
+		this.claimed = claimed;
+	}
+
+	protected void offer(CameraFrame frame) throws InterruptedException {
+		frame.retain();
+		changePending(1);
+
+		switch (dropPolicy) {
+		case NEVER_DROP:
+			// A stopped stage never takes another frame, so a producer waiting on
+			// it gives up instead of blocking forever
+			while (!queue.offer(frame, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				if (!running) {
+					frame.release();
+					changePending(-1);
+					return;
+				}
+			}
+			break;
+
+		case DROP_OLDEST:
+			while (!queue.offer(frame)) {
+				CameraFrame oldest = queue.poll();
+				if (oldest != null) drop(oldest);
+			}
+			break;
+
+		case DROP_NEWEST:
+			if (!queue.offer(frame)) drop(frame);
+			break;
+		}
+
+		// A frame queued after the stage stopped would never be released
+		if (!running) {
+			releaseQueuedFrames();
+			return;
+		}
+
+		if (scheduler != null) scheduler.frameQueued();
+	}
+
+	private void drop(CameraFrame frame) {
+		droppedFrames.incrementAndGet();
+		frame.release();
+		changePending(-1);
+	}
+
+	private void changePending(int delta) {
+		synchronized (idleLock) {
+			pendingFrames += delta;
+			if (pendingFrames == 0) idleLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Wait until every frame handed to this stage has been processed or dropped.
+	 */
+	protected void awaitIdle() throws InterruptedException {
+		synchronized (idleLock) {
+			while (pendingFrames > 0) idleLock.wait();
+		}
+	}
+
+	/**
+	 * Stop the stage after the frame it is currently processing. Frames still in
+	 * the queue, and frames offered from here on, are released without being
+	 * processed.
+	 */
+	protected void stop() {
+		running = false;
+
+		if (scheduler != null) {
+			scheduler.unregister(this);
+			releaseQueuedFrames();
+		}
+	}
+
+	protected boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Process the frame at the head of the queue if there is one.
+	 *
+	 * @return <tt>true</tt> if a frame was taken off the queue
+	 */
+	protected boolean processNext() {
+		return process(queue.poll());
+	}
+
+	private boolean process(CameraFrame frame) {
+		if (frame == null) return false;
+
+		if (maxFrameAge > 0 && System.nanoTime() - frame.getCaptureTime() > maxFrameAge) {
+			staleFrames.incrementAndGet();
+			frame.release();
+			changePending(-1);
+			return true;
+		}
+
+		try {
+			handler.handleFrame(frame);
+		} catch (Exception e) {
+			logger.error(String.format("Error in frame stage %s", name), e);
+		} finally {
+			processedFrames.incrementAndGet();
+			frame.release();
+			changePending(-1);
+		}
+
+		return true;
+	}
+
+	private void releaseQueuedFrames() {
+		CameraFrame frame;
+		while ((frame = queue.poll()) != null) {
+			frame.release();
+			changePending(-1);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				process(queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		releaseQueuedFrames();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [%s]: depth %d/%d, processed %d, dropped %d, stale %d", name, dropPolicy,
+				getQueueDepth(), getCapacity(), getProcessedFrames(), getDroppedFrames(), getStaleFrames());
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets through at most a given number of frames per second out of a faster
+ * stream, e.g. to show 15 FPS of a 60 FPS camera. Frames are let through on a
+ * fixed schedule rather than whenever a full interval has passed since the
+ * last one, so a frame that arrives a little early does not make the next one
+ * wait a whole camera frame and the rate does not sag below the target.
+ */
+public class FrameThrottle {
+	private long interval; // ns
+	private long nextFrame = Long.MIN_VALUE;
+
+	public FrameThrottle(double fps) {
+		setFPS(fps);
+	}
+
+	public synchronized void setFPS(double fps) {
+		if (fps <= 0) throw new IllegalArgumentException("fps must be positive");
+
+		interval = (long)(TimeUnit.SECONDS.toNanos(1) / fps);
+	}
+
+	public boolean accept() {
+		return accept(System.nanoTime());
+	}
+
+	/**
+	 * @return <tt>true</tt> if the frame arriving at <tt>now</tt> should be let
+	 * 			through
+	 */
+	protected synchronized boolean accept(long now) {
+		// Frames up to a quarter interval early still count as on time
+		if (nextFrame != Long.MIN_VALUE && now < nextFrame - interval / 4) return false;
+
+		// A frame more than an interval late starts a new schedule, otherwise the
+		// frames after a long gap would all be let through to catch up
+		if (nextFrame == Long.MIN_VALUE || now - nextFrame >= interval) nextFrame = now;
+
+		nextFrame += interval;
+		return true;
+	}
+}
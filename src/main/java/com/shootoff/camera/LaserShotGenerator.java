@@ -0,0 +1,291 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Generates a stream of camera frames with laser shots at known positions and
+ * times, for measuring detection throughput and accuracy without a camera. A
+ * frame is a flat ambient level, optionally overlaid with projector content,
+ * plus per pixel sensor noise, with the laser dots of the shots that are on in
+ * that frame drawn on top. Frames are TYPE_3BYTE_BGR like the frames webcams
+ * and the video reader deliver. The same seed always produces the same stream.
+ *
+ * Plug it into a {@link SyntheticFrameSource} to feed it to a camera, or call
+ * {@link #generate(long)} directly, and score what the detector found against
+ * {@link #getShots()} with a {@link DetectionScore}.
+ */
+public class LaserShotGenerator implements SyntheticFrameSource.FrameGenerator {
+	public enum LaserColor { RED, GREEN }
+
+	public static final int DEFAULT_AMBIENT = 90;
+	public static final int DEFAULT_NOISE = 4;
+	public static final int DEFAULT_DOT_RADIUS = 2;
+
+	private final int width;
+	private final int height;
+	private final long seed;
+
+	private int ambient = DEFAULT_AMBIENT;
+	private int noise = DEFAULT_NOISE;
+	private Optional<BufferedImage> projectorContent = Optional.empty();
+	private Rectangle projectorBounds = null;
+	private int projectorSpeed = 0;
+	private final List<GeneratedShot> shots = new ArrayList<GeneratedShot>();
+
+	// Frame without noise and shots, redrawn when the projector content moves
+	private byte[] background = null;
+	private long backgroundOffset = -1;
+
+	public static class GeneratedShot {
+		private final long frame;
+		private final int x;
+		private final int y;
+		private final LaserColor color;
+		private final int radius;
+		private final int duration;
+
+		public GeneratedShot(long frame, int x, int y, LaserColor color, int radius, int duration) {
+			this.frame = frame;
+			this.x = x;
+			this.y = y;
+			this.color = color;
+			this.radius = radius;
+			this.duration = duration;
+		}
+
+		/**
+		 * @return the number of the first frame the dot is drawn in
+		 */
+		public long getFrame() {
+			return frame;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public LaserColor getColor() {
+			return color;
+		}
+
+		public int getRadius() {
+			return radius;
+		}
+
+		/**
+		 * @return the number of frames the dot is drawn in
+		 */
+		public int getDuration() {
+			return duration;
+		}
+
+		public boolean isOn(long frameNumber) {
+			return frameNumber >= frame && frameNumber < frame + duration;
+		}
+	}
+
+	public LaserShotGenerator(int width, int height, long seed) {
+		this.width = width;
+		this.height = height;
+		this.seed = seed;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @param ambient	the brightness, 0 to 255, of every channel of the scene
+	 * 					where there is no projector content
+	 */
+	public void setAmbient(int ambient) {
+		this.ambient = ambient;
+		backgroundOffset = -1;
+	}
+
+	/**
+	 * @param noise	the largest amount, in either direction, each channel of each
+	 * 				pixel randomly differs from the scene
+	 */
+	public void setNoise(int noise) {
+		this.noise = noise;
+	}
+
+	/**
+	 * Show <tt>content</tt> scaled to <tt>bounds</tt>, like a projector showing a
+	 * target on the wall the camera looks at.
+	 *
+	 * @param speed	pixels the content scrolls to the right by every frame, zero
+	 * 				for still content
+	 */
+	public void setProjectorContent(BufferedImage content, Rectangle bounds, int speed) {
+		projectorContent = Optional.of(content);
+		projectorBounds = bounds;
+		projectorSpeed = speed;
+		backgroundOffset = -1;
+	}
+
+	/**
+	 * Draw a laser dot centered on (<tt>x</tt>, <tt>y</tt>) in frames
+	 * <tt>frame</tt> to <tt>frame + duration - 1</tt>.
+	 */
+	public GeneratedShot addShot(long frame, int x, int y, LaserColor color, int radius, int duration) {
+		GeneratedShot shot = new GeneratedShot(frame, x, y, color, radius, duration);
+		shots.add(shot);
+		return shot;
+	}
+
+	/**
+	 * Add <tt>count</tt> shots at random positions at least <tt>margin</tt>
+	 * pixels from the edges of the frame, one every <tt>interval</tt> frames
+	 * starting at <tt>firstFrame</tt>. The positions depend only on the seed.
+	 */
+	public void addRandomShots(int count, long firstFrame, int interval, int margin, LaserColor color, int radius,
+			int duration) {
+		Random random = new Random(seed ^ shots.size());
+
+		for (int i = 0; i < count; i++) {
+			addShot(firstFrame + (long)i * interval, margin + random.nextInt(width - 2 * margin),
+					margin + random.nextInt(height - 2 * margin), color, radius, duration);
+		}
+	}
+
+	/**
+	 * @return every shot that was added, in the order they were added
+	 */
+	public List<GeneratedShot> getShots() {
+		return Collections.unmodifiableList(shots);
+	}
+
+	@Override
+	public BufferedImage generate(long frameNumber) {
+		return generate(frameNumber, new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR));
+	}
+
+	@Override
+	public BufferedImage generate(long frameNumber, FramePool pool) {
+		return generate(frameNumber, pool.acquire(width, height, BufferedImage.TYPE_3BYTE_BGR));
+	}
+
+	// Every pixel of frame is overwritten, so a reused frame needs no clearing
+	private BufferedImage generate(long frameNumber, BufferedImage frame) {
+		final byte[] data = ((DataBufferByte)frame.getRaster().getDataBuffer()).getData();
+
+		drawBackground(frameNumber);
+
+		// xorshift seeded per frame so any frame can be generated on its own
+		long state = (seed + 1) * 0x9E3779B97F4A7C15L + frameNumber * 0xBF58476D1CE4E5B9L;
+		if (state == 0) state = 1;
+		final int span = 2 * noise + 1;
+
+		for (int i = 0; i < data.length; i++) {
+			int value = background[i] & 0xFF;
+
+			if (noise > 0) {
+				state ^= state << 13;
+				state ^= state >>> 7;
+				state ^= state << 17;
+				value += (int)((state >>> 33) % span) - noise;
+			}
+
+			data[i] = (byte)Math.max(0, Math.min(255, value));
+		}
+
+		for (GeneratedShot shot : shots) {
+			if (shot.isOn(frameNumber)) drawDot(data, shot);
+		}
+
+		return frame;
+	}
+
+	private void drawBackground(long frameNumber) {
+		final long offset = projectorSpeed == 0 ? 0 : frameNumber * projectorSpeed;
+		if (background != null && offset == backgroundOffset) return;
+
+		BufferedImage scene = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = scene.createGraphics();
+		g.setColor(new Color(ambient, ambient, ambient));
+		g.fillRect(0, 0, width, height);
+
+		if (projectorContent.isPresent()) {
+			final Rectangle b = projectorBounds;
+			final int shift = (int)(offset % b.width);
+
+			g.setClip(b);
+			g.drawImage(projectorContent.get(), b.x + shift, b.y, b.width, b.height, null);
+			if (shift > 0) g.drawImage(projectorContent.get(), b.x + shift - b.width, b.y, b.width, b.height, null);
+		}
+
+		g.dispose();
+
+		background = ((DataBufferByte)scene.getRaster().getDataBuffer()).getData();
+		backgroundOffset = offset;
+	}
+
+	// The dot's core saturates the laser's channel and is bright in the others,
+	// fading to the scene at its edge like a real spot seen by a webcam
+	private void drawDot(byte[] data, GeneratedShot shot) {
+		final int radius = shot.getRadius();
+		final int halo = radius + 1;
+
+		for (int y = Math.max(0, shot.getY() - halo); y <= Math.min(height - 1, shot.getY() + halo); y++) {
+			for (int x = Math.max(0, shot.getX() - halo); x <= Math.min(width - 1, shot.getX() + halo); x++) {
+				final int dx = x - shot.getX();
+				final int dy = y - shot.getY();
+				final double distance = Math.sqrt(dx * dx + dy * dy);
+				if (distance > halo) continue;
+
+				// 1 inside the core, falling to 0 at the edge of the halo
+				final double weight = distance <= radius ? 1 : halo - distance;
+				final int i = (y * width + x) * 3;
+
+				// TYPE_3BYTE_BGR stores blue, green, red
+				final int laser = shot.getColor() == LaserColor.RED ? i + 2 : i + 1;
+				final int other = shot.getColor() == LaserColor.RED ? i + 1 : i + 2;
+
+				data[laser] = blend(data[laser], 255, weight);
+				data[other] = blend(data[other], 200, weight * 0.5);
+				data[i] = blend(data[i], 200, weight * 0.5);
+			}
+		}
+	}
+
+	private static byte blend(byte current, int target, double weight) {
+		final int value = current & 0xFF;
+		return (byte)Math.max(value, (int)Math.round(value + (target - value) * weight));
+	}
+}
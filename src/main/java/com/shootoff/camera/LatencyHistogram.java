@@ -0,0 +1,111 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread safe histogram of latencies. Latencies are bucketed in
+ * microseconds with eight buckets per power of two, so percentiles are
+ * accurate to within about 6% from a microsecond up to about a minute.
+ * Recording a latency does not allocate or lock.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Latencies below this many microseconds get a bucket each
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+	private static final int MAX_EXPONENT = 26; // 2^26 us is about 67 seconds
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong max = new AtomicLong(0);
+
+	public void record(long latency, TimeUnit unit) {
+		long micros = unit.toMicros(latency);
+		if (micros < 0) micros = 0;
+
+		counts.incrementAndGet(bucketFor(micros));
+		count.incrementAndGet();
+
+		long currentMax;
+		while (micros > (currentMax = max.get()) && !max.compareAndSet(currentMax, micros));
+	}
+
+	private static int bucketFor(long micros) {
+		if (micros < LINEAR_LIMIT) return (int)micros;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+
+		int subBucket = (int)(micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long bucketMidpoint(int bucket) {
+		if (bucket < LINEAR_LIMIT) return bucket;
+
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (SUB_BUCKETS + subBucket) * width + width / 2;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the largest latency recorded in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile	a percentile between 0 and 100
+	 * @return the latency in microseconds that <tt>percentile</tt> percent of
+	 * 			the recorded latencies are at or below, or 0 if nothing has been
+	 * 			recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0) return 0;
+
+		long rank = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+		if (rank < 1) rank = 1;
+
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) return Math.min(bucketMidpoint(i), max.get());
+		}
+
+		return max.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+		count.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reads frames directly out of their backing data buffers. BufferedImage.getRGB
+ * converts every pixel through the image's color model, which is far too slow
+ * to call several times per pixel per frame.
+ */
+public final class PackedRaster {
+	private PackedRaster() {}
+
+	/**
+	 * Copy the pixels of <tt>frame</tt> into <tt>dest</tt> as packed 0xRRGGBB
+	 * ints in row-major order (index = y * width + x). TYPE_INT_RGB and
+	 * TYPE_3BYTE_BGR frames are read straight from their data buffers, including
+	 * frames that are sub-images of a larger frame. Any other type falls back to
+	 * a single bulk getRGB call.
+	 *
+	 * @param frame	the frame to read
+	 * @param dest	the array to fill, a new array is allocated if it is null or
+	 * 				too small to hold the frame
+	 * @return the array the pixels were written to
+	 */
+	public static int[] readRGB(BufferedImage frame, int[] dest) {
+		return readRGB(frame, 0, 0, frame.getWidth(), frame.getHeight(), dest);
+	}
+
+	/**
+	 * Copy the <tt>width</tt> x <tt>height</tt> region of <tt>frame</tt> whose
+	 * top left corner is at (<tt>minX</tt>, <tt>minY</tt>) into <tt>dest</tt> as
+	 * packed 0xRRGGBB ints in row-major order (index = (y - minY) * width + (x -
+	 * minX)). Reading TYPE_INT_RGB and TYPE_3BYTE_BGR frames does not allocate
+	 * unless <tt>dest</tt> is too small.
+	 *
+	 * @see #readRGB(BufferedImage, int[])
+	 */
+	public static int[] readRGB(BufferedImage frame, int minX, int minY, int width, int height, int[] dest) {
+		if (dest == null || dest.length < width * height) dest = new int[width * height];
+
+		final WritableRaster raster = frame.getRaster();
+		// Sub-images share their parent's buffer and locate their origin through the
+		// sample model translation
+		final int originX = minX - raster.getSampleModelTranslateX();
+		final int originY = minY - raster.getSampleModelTranslateY();
+
+		if (frame.getType() == BufferedImage.TYPE_INT_RGB) {
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel)raster.getSampleModel();
+			DataBufferInt db = (DataBufferInt)raster.getDataBuffer();
+			int[] data = db.getData();
+			int scanline = sm.getScanlineStride();
+			int rowStart = db.getOffset() + originY * scanline + originX;
+
+			for (int y = 0, i = 0; y < height; y++, rowStart += scanline) {
+				for (int x = 0, p = rowStart; x < width; x++, p++, i++) {
+					dest[i] = data[p] & 0x00FFFFFF;
+				}
+			}
+		} else if (frame.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+			DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+			byte[] data = db.getData();
+			int scanline = sm.getScanlineStride();
+			int pixelStride = sm.getPixelStride();
+			// getBandOffsets() returns a copy, getOffset(0, 0, band) does not
+			int rOffset = sm.getOffset(0, 0, 0);
+			int gOffset = sm.getOffset(0, 0, 1);
+			int bOffset = sm.getOffset(0, 0, 2);
+			int rowStart = db.getOffset() + originY * scanline + originX * pixelStride;
+
+			for (int y = 0, i = 0; y < height; y++, rowStart += scanline) {
+				for (int x = 0, p = rowStart; x < width; x++, p += pixelStride, i++) {
+					dest[i] = ((data[p + rOffset] & 0xFF) << 16) |
+							((data[p + gOffset] & 0xFF) << 8) |
+							(data[p + bOffset] & 0xFF);
+				}
+			}
+		} else {
+			frame.getRGB(minX, minY, width, height, dest, 0, width);
+
+			for (int i = 0; i < width * height; i++) dest[i] &= 0x00FFFFFF;
+		}
+
+		return dest;
+	}
+}
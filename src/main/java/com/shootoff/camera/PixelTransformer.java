@@ -22,6 +22,20 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 
 public interface PixelTransformer {
+	/**
+	 * Prepare the filter for frames of the given size before their pixels are
+	 * passed to <tt>updateFilter</tt>.
+	 */
+	public void setFrameSize(int width, int height);
+
 	public void updateFilter(int x, int y, Color c);
+
+	/**
+	 * Update the filter with the pixels from <tt>minX</tt> (inclusive) to
+	 * <tt>maxX</tt> (exclusive) of row <tt>y</tt> without allocating.
+	 * <tt>scanline[offset + i]</tt> holds the packed 0xRRGGBB pixel at
+	 * <tt>x = minX + i</tt>.
+	 */
+	public void updateFilter(int y, int minX, int maxX, int[] scanline, int offset);
 	public void applyFilter(BufferedImage frame, int x, int y, LightingCondition lightCondition);
 }
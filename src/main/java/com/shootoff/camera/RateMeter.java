@@ -0,0 +1,77 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many events per second happen, e.g. frames shown or frames
+ * detected. The rate is recomputed once per window so it reads steadily in
+ * the UI, and it falls to zero when no events have happened for a whole
+ * window.
+ */
+public class RateMeter {
+	public static final long DEFAULT_WINDOW = 1000; // ms
+
+	private final long window; // ns
+	private long windowStart = -1;
+	private long count = 0;
+	private double rate = 0;
+
+	public RateMeter() {
+		this(DEFAULT_WINDOW);
+	}
+
+	public RateMeter(long window) {
+		this.window = TimeUnit.MILLISECONDS.toNanos(window);
+	}
+
+	public void mark() {
+		mark(System.nanoTime());
+	}
+
+	protected synchronized void mark(long now) {
+		// The first event only starts the clock
+		if (windowStart < 0) {
+			windowStart = now;
+			return;
+		}
+
+		count++;
+
+		final long elapsed = now - windowStart;
+		if (elapsed >= window) {
+			rate = (double)count * TimeUnit.SECONDS.toNanos(1) / elapsed;
+			count = 0;
+			windowStart = now;
+		}
+	}
+
+	/**
+	 * @return events per second over the last complete window
+	 */
+	public double getRate() {
+		return getRate(System.nanoTime());
+	}
+
+	protected synchronized double getRate(long now) {
+		if (windowStart < 0 || now - windowStart >= 2 * window) return 0;
+
+		return rate;
+	}
+}
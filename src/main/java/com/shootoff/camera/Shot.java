@@ -19,22 +19,30 @@
 package com.shootoff.camera;
 
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Ellipse;
 
 public class Shot {
 	private final Color color;
 	private final double x;
 	private final double y;
 	private final long timestamp;
-	private final Ellipse marker;
+	private final long captureTime;
+	private final int markerRadius;
 	
 	public Shot (Color color, double x, double y, long timestamp, int markerRadius) {
+		this(color, x, y, timestamp, System.nanoTime(), markerRadius);
+	}
+
+	/**
+	 * @param captureTime	the System.nanoTime() at which the frame the shot was
+	 * 						detected in was captured
+	 */
+	public Shot (Color color, double x, double y, long timestamp, long captureTime, int markerRadius) {
 		this.color = color;
 		this.x = x;
 		this.y = y;
 		this.timestamp = timestamp;
-		this.marker = new Ellipse(x, y, markerRadius, markerRadius);
-		this.marker.setFill(color);
+		this.captureTime = captureTime;
+		this.markerRadius = markerRadius;
 	}
 	
 	public Color getColor() {
@@ -53,7 +61,15 @@ public class Shot {
 		return timestamp;
 	}
 	
-	public Ellipse getMarker() {
-		return marker;
+	/**
+	 * @return the System.nanoTime() at which the frame the shot was detected in
+	 * 			was captured
+	 */
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public int getMarkerRadius() {
+		return markerRadius;
 	}
 }
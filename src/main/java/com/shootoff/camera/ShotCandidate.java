@@ -0,0 +1,49 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+/**
+ * A location in the camera frame that the detection kernel believes is a shot.
+ */
+public class ShotCandidate {
+	private final int x;
+	private final int y;
+	private final int strength;
+
+	public ShotCandidate(int x, int y, int strength) {
+		this.x = x;
+		this.y = y;
+		this.strength = strength;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the value of the Hough accumulator at this location
+	 */
+	public int getStrength() {
+		return strength;
+	}
+}
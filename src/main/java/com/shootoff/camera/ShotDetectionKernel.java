@@ -0,0 +1,1040 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The laser detection pass used by CameraManager. Each frame is compared
+ * against the brightest value each pixel had over the last few frames, pixels
+ * that jumped in brightness and sit on the edge of a bright spot are voted into
+ * a Hough accumulator, and the peaks of the accumulator above a threshold are
+ * reported as shots.
+ *
+ * A cell is a peak if no cell within the peak radius of it is larger. The
+ * neighborhood is read ring by ring outward from the cell, so the cells on the
+ * slopes of a peak usually stop after a ring or two. Cells of equal strength
+ * on a flat peak are then suppressed by keeping the strongest peaks first and
+ * dropping any peak within the radius of one already kept, which leaves exactly
+ * one shot per peak. Shots are reported strongest first, at most
+ * <tt>maxShots</tt> per frame.
+ *
+ * All pixel reads go straight to the frames' backing arrays (see
+ * {@link PackedRaster}) and the per-pixel history is kept by a
+ * {@link BackgroundModel}.
+ *
+ * Votes can be accumulated three ways (see {@link Accumulation}). SCATTER
+ * adds each voting pixel's amplitude to the twelve cells around it. GATHER and
+ * SEPARABLE first write every pixel's vote into a plane of its own and then
+ * compute each accumulator cell from the votes around it, reading five
+ * neighboring rows of the plane in order. GATHER sums the twelve stencil taps
+ * of each cell directly. The stencil is the 3x3 box around the cell without
+ * its center plus the four cells two away in a straight line, and the box part
+ * separates: SEPARABLE sums each column of three votes once and slides a three
+ * column window along the row, then takes off the center and adds the four
+ * straight line taps. The stencil is symmetric, so all three give exactly the
+ * same accumulator inside the area shots are searched in.
+ *
+ * When the parallelism is greater than one the frame is split into horizontal
+ * bands that are processed on a ForkJoinPool shared by every kernel. Each pass
+ * (amplitudes, Hough accumulation, maxima search) finishes for all bands before
+ * the next one starts. A band only ever writes its own rows, reading the rows
+ * around it (the halo) from the previous pass, so the results are exactly the
+ * same as with a single band.
+ *
+ * Detection can be limited to a {@link DetectionArea} (enabled shot sectors and
+ * projection bounds). Every pass then only visits the area plus the margin the
+ * later passes read around it, so the cost shrinks with the area disabled. Only
+ * peaks inside the area are reported. Apart from that the shots are the same
+ * ones a full-frame search would have found.
+ *
+ * The buffers are sized from the frames the kernel is given. Frames larger than
+ * the 640x480 feed are searched on a level downsampled by a whole factor so the
+ * search costs about the same as for a feed sized frame. Each level pixel is
+ * the average of its block, so a laser spot that covers a few pixels at the
+ * higher resolution keeps about the size the detector expects at 640x480.
+ * Every shot found on that level is then refined by taking the centroid of the
+ * pixels around it that jumped in brightness in the full resolution frame.
+ *
+ * Most frames have nothing in them that could be a shot. Before the amplitudes
+ * are computed, every pixel that may vote is checked against its background
+ * and the {@link ChangeMask} tiles with a pixel that got brighter by more than
+ * the laser transition are marked. Only a pixel like that can vote, so the
+ * amplitude, Hough and peak passes only run on the marked tiles and the margin
+ * around them that the passes read, and are skipped entirely when no tile
+ * changed. The shots are exactly the ones an ungated search would find.
+ *
+ * The working buffers are flat row-major arrays (index = y * width + x) so
+ * every pass walks memory in order along the rows of the frame. Amplitudes are
+ * clamped to -10..40 and kept in bytes, the accumulator in ints. The buffers
+ * live as long as the frame size does and only the part of them the detection
+ * area covers is cleared or written each frame.
+ */
+public class ShotDetectionKernel {
+	public enum Accumulation {
+		// Add each vote to the cells around the pixel that cast it
+		SCATTER,
+		// Sum the votes around each accumulator cell
+		GATHER,
+		// Sum the box part of each cell's votes in a column and a row pass
+		SEPARABLE
+	}
+
+	// Frames up to this size are searched at full resolution
+	public static final int SEARCH_WIDTH = CameraManager.FEED_WIDTH;
+	public static final int SEARCH_HEIGHT = CameraManager.FEED_HEIGHT;
+
+	// Rows a band reads above and below itself when voting into the accumulator
+	private static final int HOUGH_HALO = 2;
+	public static final int DEFAULT_PEAK_RADIUS = 10;
+	public static final int DEFAULT_MAX_SHOTS = 4;
+	private static final int MIN_BAND_HEIGHT = 16;
+	private static final int[] NO_SPANS = new int[0];
+
+	private static final Comparator<ShotCandidate> STRONGEST_FIRST = (a, b) -> {
+		if (a.getStrength() != b.getStrength()) return Integer.compare(b.getStrength(), a.getStrength());
+		if (a.getX() != b.getX()) return Integer.compare(a.getX(), b.getX());
+		return Integer.compare(a.getY(), b.getY());
+	};
+	// Level pixels around a shot found on a downsampled level that are searched
+	// for its center in the full resolution frame
+	private static final int REFINE_RADIUS = 2;
+
+	private static ForkJoinPool sharedPool = null;
+
+	// Size of the searched level the buffers below are allocated for
+	private int width;
+	private int height;
+
+	private BackgroundModel background;
+	private ChangeMask changes;
+	private byte[] amplitudeR;
+	private byte[] amplitudeG;
+	private byte[] amplitudeB;
+	private int[] shotTransform;
+	// The vote each pixel casts, padded by two cells on every side so that
+	// gathering never reads outside the plane. Only allocated for GATHER and
+	// SEPARABLE.
+	private int[] votes = null;
+	// Whether row y - 2 of the vote plane has any votes, padded like the plane
+	private boolean[] rowVotes = null;
+	private int[] framePixels;
+	private int[] levelPixels = null;
+	private int maxTransform = 0;
+
+	private int parallelism = 1;
+	private Band[] bands;
+
+	private Accumulation accumulation = Accumulation.SCATTER;
+	private int peakRadius = DEFAULT_PEAK_RADIUS;
+	private int maxShots = DEFAULT_MAX_SHOTS;
+	private final List<ShotCandidate> peaks = new ArrayList<ShotCandidate>();
+
+	// Set for the duration of a detectShots call so bands can reach them. When
+	// the frame is downsampled these describe the level, not the frame.
+	private int[] searchPixels;
+	private int frameWidth;
+	private int frameHeight;
+	private int stride;
+	private int scale = 1;
+
+	private boolean[][] sectorStatuses = null;
+	private Optional<Rectangle> detectionBounds = Optional.empty();
+	private DetectionArea area = null;
+	private boolean areaChanged = true;
+	private boolean marginsChanged = true;
+	// Spans of the detection area grown by the margin each pass needs
+	private int[][] amplitudeRows;
+	private int[][] voteRows;
+	private int[][] peakRows;
+	private int[][] shotRows;
+	// The spans above limited, each frame, to the changed tiles and the margin
+	// around them each pass needs
+	private int[][] changedAmplitudeRows;
+	private int[][] changedVoteRows;
+	private int[][] changedPlaneRows;
+	private int[][] changedTransformRows;
+	private int[][] changedPeakRows;
+	private int[][] changedShotRows;
+
+	public ShotDetectionKernel() {
+		this(CameraManager.HISTORY_SIZE);
+	}
+
+	public ShotDetectionKernel(int historySize) {
+		allocate(SEARCH_WIDTH, SEARCH_HEIGHT, historySize);
+	}
+
+	private void allocate(int width, int height, int historySize) {
+		this.width = width;
+		this.height = height;
+
+		background = new BackgroundModel(width, height, historySize);
+		changes = new ChangeMask(width, height);
+		amplitudeR = new byte[width * height];
+		amplitudeG = new byte[width * height];
+		amplitudeB = new byte[width * height];
+		shotTransform = new int[width * height];
+		votes = null;
+		rowVotes = null;
+		createBands();
+	}
+
+	/**
+	 * @return the factor frames are downsampled by before they are searched
+	 */
+	public static int getSearchScale(int frameWidth, int frameHeight) {
+		final int scaleX = (frameWidth + SEARCH_WIDTH - 1) / SEARCH_WIDTH;
+		final int scaleY = (frameHeight + SEARCH_HEIGHT - 1) / SEARCH_HEIGHT;
+
+		return Math.max(1, Math.max(scaleX, scaleY));
+	}
+
+	/**
+	 * @return the factor the frame passed to the last call to detectShots was
+	 * 		   downsampled by before it was searched
+	 */
+	public int getSearchScale() {
+		return scale;
+	}
+
+	public int getHistorySize() {
+		return background.getHistorySize();
+	}
+
+	/**
+	 * Change the number of frames a pixel's background is taken from. This
+	 * discards the current history, so detection pauses until the new history
+	 * fills up.
+	 */
+	public void setHistorySize(int historySize) {
+		if (historySize != background.getHistorySize()) {
+			background = new BackgroundModel(width, height, historySize);
+		}
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set the number of bands the frame is split into and the number of threads
+	 * in the shared pool that processes them. A parallelism of one runs the whole
+	 * frame on the calling thread.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism == this.parallelism) return;
+
+		this.parallelism = parallelism;
+		createBands();
+	}
+
+	private void createBands() {
+		int bandCount = Math.max(1, Math.min(parallelism, height / MIN_BAND_HEIGHT));
+		bands = new Band[bandCount];
+
+		for (int i = 0; i < bandCount; i++) {
+			bands[i] = new Band(height * i / bandCount, height * (i + 1) / bandCount);
+		}
+	}
+
+	/**
+	 * Limit detection to the enabled shot sectors, optionally clipped to
+	 * <tt>bounds</tt>. Changing the area discards the frame history, so
+	 * detection pauses until the history fills up again.
+	 *
+	 * @param sectorStatuses	enabled sectors indexed [row][column], the
+	 * 							sectors are laid out over the frame passed to
+	 * 							detectShots
+	 * @param bounds			the region of the frame shots may be found in,
+	 * 							in frame coordinates, or empty to use the whole
+	 * 							frame
+	 */
+	public void setDetectionArea(boolean[][] sectorStatuses, Optional<Rectangle> bounds) {
+		if (Arrays.deepEquals(sectorStatuses, this.sectorStatuses) && bounds.equals(detectionBounds)) return;
+
+		this.sectorStatuses = new boolean[sectorStatuses.length][];
+		for (int i = 0; i < sectorStatuses.length; i++) {
+			this.sectorStatuses[i] = sectorStatuses[i].clone();
+		}
+		detectionBounds = bounds;
+		areaChanged = true;
+	}
+
+	/**
+	 * @return the area searched by the last call to detectShots in the
+	 * 		   coordinates of the searched level, or <tt>null</tt> if detectShots
+	 * 		   has not been called yet
+	 */
+	public DetectionArea getDetectionArea() {
+		return area;
+	}
+
+	private void updateDetectionArea() {
+		final boolean resized = area == null || area.getWidth() != frameWidth || area.getHeight() != frameHeight;
+
+		if (!areaChanged && !resized && !marginsChanged) return;
+
+		if (areaChanged || resized) {
+			final boolean hadArea = area != null;
+			final boolean[][] sectors = sectorStatuses != null ? sectorStatuses : new boolean[][] { { true } };
+			area = new DetectionArea(frameWidth, frameHeight, sectors, scaleBounds(detectionBounds));
+
+			// Pixels that just entered the area have no up to date history
+			if (hadArea) {
+				background = new BackgroundModel(width, height, background.getHistorySize());
+			}
+		}
+
+		// Margins around the area each pass covers: the peak search reads the peak
+		// radius around a cell, pixels vote 2 away from themselves and the edge
+		// tests read amplitudes 2 away
+		final int voteMargin = peakRadius + 2;
+		final int amplitudeMargin = voteMargin + 2;
+
+		amplitudeRows = area.rowSpans(amplitudeMargin);
+		voteRows = area.rowSpans(voteMargin);
+		peakRows = area.rowSpans(peakRadius);
+		shotRows = area.rowSpans(0);
+
+		areaChanged = false;
+		marginsChanged = false;
+	}
+
+	private Optional<Rectangle> scaleBounds(Optional<Rectangle> bounds) {
+		if (scale == 1 || !bounds.isPresent()) return bounds;
+
+		final Rectangle b = bounds.get();
+		final int minX = b.x / scale;
+		final int minY = b.y / scale;
+
+		return Optional.of(new Rectangle(minX, minY, (b.x + b.width + scale - 1) / scale - minX,
+				(b.y + b.height + scale - 1) / scale - minY));
+	}
+
+	public Accumulation getAccumulation() {
+		return accumulation;
+	}
+
+	public void setAccumulation(Accumulation accumulation) {
+		this.accumulation = accumulation;
+	}
+
+	public int getPeakRadius() {
+		return peakRadius;
+	}
+
+	/**
+	 * Set the distance, in pixels of the searched level, within which a peak of
+	 * the accumulator must be the largest cell to be reported as a shot.
+	 */
+	public void setPeakRadius(int peakRadius) {
+		if (peakRadius == this.peakRadius) return;
+
+		this.peakRadius = peakRadius;
+		marginsChanged = true;
+	}
+
+	public int getMaxShots() {
+		return maxShots;
+	}
+
+	/**
+	 * Set the number of shots reported per frame. The strongest shots are kept.
+	 */
+	public void setMaxShots(int maxShots) {
+		this.maxShots = maxShots;
+	}
+
+	private static synchronized ForkJoinPool getSharedPool(int parallelism) {
+		if (sharedPool == null || sharedPool.getParallelism() != parallelism) {
+			if (sharedPool != null) sharedPool.shutdown();
+			sharedPool = new ForkJoinPool(parallelism);
+		}
+
+		return sharedPool;
+	}
+
+	/**
+	 * Run detection on <tt>frame</tt> and add it to the frame history.
+	 *
+	 * @param frame	the current camera frame
+	 * @param shots	suspected shots are appended to this list, strongest first
+	 * @return <tt>false</tt> if the frame history is not full yet, in which case
+	 * 		   no shots are searched for
+	 */
+	public boolean detectShots(BufferedImage frame, List<ShotCandidate> shots) {
+		final int previousScale = scale;
+		scale = getSearchScale(frame.getWidth(), frame.getHeight());
+		frameWidth = frame.getWidth() / scale;
+		frameHeight = frame.getHeight() / scale;
+
+		if (frameWidth != width || frameHeight != height) {
+			allocate(frameWidth, frameHeight, background.getHistorySize());
+		}
+		if (scale != previousScale) areaChanged = true;
+		updateDetectionArea();
+
+		framePixels = PackedRaster.readRGB(frame, framePixels);
+
+		if (scale == 1) {
+			searchPixels = framePixels;
+			stride = frame.getWidth();
+		} else {
+			levelPixels = downsample(framePixels, frame.getWidth(), levelPixels);
+			searchPixels = levelPixels;
+			stride = frameWidth;
+		}
+
+		if (bands.length == 1) {
+			detectBands();
+		} else {
+			getSharedPool(parallelism).invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					detectBands();
+				}
+			});
+		}
+
+		if (!background.isReady()) return false;
+
+		if (scale == 1) {
+			mergeShots(shots);
+		} else {
+			final int start = shots.size();
+			mergeShots(shots);
+
+			for (int i = start; i < shots.size(); i++) {
+				shots.set(i, refine(shots.get(i), frame.getWidth(), frame.getHeight()));
+			}
+		}
+
+		return true;
+	}
+
+	// Each level pixel is the per-channel average of the scale x scale block of
+	// frame pixels it covers
+	private int[] downsample(int[] pixels, int frameStride, int[] dest) {
+		if (dest == null || dest.length < frameWidth * frameHeight) dest = new int[frameWidth * frameHeight];
+
+		final int blockSize = scale * scale;
+
+		for (int y = 0, i = 0; y < frameHeight; y++) {
+			final int rowStart = y * scale * frameStride;
+
+			for (int x = 0; x < frameWidth; x++, i++) {
+				int r = 0, g = 0, b = 0;
+
+				for (int dy = 0, row = rowStart + x * scale; dy < scale; dy++, row += frameStride) {
+					for (int dx = 0; dx < scale; dx++) {
+						final int pixel = pixels[row + dx];
+						r += (pixel >> 16) & 0xFF;
+						g += (pixel >> 8) & 0xFF;
+						b += pixel & 0xFF;
+					}
+				}
+
+				dest[i] = ((r / blockSize) << 16) | ((g / blockSize) << 8) | (b / blockSize);
+			}
+		}
+
+		return dest;
+	}
+
+	// Find the center of a shot found on the downsampled level in the full
+	// resolution frame. Frame pixels are compared against the background of the
+	// level pixel they belong to, and the pixels that jumped in brightness are
+	// averaged weighted by how far they jumped.
+	private ShotCandidate refine(ShotCandidate shot, int fullWidth, int fullHeight) {
+		final int transition = CameraManager.LASER_TRANSITION;
+		final int minX = Math.max(0, (shot.getX() - REFINE_RADIUS) * scale);
+		final int minY = Math.max(0, (shot.getY() - REFINE_RADIUS) * scale);
+		final int maxX = Math.min(fullWidth, (shot.getX() + REFINE_RADIUS + 1) * scale);
+		final int maxY = Math.min(fullHeight, (shot.getY() + REFINE_RADIUS + 1) * scale);
+		long weightedX = 0, weightedY = 0, totalWeight = 0;
+
+		for (int y = minY; y < maxY; y++) {
+			final int levelY = Math.min(y / scale, frameHeight - 1);
+
+			for (int x = minX; x < maxX; x++) {
+				final int levelX = Math.min(x / scale, frameWidth - 1);
+				final int level = levelY * width + levelX;
+				final int levelPixel = levelPixels[level];
+				final int pixel = framePixels[y * fullWidth + x];
+
+				// The background already includes the current frame, but the level
+				// pixel minus its amplitude is the background it was compared against
+				int weight = 0;
+				weight += Math.max(0, Math.min(40, ((pixel >> 16) & 0xFF) -
+						(((levelPixel >> 16) & 0xFF) - amplitudeR[level])) - transition);
+				weight += Math.max(0, Math.min(40, ((pixel >> 8) & 0xFF) -
+						(((levelPixel >> 8) & 0xFF) - amplitudeG[level])) - transition);
+				weight += Math.max(0, Math.min(40, (pixel & 0xFF) -
+						((levelPixel & 0xFF) - amplitudeB[level])) - transition);
+
+				weightedX += (long)weight * x;
+				weightedY += (long)weight * y;
+				totalWeight += weight;
+			}
+		}
+
+		if (totalWeight == 0) {
+			return new ShotCandidate(shot.getX() * scale + scale / 2, shot.getY() * scale + scale / 2,
+					shot.getStrength());
+		}
+
+		return new ShotCandidate((int)((weightedX + totalWeight / 2) / totalWeight),
+				(int)((weightedY + totalWeight / 2) / totalWeight), shot.getStrength());
+	}
+
+	/**
+	 * @return the largest accumulator value seen by the last call to
+	 * 		   detectShots that searched for shots
+	 */
+	public int getMaxTransform() {
+		return maxTransform;
+	}
+
+	/**
+	 * @return the number of tiles that changed in the frame passed to the last
+	 * 		   call to detectShots
+	 */
+	public int getChangedTileCount() {
+		return changes.getChangedTileCount();
+	}
+
+	private void detectBands() {
+		changes.clear();
+		forEachBand((band) -> markChanges(band.startY, band.endY));
+
+		// Read once so a mode set while the frame is searched applies to the next
+		// frame as a whole
+		final Accumulation accumulation = this.accumulation;
+		final boolean idle = changes.isEmpty();
+		if (!idle) updateChangedSpans(accumulation);
+
+		forEachBand((band) -> {
+			if (!idle) computeAmplitudes(band.startY, band.endY);
+			updateBackground(band.startY, band.endY);
+		});
+
+		background.advance();
+
+		if (idle) {
+			for (Band band : bands) {
+				band.shots.clear();
+				band.maxTransform = 0;
+			}
+
+			return;
+		}
+
+		if (accumulation == Accumulation.SCATTER) {
+			forEachBand((band) -> accumulate(band.startY, band.endY));
+		} else {
+			if (votes == null) {
+				votes = new int[(width + 4) * (height + 4)];
+				rowVotes = new boolean[height + 4];
+			}
+
+			forEachBand((band) -> castVotes(band));
+			if (accumulation == Accumulation.GATHER) {
+				forEachBand((band) -> gather(band));
+			} else {
+				forEachBand((band) -> gatherSeparable(band));
+			}
+		}
+
+		if (!background.isReady()) return;
+
+		forEachBand((band) -> findShots(band));
+	}
+
+	private void forEachBand(BandPass pass) {
+		if (bands.length == 1) {
+			pass.run(bands[0]);
+			return;
+		}
+
+		// Called from inside the pool, so invokeAll runs the bands in parallel and
+		// returns once they have all finished
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[bands.length];
+		for (int i = 0; i < bands.length; i++) {
+			final Band band = bands[i];
+			tasks[i] = ForkJoinTask.adapt(() -> pass.run(band));
+		}
+
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+	// Mark the tiles with a pixel that may vote because it got brighter than its
+	// background by more than the laser transition in some channel
+	private void markChanges(int startY, int endY) {
+		final int transition = CameraManager.LASER_TRANSITION;
+		final int[] current = searchPixels;
+		final BackgroundModel background = this.background;
+		final ChangeMask changes = this.changes;
+		final int fromY = Math.max(2, startY);
+		final int toY = Math.min(frameHeight - 2, endY);
+
+		for (int y = fromY; y < toY; y++) {
+			final int[] spans = voteRows[y];
+			final int row = y * width;
+			final int sourceRow = y * stride;
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int spanToX = Math.min(frameWidth - 2, spans[i + 1]);
+
+				// Walk the span a tile at a time, a marked tile has nothing left to
+				// tell us
+				for (int x = Math.max(2, spans[i]); x < spanToX;) {
+					final int tileToX = Math.min(spanToX, ChangeMask.nextTileX(x));
+
+					if (!changes.isChanged(x, y)) {
+						for (int p = x; p < tileToX; p++) {
+							final int maxPixel = background.getMax(row + p);
+							final int rgbPixel = current[sourceRow + p];
+
+							if (((rgbPixel >> 16) & 0xFF) - ((maxPixel >> 16) & 0xFF) > transition ||
+									((rgbPixel >> 8) & 0xFF) - ((maxPixel >> 8) & 0xFF) > transition ||
+									(rgbPixel & 0xFF) - (maxPixel & 0xFF) > transition) {
+								changes.mark(x, y);
+								break;
+							}
+						}
+					}
+
+					x = tileToX;
+				}
+			}
+		}
+	}
+
+	// Unchanged pixels do not vote, so votes only land within two pixels of a
+	// changed tile and only cells there can be shots. The peak search reads the
+	// peak radius around those cells and voting reads amplitudes two pixels away.
+	// On a downsampled level refine() also reads the amplitudes REFINE_RADIUS
+	// level pixels around a shot, which must not be left over from an earlier
+	// frame.
+	private void updateChangedSpans(Accumulation accumulation) {
+		final int radius = peakRadius;
+		final int[][] nearVotes = changes.rowSpans(2);
+		final int[][] nearPeaks = changes.rowSpans(radius + 2);
+
+		changedAmplitudeRows = ChangeMask.intersect(amplitudeRows,
+				scale > 1 ? changes.rowSpans(2 + REFINE_RADIUS) : nearVotes);
+		changedVoteRows = ChangeMask.intersect(voteRows, changes.rowSpans(0));
+		changedTransformRows = ChangeMask.intersect(amplitudeRows, nearPeaks);
+		changedPeakRows = ChangeMask.intersect(peakRows, nearPeaks);
+		changedShotRows = ChangeMask.intersect(shotRows, nearVotes);
+
+		if (accumulation != Accumulation.SCATTER) {
+			changedPlaneRows = ChangeMask.intersect(voteRows, changes.rowSpans(radius + 4));
+		}
+	}
+
+	private void updateBackground(int startY, int endY) {
+		final int toY = Math.min(endY, frameHeight);
+
+		for (int y = startY; y < toY; y++) {
+			final int[] spans = amplitudeRows[y];
+
+			for (int i = 0; i < spans.length; i += 2) {
+				background.updateSpan(searchPixels, y, spans[i], spans[i + 1], stride);
+			}
+		}
+	}
+
+	private void computeAmplitudes(int startY, int endY) {
+		final int[] current = searchPixels;
+		final BackgroundModel background = this.background;
+		final int fromY = Math.max(2, startY);
+		final int toY = Math.min(frameHeight - 2, endY);
+
+		for (int y = fromY; y < toY; y++) {
+			final int[] spans = changedAmplitudeRows[y];
+			final int row = y * width;
+			final int sourceRow = y * stride;
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int spanToX = Math.min(frameWidth - 2, spans[i + 1]);
+
+				for (int x = Math.max(2, spans[i]); x < spanToX; x++) {
+					final int maxPixel = background.getMax(row + x);
+					final int maxR = (maxPixel >> 16) & 0xFF;
+					final int maxG = (maxPixel >> 8) & 0xFF;
+					final int maxB = maxPixel & 0xFF;
+
+					final int rgbPixel = current[sourceRow + x];
+					final int r = (rgbPixel >> 16) & 0xFF;
+					final int g = (rgbPixel >> 8) & 0xFF;
+					final int b = rgbPixel & 0xFF;
+
+					amplitudeR[row + x] = (byte)Math.max(-10, Math.min(40, r - maxR));
+					amplitudeG[row + x] = (byte)Math.max(-10, Math.min(40, g - maxG));
+					amplitudeB[row + x] = (byte)Math.max(-10, Math.min(40, b - maxB));
+				}
+			}
+		}
+	}
+
+	// Perform hough transform for the accumulator rows startY to endY. Pixels in
+	// the halo rows around the band are voted too, but only their votes that
+	// land inside the band are kept.
+	private void accumulate(int startY, int endY) {
+		final int[] transform = shotTransform;
+		final int w = width;
+		final int fromY = Math.max(2, startY - HOUGH_HALO);
+		final int toY = Math.min(frameHeight - 2, endY + HOUGH_HALO);
+
+		// Votes never land further from the area than the amplitudes reach
+		for (int y = startY; y < endY; y++) {
+			final int[] spans = changedTransformRows[y];
+
+			for (int i = 0; i < spans.length; i += 2) {
+				Arrays.fill(transform, y * w + spans[i], y * w + spans[i + 1], 0);
+			}
+		}
+
+		for (int y = fromY; y < toY; y++) {
+			final int[] spans = changedVoteRows[y];
+			final boolean inside = y - 2 >= startY && y + 2 < endY;
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int spanToX = Math.min(frameWidth - 2, spans[i + 1]);
+
+				for (int x = Math.max(2, spans[i]), p = y * w + x; x < spanToX; x++, p++) {
+					final int amplitude = vote(p);
+					if (amplitude == 0) continue;
+
+					if (inside) {
+						transform[p - 2 * w] += amplitude;
+						transform[p - w - 1] += amplitude;
+						transform[p - w] += amplitude;
+						transform[p - w + 1] += amplitude;
+						transform[p - 2] += amplitude;
+						transform[p - 1] += amplitude;
+						transform[p + 1] += amplitude;
+						transform[p + 2] += amplitude;
+						transform[p + w - 1] += amplitude;
+						transform[p + w] += amplitude;
+						transform[p + w + 1] += amplitude;
+						transform[p + 2 * w] += amplitude;
+					} else {
+						for (int dx = -1; dx <= 1; dx++) {
+							vote(x + dx, y + 1, amplitude, startY, endY);
+							vote(x + dx, y - 1, amplitude, startY, endY);
+						}
+						vote(x - 1, y, amplitude, startY, endY);
+						vote(x + 1, y, amplitude, startY, endY);
+
+						vote(x - 2, y, amplitude, startY, endY);
+						vote(x + 2, y, amplitude, startY, endY);
+						vote(x, y - 2, amplitude, startY, endY);
+						vote(x, y + 2, amplitude, startY, endY);
+					}
+				}
+			}
+		}
+	}
+
+	private void vote(int x, int y, int amplitude, int startY, int endY) {
+		if (y >= startY && y < endY) shotTransform[y * width + x] += amplitude;
+	}
+
+	// The amplitude pixel p (y * width + x) votes into the accumulator, or zero
+	// if it is not on the edge of a bright spot
+	private int vote(int p) {
+		final int transition = CameraManager.LASER_TRANSITION;
+		final byte[] red = amplitudeR;
+		final byte[] green = amplitudeG;
+		final byte[] blue = amplitudeB;
+		final int w = width;
+		int amplitude = 0;
+		final int offamplitude = red[p];
+		// Search for bright pixels that are potentially edges (must neighbor a dark pixel)
+		if (offamplitude > transition &&
+				((red[p + 1] < offamplitude && red[p + 2] < offamplitude)
+				|| (red[p - 1] < offamplitude && red[p - 2] < offamplitude)
+				|| (red[p + w] < offamplitude && red[p + 2 * w] < offamplitude)
+				|| (red[p - w] < offamplitude && red[p - 2 * w] < offamplitude))) {
+			// Update accumulator space for Hough transform
+			amplitude = offamplitude - transition;
+		}
+
+		if (green[p] > transition &&
+				(green[p + 1] < transition || green[p - 1] < transition ||
+				green[p + w] < transition || green[p - w] < transition)) {
+			amplitude += green[p] - transition;
+		}
+
+		if (blue[p] > transition &&
+				(blue[p + 1] < transition || blue[p - 1] < transition ||
+				blue[p + w] < transition || blue[p - w] < transition)) {
+			amplitude += blue[p] - transition;
+		}
+
+		return amplitude;
+	}
+
+	// Write the vote of every pixel of the band that may vote into the vote
+	// plane, noting which rows have any votes at all. The votes of unchanged
+	// pixels that gathering reads are zero.
+	private void castVotes(Band band) {
+		final int planeWidth = width + 4;
+
+		for (int y = band.startY; y < band.endY; y++) {
+			final boolean inside = y >= 2 && y < frameHeight - 2;
+			final int[] planeSpans = inside ? changedPlaneRows[y] : NO_SPANS;
+			final int[] spans = inside ? changedVoteRows[y] : NO_SPANS;
+			boolean rowHasVotes = false;
+
+			for (int i = 0; i < planeSpans.length; i += 2) {
+				final int from = (y + 2) * planeWidth + Math.max(2, planeSpans[i]) + 2;
+				final int to = (y + 2) * planeWidth + Math.min(frameWidth - 2, planeSpans[i + 1]) + 2;
+				if (from < to) Arrays.fill(votes, from, to, 0);
+			}
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int spanToX = Math.min(frameWidth - 2, spans[i + 1]);
+				int x = Math.max(2, spans[i]);
+
+				for (int p = y * width + x, v = (y + 2) * planeWidth + x + 2; x < spanToX; x++, p++, v++) {
+					final int amplitude = vote(p);
+					votes[v] = amplitude;
+					rowHasVotes |= amplitude != 0;
+				}
+			}
+
+			rowVotes[y + 2] = rowHasVotes;
+		}
+	}
+
+	// Compute the accumulator cells of the band that the peak search reads from
+	// the vote plane. Cell (x, y) collects the votes of the 3x3 block around it,
+	// except its own, and of the four pixels two cells away in a straight line.
+	private void gather(Band band) {
+		final int[] votes = this.votes;
+		final int[] transform = shotTransform;
+		final int planeWidth = width + 4;
+
+		for (int y = band.startY; y < band.endY; y++) {
+			final int[] spans = changedPeakRows[y];
+			final int row = y * width;
+
+			if (spans.length == 0) continue;
+
+			// Rows y - 2 to y + 2 of the plane are written by castVotes for every
+			// band before any band gathers, so rows of the bands around this one
+			// can be read too. Cells with no votes nearby are all zero.
+			if (!(rowVotes[y] || rowVotes[y + 1] || rowVotes[y + 2] || rowVotes[y + 3] || rowVotes[y + 4])) {
+				for (int i = 0; i < spans.length; i += 2) {
+					Arrays.fill(transform, row + spans[i], row + spans[i + 1], 0);
+				}
+
+				continue;
+			}
+
+			// Padded rows y - 2 to y + 2, column x is at offset x + 2
+			final int above2 = y * planeWidth + 2;
+			final int above1 = above2 + planeWidth;
+			final int center = above1 + planeWidth;
+			final int below1 = center + planeWidth;
+			final int below2 = below1 + planeWidth;
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int to = spans[i + 1];
+
+				for (int x = spans[i]; x < to; x++) {
+					transform[row + x] = votes[above2 + x] +
+							votes[above1 + x - 1] + votes[above1 + x] + votes[above1 + x + 1] +
+							votes[center + x - 2] + votes[center + x - 1] +
+							votes[center + x + 1] + votes[center + x + 2] +
+							votes[below1 + x - 1] + votes[below1 + x] + votes[below1 + x + 1] +
+							votes[below2 + x];
+				}
+			}
+		}
+	}
+
+	// Compute the same accumulator cells as gather() with the 3x3 block split
+	// into passes. The votes of rows y - 1 to y + 1 are summed per column once,
+	// and a window of three column sums slides along the row, so a cell costs
+	// one new column sum and two window updates instead of eight block reads.
+	private void gatherSeparable(Band band) {
+		final int[] votes = this.votes;
+		final int[] transform = shotTransform;
+		final int planeWidth = width + 4;
+
+		// Column x - 1 to x + 1 sums are at offset x to x + 2
+		if (band.columnSums == null) band.columnSums = new int[width + 2];
+		final int[] columnSums = band.columnSums;
+
+		for (int y = band.startY; y < band.endY; y++) {
+			final int[] spans = changedPeakRows[y];
+			final int row = y * width;
+
+			if (spans.length == 0) continue;
+
+			if (!(rowVotes[y] || rowVotes[y + 1] || rowVotes[y + 2] || rowVotes[y + 3] || rowVotes[y + 4])) {
+				for (int i = 0; i < spans.length; i += 2) {
+					Arrays.fill(transform, row + spans[i], row + spans[i + 1], 0);
+				}
+
+				continue;
+			}
+
+			final int above2 = y * planeWidth + 2;
+			final int above1 = above2 + planeWidth;
+			final int center = above1 + planeWidth;
+			final int below1 = center + planeWidth;
+			final int below2 = below1 + planeWidth;
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int from = spans[i];
+				final int to = spans[i + 1];
+
+				// The column pass, including the columns on either side of the span
+				for (int x = from - 1; x <= to; x++) {
+					columnSums[x + 1] = votes[above1 + x] + votes[center + x] + votes[below1 + x];
+				}
+
+				// The row pass, the window holds columns x - 1 to x + 1
+				int block = columnSums[from] + columnSums[from + 1];
+				for (int x = from; x < to; x++) {
+					block += columnSums[x + 2];
+					transform[row + x] = block - votes[center + x] +
+							votes[above2 + x] + votes[below2 + x] +
+							votes[center + x - 2] + votes[center + x + 2];
+					block -= columnSums[x];
+				}
+			}
+		}
+	}
+
+	// Check for hits
+	private void findShots(Band band) {
+		final int radius = peakRadius;
+		final int fromY = Math.max(radius, band.startY);
+		final int toY = Math.min(frameHeight - radius, band.endY);
+		int max = 0;
+
+		band.shots.clear();
+
+		for (int y = fromY; y < toY; y++) {
+			final int[] spans = changedShotRows[y];
+
+			for (int i = 0; i < spans.length; i += 2) {
+				final int spanToX = Math.min(frameWidth - radius, spans[i + 1]);
+				int x = Math.max(radius, spans[i]);
+
+				for (int p = y * width + x; x < spanToX; x++, p++) {
+					final int value = shotTransform[p];
+					if (max < value) max = value;
+
+					if (value > CameraManager.HUGHES_TRANFORM_THRESHOLD && isPeak(p, value, radius)) {
+						band.shots.add(new ShotCandidate(x, y, value));
+					}
+				}
+			}
+		}
+
+		band.maxTransform = max;
+	}
+
+	// A cell is a peak if no cell within radius of it is larger. Nearby cells are
+	// read first because they are the ones most likely to be larger.
+	private boolean isPeak(int p, int value, int radius) {
+		final int[] transform = shotTransform;
+		final int w = width;
+
+		for (int r = 1; r <= radius; r++) {
+			final int top = p - r * w;
+			final int bottom = p + r * w;
+
+			for (int dx = -r; dx <= r; dx++) {
+				if (transform[top + dx] > value || transform[bottom + dx] > value) return false;
+			}
+
+			for (int dy = -r + 1, row = p - (r - 1) * w; dy < r; dy++, row += w) {
+				if (transform[row - r] > value || transform[row + r] > value) return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Keep one shot per peak, strongest first
+	private void mergeShots(List<ShotCandidate> shots) {
+		int max = 0;
+
+		peaks.clear();
+		for (Band band : bands) {
+			max = Math.max(max, band.maxTransform);
+			peaks.addAll(band.shots);
+		}
+		maxTransform = max;
+
+		peaks.sort(STRONGEST_FIRST);
+
+		final int start = shots.size();
+
+		for (ShotCandidate peak : peaks) {
+			if (shots.size() - start >= maxShots) break;
+
+			boolean suppressed = false;
+			for (int i = start; i < shots.size() && !suppressed; i++) {
+				suppressed = Math.abs(shots.get(i).getX() - peak.getX()) <= peakRadius &&
+						Math.abs(shots.get(i).getY() - peak.getY()) <= peakRadius;
+			}
+
+			if (!suppressed) shots.add(peak);
+		}
+	}
+
+	private interface BandPass {
+		void run(Band band);
+	}
+
+	private static class Band {
+		private final int startY;
+		private final int endY;
+		private final List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+		private int maxTransform = 0;
+		// Column sums of the row gatherSeparable is working on
+		private int[] columnSums = null;
+
+		public Band(int startY, int endY) {
+			this.startY = startY;
+			this.endY = endY;
+		}
+	}
+}
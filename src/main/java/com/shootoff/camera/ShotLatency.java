@@ -0,0 +1,129 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency histograms for each stage a shot goes through, from the moment the
+ * frame it is in is captured until it is handed to the training protocol.
+ * Latencies are measured against the System.nanoTime() a frame was captured
+ * at (see {@link CameraFrame#getCaptureTime()}).
+ */
+public class ShotLatency {
+	public enum Stage {
+		/** Time a frame waits between capture and the start of detection */
+		QUEUE("Capture to detection"),
+		/** Time spent detecting shots in a frame */
+		DETECTION("Detection"),
+		/** Time from capture until a shot is added to the canvas */
+		CANVAS("Capture to canvas"),
+		/** Time from capture until a shot is handed to the training protocol */
+		PROTOCOL("Capture to protocol");
+
+		private final String description;
+
+		private Stage(String description) {
+			this.description = description;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private static final long LOG_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+	private final Logger logger = LoggerFactory.getLogger(ShotLatency.class);
+	private final Map<Stage, LatencyHistogram> histograms = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+	private final String name;
+	private volatile long lastLog = System.nanoTime();
+	private volatile long lastLoggedCount = 0;
+
+	public ShotLatency(String name) {
+		this.name = name;
+
+		for (Stage stage : Stage.values()) histograms.put(stage, new LatencyHistogram());
+	}
+
+	/**
+	 * Record the time between <tt>captureTime</tt> and now for <tt>stage</tt>.
+	 */
+	public void recordSince(Stage stage, long captureTime) {
+		record(stage, System.nanoTime() - captureTime);
+	}
+
+	public void record(Stage stage, long nanos) {
+		histograms.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	public LatencyHistogram getHistogram(Stage stage) {
+		return histograms.get(stage);
+	}
+
+	public void reset() {
+		for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+		lastLoggedCount = 0;
+	}
+
+	/**
+	 * Log the latency percentiles if a minute has passed since they were last
+	 * logged and new latencies have been recorded since then.
+	 */
+	public void logIfDue() {
+		long now = System.nanoTime();
+		if (now - lastLog < LOG_INTERVAL) return;
+		lastLog = now;
+
+		long recorded = histograms.get(Stage.DETECTION).getCount();
+		if (recorded == lastLoggedCount) return;
+		lastLoggedCount = recorded;
+
+		logger.info("{}", this);
+	}
+
+	private static String formatMicros(long micros) {
+		return String.format("%.1f ms", micros / 1000.0);
+	}
+
+	public String describe(Stage stage) {
+		LatencyHistogram histogram = histograms.get(stage);
+
+		return String.format("%s: p50 %s, p99 %s (%d)", stage.getDescription(),
+				formatMicros(histogram.getPercentile(50)), formatMicros(histogram.getPercentile(99)),
+				histogram.getCount());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder(name).append(" latency -- ");
+
+		for (Stage stage : Stage.values()) {
+			if (stage.ordinal() > 0) summary.append("; ");
+			summary.append(describe(stage));
+		}
+
+		return summary.toString();
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+/**
+ * Frames made by a {@link FrameGenerator}, delivered at a fixed rate like a
+ * webcam would deliver them or, with a rate of zero, as fast as they are read.
+ */
+public class SyntheticFrameSource implements FrameSource {
+	public interface FrameGenerator {
+		/**
+		 * @param frameNumber	the number of frames generated before this one
+		 * @return the frame
+		 */
+		public BufferedImage generate(long frameNumber);
+
+		/**
+		 * Generate a frame into a frame acquired from <tt>pool</tt>. Generators
+		 * that cannot draw into an existing frame allocate a new one.
+		 */
+		public default BufferedImage generate(long frameNumber, FramePool pool) {
+			return generate(frameNumber);
+		}
+	}
+
+	private final String name;
+	private final double targetFPS;
+	private final FrameGenerator generator;
+
+	private volatile boolean open = false;
+	private BufferedImage image = null;
+	private boolean imageNew = false;
+	private long frameNumber = -1;
+	private long frameCount = 0;
+	private long startTime;
+
+	/**
+	 * @param name		the name the source is shown with
+	 * @param fps		frames delivered per second, or zero to deliver a new
+	 * 					frame every time one is waited for
+	 * @param generator	makes the frames
+	 */
+	public SyntheticFrameSource(String name, double fps, FrameGenerator generator) {
+		this.name = name;
+		this.targetFPS = fps;
+		this.generator = generator;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean open() {
+		frameCount = 0;
+		frameNumber = -1;
+		image = null;
+		imageNew = false;
+		startTime = System.nanoTime();
+		open = true;
+		return true;
+	}
+
+	@Override
+	public boolean close() {
+		open = false;
+		return true;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean isImageNew() {
+		return imageNew;
+	}
+
+	@Override
+	public boolean awaitImage(long timeout) throws InterruptedException {
+		if (!open) return false;
+		if (imageNew) return true;
+
+		if (targetFPS > 0) {
+			final long due = startTime + (long)(frameCount * 1e9 / targetFPS);
+			final long wait = due - System.nanoTime();
+
+			if (wait > 0) {
+				final long sleep = Math.min(wait, timeout * 1000000);
+				Thread.sleep(sleep / 1000000, (int)(sleep % 1000000));
+
+				if (sleep < wait || !open) return false;
+			}
+		}
+
+		// The frame is generated when it is read so it can be read into a pooled
+		// frame
+		frameNumber = frameCount++;
+		image = null;
+		imageNew = true;
+
+		return true;
+	}
+
+	@Override
+	public BufferedImage getImage() {
+		imageNew = false;
+		if (image == null && frameNumber >= 0) image = generator.generate(frameNumber);
+		return image;
+	}
+
+	@Override
+	public BufferedImage getImage(FramePool pool) {
+		imageNew = false;
+		if (frameNumber < 0) return null;
+
+		return generator.generate(frameNumber, pool);
+	}
+
+	/**
+	 * @return the number of frames generated since the source was opened
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	@Override
+	public double getFPS() {
+		final long elapsed = System.nanoTime() - startTime;
+		if (elapsed <= 0) return 0;
+
+		return frameCount * 1e9 / elapsed;
+	}
+
+	/**
+	 * The generator decides the size of the frames.
+	 */
+	@Override
+	public void setViewSize(Dimension size) {}
+}
@@ -0,0 +1,266 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+/**
+ * Frames decoded from a video file. The file is decoded on the thread that
+ * waits for frames. In real time mode each frame is delivered when its time
+ * stamp says it was recorded, so the file plays back like a live camera;
+ * otherwise frames are delivered as fast as they are read. A looping source
+ * starts over at the end of the file, otherwise it closes.
+ *
+ * Pictures are decoded into frames from the source's {@link FramePool}, so a
+ * stream read with {@link #getImage(FramePool)} and that pool does not allocate
+ * a frame for every picture. Frames read without that pool are copies.
+ */
+public class VideoFrameSource extends MediaListenerAdapter implements FrameSource {
+	private final File videoFile;
+	private final boolean realTime;
+	private final boolean looping;
+	private final FramePool framePool;
+	private final VideoPictureConverter converter = new VideoPictureConverter();
+
+	private volatile boolean open = false;
+	private IMediaReader reader = null;
+	private final Deque<DecodedPicture> decodedPictures = new ArrayDeque<DecodedPicture>();
+	private BufferedImage image = null;
+	private boolean imageNew = false;
+	private long frameCount = 0;
+	private long startTime;
+	// When the current pass over the file started and the time stamp of its
+	// first picture, which real time playback is measured against
+	private long playbackStart;
+	private long firstTimestamp = -1;
+
+	public VideoFrameSource(File videoFile, boolean realTime, boolean looping) {
+		this(videoFile, realTime, looping, new FramePool());
+	}
+
+	public VideoFrameSource(File videoFile, boolean realTime, boolean looping, FramePool framePool) {
+		this.videoFile = videoFile;
+		this.realTime = realTime;
+		this.looping = looping;
+		this.framePool = framePool;
+	}
+
+	public FramePool getFramePool() {
+		return framePool;
+	}
+
+	@Override
+	public String getName() {
+		return videoFile.getName();
+	}
+
+	@Override
+	public boolean open() {
+		if (!videoFile.isFile()) return false;
+
+		frameCount = 0;
+		imageNew = false;
+		startTime = System.nanoTime();
+		open = true;
+		return true;
+	}
+
+	/**
+	 * The reader is closed by the thread that waits for frames the next time it
+	 * waits, because it may be decoding right now.
+	 */
+	@Override
+	public boolean close() {
+		open = false;
+		return true;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean isImageNew() {
+		return imageNew;
+	}
+
+	@Override
+	public boolean awaitImage(long timeout) throws InterruptedException {
+		if (imageNew && open) return true;
+
+		while (decodedPictures.isEmpty()) {
+			if (!open) {
+				closeReader();
+				releaseFrames();
+				return false;
+			}
+
+			if (reader == null) openReader();
+
+			// readPacket returns an error at the end of the file
+			if (reader.readPacket() != null) {
+				closeReader();
+
+				if (!looping) {
+					open = false;
+					releaseFrames();
+					return false;
+				}
+			}
+		}
+
+		final DecodedPicture picture = decodedPictures.peek();
+
+		if (realTime) {
+			final long timestamp = picture.timestamp;
+			if (firstTimestamp < 0) {
+				firstTimestamp = timestamp;
+				playbackStart = System.nanoTime();
+			}
+
+			final long due = playbackStart + (timestamp - firstTimestamp) * 1000;
+			final long wait = due - System.nanoTime();
+
+			if (wait > 0) {
+				final long sleep = Math.min(wait, timeout * 1000000);
+				Thread.sleep(sleep / 1000000, (int)(sleep % 1000000));
+
+				if (sleep < wait) return false;
+			}
+		}
+
+		decodedPictures.poll();
+		image = picture.image;
+		imageNew = true;
+		frameCount++;
+
+		return true;
+	}
+
+	private void openReader() {
+		// The reader is not asked for images, the converter makes them
+		reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
+		reader.addListener(this);
+		firstTimestamp = -1;
+	}
+
+	private void closeReader() {
+		if (reader == null) return;
+
+		reader.removeListener(this);
+		if (reader.isOpen()) reader.close();
+		reader = null;
+		converter.close();
+	}
+
+	// Give back the frames nobody is going to read
+	private void releaseFrames() {
+		DecodedPicture picture;
+		while ((picture = decodedPictures.poll()) != null) framePool.release(picture.image);
+
+		if (imageNew) framePool.release(image);
+		image = null;
+		imageNew = false;
+	}
+
+	@Override
+	public void onVideoPicture(IVideoPictureEvent event) {
+		// The reader frees the picture once listeners return
+		decodedPictures.add(new DecodedPicture(converter.toImage(event.getPicture(), framePool),
+				event.getTimeStamp(TimeUnit.MICROSECONDS)));
+	}
+
+	/**
+	 * @return a copy of the newest frame, whose pooled frame goes back to the
+	 * 		   source's pool
+	 */
+	@Override
+	public BufferedImage getImage() {
+		if (image == null) return null;
+
+		final BufferedImage copy = copy(image,
+				new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR));
+		framePool.release(take());
+		return copy;
+	}
+
+	/**
+	 * Frames read with the source's own pool are handed over without a copy.
+	 */
+	@Override
+	public BufferedImage getImage(FramePool pool) {
+		if (image == null) return null;
+		if (pool == framePool) return take();
+
+		final BufferedImage copy = copy(image,
+				pool.acquire(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR));
+		framePool.release(take());
+		return copy;
+	}
+
+	// The caller owns the frame from here on
+	private BufferedImage take() {
+		final BufferedImage frame = image;
+		image = null;
+		imageNew = false;
+		return frame;
+	}
+
+	private static BufferedImage copy(BufferedImage source, BufferedImage dest) {
+		final byte[] sourceData = ((DataBufferByte)source.getRaster().getDataBuffer()).getData();
+		final byte[] destData = ((DataBufferByte)dest.getRaster().getDataBuffer()).getData();
+		System.arraycopy(sourceData, 0, destData, 0, sourceData.length);
+		return dest;
+	}
+
+	@Override
+	public double getFPS() {
+		final long elapsed = System.nanoTime() - startTime;
+		if (elapsed <= 0) return 0;
+
+		return frameCount * 1e9 / elapsed;
+	}
+
+	/**
+	 * Frames have the size they were recorded at.
+	 */
+	@Override
+	public void setViewSize(Dimension size) {}
+
+	private static class DecodedPicture {
+		private final BufferedImage image;
+		private final long timestamp; // us
+
+		public DecodedPicture(BufferedImage image, long timestamp) {
+			this.image = image;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.IVideoResampler;
+
+/**
+ * Turns decoded video pictures into TYPE_3BYTE_BGR frames acquired from a
+ * {@link FramePool}. Letting the media reader generate images allocates a new
+ * image for every picture. This converter instead resamples each picture into
+ * one BGR picture it keeps, then copies that picture's rows straight into the
+ * pooled frame's raster. A converter serves one reader at a time.
+ */
+public class VideoPictureConverter {
+	private IVideoResampler resampler = null;
+	private IVideoPicture bgrPicture = null;
+
+	/**
+	 * @return a frame acquired from <tt>pool</tt> that the caller releases
+	 * 		   once it is done with it
+	 */
+	public BufferedImage toImage(IVideoPicture picture, FramePool pool) {
+		final int width = picture.getWidth();
+		final int height = picture.getHeight();
+		IVideoPicture source = picture;
+
+		if (picture.getPixelType() != IPixelFormat.Type.BGR24) {
+			if (resampler == null || resampler.getInputWidth() != width || resampler.getInputHeight() != height ||
+					resampler.getInputPixelFormat() != picture.getPixelType()) {
+				close();
+				resampler = IVideoResampler.make(width, height, IPixelFormat.Type.BGR24, width, height,
+						picture.getPixelType());
+				bgrPicture = IVideoPicture.make(IPixelFormat.Type.BGR24, width, height);
+			}
+
+			if (resampler.resample(bgrPicture, picture) < 0) {
+				throw new IllegalStateException("Could not convert a video picture to BGR");
+			}
+
+			source = bgrPicture;
+		}
+
+		final BufferedImage image = pool.acquire(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		final byte[] data = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		// Rows of a picture may be padded
+		final int lineSize = source.getDataLineSize(0);
+		final int rowBytes = width * 3;
+
+		for (int y = 0; y < height; y++) {
+			source.get(y * lineSize, data, y * rowBytes, rowBytes);
+		}
+
+		return image;
+	}
+
+	/**
+	 * Free the native resampler and picture. The converter can still be used
+	 * afterwards.
+	 */
+	public void close() {
+		if (resampler != null) resampler.delete();
+		if (bgrPicture != null) bgrPicture.delete();
+		resampler = null;
+		bgrPicture = null;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xuggle.mediatool.IMediaWriter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.xuggler.ICodec;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.video.ConverterFactory;
+import com.xuggle.xuggler.video.IConverter;
+
+/**
+ * Records a camera's frames to a video file on a dedicated encoder thread so
+ * that encoding never holds up the capture thread. Frames are copied into a
+ * fixed set of buffers and queued for the encoder. When the encoder falls so
+ * far behind that every buffer is in use, new frames are dropped and counted
+ * instead of waiting for a buffer to come free. The buffers are taken from the
+ * camera's {@link FramePool} and given back once the video is finished, so
+ * recording again does not allocate them again.
+ */
+public class VideoRecorder implements Runnable {
+	public interface FrameEncoder {
+		/**
+		 * @param frame		a TYPE_3BYTE_BGR frame of the recording's size, only
+		 * 					valid until this method returns
+		 * @param timestamp	microseconds since the recording started
+		 * @param keyFrame	<tt>true</tt> for the first frame of the recording
+		 */
+		void encodeFrame(BufferedImage frame, long timestamp, boolean keyFrame);
+
+		void close();
+	}
+
+	// Half a second of 30 FPS video
+	public static final int DEFAULT_BUFFER_COUNT = 15;
+	private static final long POLL_TIMEOUT = 100; // ms
+
+	private final Logger logger = LoggerFactory.getLogger(VideoRecorder.class);
+	private final String name;
+	private final int width;
+	private final int height;
+	private final FrameEncoder encoder;
+	private final FramePool framePool;
+
+	private final Deque<RecordedFrame> freeFrames = new ArrayDeque<RecordedFrame>();
+	private final BlockingQueue<RecordedFrame> queue;
+
+	private final AtomicLong recordedFrames = new AtomicLong(0);
+	private final AtomicLong droppedFrames = new AtomicLong(0);
+	private final Thread encoderThread;
+	private volatile boolean running = false;
+	// Set once the buffers went back to the pool, guarded by freeFrames
+	private boolean buffersReleased = false;
+	private long startTime;
+
+	private static class RecordedFrame {
+		private final BufferedImage image;
+		private long timestamp;
+
+		private RecordedFrame(BufferedImage image) {
+			this.image = image;
+		}
+	}
+
+	/**
+	 * Record H.264 video to <tt>videoFile</tt>.
+	 */
+	public VideoRecorder(String name, File videoFile, int width, int height) {
+		this(name, videoFile, width, height, new FramePool());
+	}
+
+	/**
+	 * Record H.264 video to <tt>videoFile</tt> using buffers from
+	 * <tt>framePool</tt>.
+	 */
+	public VideoRecorder(String name, File videoFile, int width, int height, FramePool framePool) {
+		this(name, width, height, DEFAULT_BUFFER_COUNT, new H264Encoder(videoFile, width, height), framePool);
+	}
+
+	/**
+	 * @param bufferCount	the number of frames that can wait for the encoder
+	 * 						before frames are dropped
+	 */
+	public VideoRecorder(String name, int width, int height, int bufferCount, FrameEncoder encoder) {
+		this(name, width, height, bufferCount, encoder, new FramePool());
+	}
+
+	public VideoRecorder(String name, int width, int height, int bufferCount, FrameEncoder encoder,
+			FramePool framePool) {
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.encoder = encoder;
+		this.framePool = framePool;
+
+		queue = new ArrayBlockingQueue<RecordedFrame>(bufferCount);
+		for (int i = 0; i < bufferCount; i++) {
+			freeFrames.add(new RecordedFrame(framePool.acquire(width, height, BufferedImage.TYPE_3BYTE_BGR)));
+		}
+
+		// Not a daemon, so a recording that is stopped on exit still gets finished
+		encoderThread = new Thread(this, String.format("%s Recorder", name));
+	}
+
+	public void start() {
+		startTime = System.currentTimeMillis();
+		running = true;
+		encoderThread.start();
+	}
+
+	/**
+	 * Stop accepting frames. Frames that are already queued are still encoded
+	 * before the video is closed.
+	 */
+	public void stop() {
+		synchronized (freeFrames) {
+			running = false;
+		}
+	}
+
+	/**
+	 * Wait for the encoder to finish the video after {@link #stop()}.
+	 */
+	public void awaitStopped() throws InterruptedException {
+		encoderThread.join();
+	}
+
+	public boolean isRecording() {
+		return running;
+	}
+
+	/**
+	 * @return the number of frames that were encoded
+	 */
+	public long getRecordedFrames() {
+		return recordedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames that were not recorded because the encoder
+	 * 			was too far behind
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * Queue a copy of <tt>frame</tt> to be encoded. Never blocks: if no buffer is
+	 * free the frame is dropped.
+	 *
+	 * @return <tt>true</tt> if the frame was queued
+	 */
+	public boolean record(BufferedImage frame) {
+		final RecordedFrame recordedFrame;
+		synchronized (freeFrames) {
+			if (!running) return false;
+			recordedFrame = freeFrames.poll();
+		}
+
+		if (recordedFrame == null) {
+			droppedFrames.incrementAndGet();
+			return false;
+		}
+
+		copyFrame(frame, recordedFrame.image);
+		recordedFrame.timestamp = (System.currentTimeMillis() - startTime) * 1000;
+
+		synchronized (freeFrames) {
+			// The recorder stopped and finished while the frame was copied, so
+			// nothing is left to encode it or give its buffer back
+			if (buffersReleased) {
+				framePool.release(recordedFrame.image);
+				return false;
+			}
+
+			// There are only as many buffers as queue slots, so this always succeeds
+			queue.offer(recordedFrame);
+		}
+
+		return true;
+	}
+
+	private void copyFrame(BufferedImage frame, BufferedImage buffer) {
+		if (frame.getType() == buffer.getType() && frame.getWidth() == width && frame.getHeight() == height) {
+			frame.copyData(buffer.getRaster());
+		} else {
+			Graphics2D g = buffer.createGraphics();
+			g.drawImage(frame, 0, 0, width, height, null);
+			g.dispose();
+		}
+	}
+
+	private void recycle(RecordedFrame recordedFrame) {
+		synchronized (freeFrames) {
+			freeFrames.add(recordedFrame);
+		}
+	}
+
+	@Override
+	public void run() {
+		boolean keyFrame = true;
+
+		try {
+			while (running || !queue.isEmpty()) {
+				RecordedFrame recordedFrame = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (recordedFrame == null) continue;
+
+				try {
+					encoder.encodeFrame(recordedFrame.image, recordedFrame.timestamp, keyFrame);
+					keyFrame = false;
+					recordedFrames.incrementAndGet();
+				} catch (Exception e) {
+					logger.error(String.format("Error encoding a frame for %s", name), e);
+				} finally {
+					recycle(recordedFrame);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			encoder.close();
+			releaseBuffers();
+			logger.debug("[{}] Recorded {} frames, dropped {}", name, recordedFrames.get(), droppedFrames.get());
+		}
+	}
+
+	private void releaseBuffers() {
+		synchronized (freeFrames) {
+			// A frame recorded while the recorder was stopping can still be queued
+			queue.drainTo(freeFrames);
+			for (RecordedFrame recordedFrame : freeFrames) framePool.release(recordedFrame.image);
+			freeFrames.clear();
+			buffersReleased = true;
+		}
+	}
+
+	/**
+	 * Encodes with xuggler. The writer and the converter are only touched by
+	 * the encoder thread, and one converter serves the whole recording because
+	 * every frame it is given has the same size and type.
+	 */
+	private static class H264Encoder implements FrameEncoder {
+		private final IMediaWriter videoWriter;
+		private IConverter converter;
+
+		private H264Encoder(File videoFile, int width, int height) {
+			videoWriter = ToolFactory.makeWriter(videoFile.getName());
+			videoWriter.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, width, height);
+		}
+
+		@Override
+		public void encodeFrame(BufferedImage frame, long timestamp, boolean keyFrame) {
+			if (converter == null) converter = ConverterFactory.createConverter(frame, IPixelFormat.Type.YUV420P);
+
+			IVideoPicture picture = converter.toPicture(frame, timestamp);
+			picture.setKeyFrame(keyFrame);
+			picture.setQuality(0);
+
+			videoWriter.encodeVideo(0, picture);
+			picture.delete();
+		}
+
+		@Override
+		public void close() {
+			if (converter != null) converter.delete();
+			videoWriter.close();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+/**
+ * Runs shot detection over a recorded video without a camera, a canvas or the
+ * JavaFX toolkit. Frames go through the same {@link FrameDetector} the camera
+ * manager searches a live feed with, including its duplicate frame check, and
+ * shots are timestamped with the video's own clock so the results do not
+ * depend on how fast the machine replays the video. Like a live lane, every
+ * shot the detector finds is reported.
+ */
+public class VideoReplay implements Callable<VideoReplay.Result> {
+	private final File videoFile;
+	private final int historySize;
+
+	private final FrameDetector frameDetector;
+	private final FramePool framePool = new FramePool();
+	private final List<ShotCandidate> shotCandidates = new ArrayList<ShotCandidate>();
+
+	private final List<ReplayedShot> shots = new ArrayList<ReplayedShot>();
+	private int frameCount = 0;
+	private long detectionTime = 0; // ns
+
+	public VideoReplay(File videoFile, int historySize) {
+		this.videoFile = videoFile;
+		this.historySize = historySize;
+		frameDetector = new FrameDetector(historySize);
+	}
+
+	public static class ReplayedShot {
+		private final int frame;
+		private final long timestamp;
+		private final ShotCandidate candidate;
+
+		public ReplayedShot(int frame, long timestamp, ShotCandidate candidate) {
+			this.frame = frame;
+			this.timestamp = timestamp;
+			this.candidate = candidate;
+		}
+
+		/**
+		 * @return the index of the frame the shot was detected in
+		 */
+		public int getFrame() {
+			return frame;
+		}
+
+		/**
+		 * @return the time into the video at which the shot was detected in
+		 * 			milliseconds
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public int getX() {
+			return candidate.getX();
+		}
+
+		public int getY() {
+			return candidate.getY();
+		}
+
+		public int getStrength() {
+			return candidate.getStrength();
+		}
+	}
+
+	public static class Result {
+		private final File videoFile;
+		private final List<ReplayedShot> shots;
+		private final int frameCount;
+		private final long elapsedTime;
+		private final long detectionTime;
+
+		public Result(File videoFile, List<ReplayedShot> shots, int frameCount, long elapsedTime,
+				long detectionTime) {
+			this.videoFile = videoFile;
+			this.shots = Collections.unmodifiableList(shots);
+			this.frameCount = frameCount;
+			this.elapsedTime = elapsedTime;
+			this.detectionTime = detectionTime;
+		}
+
+		public File getVideoFile() {
+			return videoFile;
+		}
+
+		public List<ReplayedShot> getShots() {
+			return shots;
+		}
+
+		public int getFrameCount() {
+			return frameCount;
+		}
+
+		/**
+		 * @return the time it took to decode and detect the whole video in ns
+		 */
+		public long getElapsedTime() {
+			return elapsedTime;
+		}
+
+		/**
+		 * @return the part of the elapsed time spent on detection in ns
+		 */
+		public long getDetectionTime() {
+			return detectionTime;
+		}
+
+		/**
+		 * @return the number of frames decoded and detected per second
+		 */
+		public double getFramesPerSecond() {
+			return elapsedTime > 0 ? frameCount / (elapsedTime / (double)TimeUnit.SECONDS.toNanos(1)) : 0;
+		}
+	}
+
+	public File getVideoFile() {
+		return videoFile;
+	}
+
+	public int getHistorySize() {
+		return historySize;
+	}
+
+	@Override
+	public Result call() {
+		long start = System.nanoTime();
+
+		// Pictures are decoded into pooled frames instead of a new image each
+		final VideoPictureConverter converter = new VideoPictureConverter();
+		IMediaReader reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
+		reader.addListener(new MediaListenerAdapter() {
+			@Override
+			public void onVideoPicture(IVideoPictureEvent event) {
+				BufferedImage frame = converter.toImage(event.getPicture(), framePool);
+				processFrame(frame, event.getTimeStamp(TimeUnit.MILLISECONDS));
+				framePool.release(frame);
+			}
+		});
+
+		while (reader.readPacket() == null);
+		if (reader.isOpen()) reader.close();
+		converter.close();
+
+		return new Result(videoFile, shots, frameCount, System.nanoTime() - start, detectionTime);
+	}
+
+	/**
+	 * Detect shots in the next frame of the video.
+	 *
+	 * @param timestamp	the time into the video the frame was shown at in
+	 * 					milliseconds
+	 */
+	public void processFrame(BufferedImage frame, long timestamp) {
+		long start = System.nanoTime();
+		int frameIndex = frameCount++;
+
+		if (!frameDetector.isDuplicate(frame)) {
+			shotCandidates.clear();
+			frameDetector.detectShots(frame, shotCandidates);
+
+			for (ShotCandidate candidate : shotCandidates) {
+				shots.add(new ReplayedShot(frameIndex, timestamp, candidate));
+			}
+		}
+
+		detectionTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * @return the detector frames are searched with, whose sectors and
+	 * 		   projection bounds may be set before the first frame is processed
+	 */
+	public FrameDetector getFrameDetector() {
+		return frameDetector;
+	}
+
+	/**
+	 * @return the kernel frames are searched with, which may be configured
+	 * 		   before the first frame is processed
+	 */
+	public ShotDetectionKernel getDetectionKernel() {
+		return frameDetector.getDetectionKernel();
+	}
+
+	public List<ReplayedShot> getShots() {
+		return Collections.unmodifiableList(shots);
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the pool decoded frames are taken from
+	 */
+	public FramePool getFramePool() {
+		return framePool;
+	}
+}
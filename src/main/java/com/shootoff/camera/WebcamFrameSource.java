@@ -0,0 +1,225 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.github.sarxos.webcam.Webcam;
+import com.github.sarxos.webcam.WebcamDevice;
+import com.github.sarxos.webcam.WebcamEvent;
+import com.github.sarxos.webcam.WebcamListener;
+
+/**
+ * Frames from a webcam through webcam-capture.
+ *
+ * Drivers that can copy a frame's bytes into a buffer (see
+ * {@link WebcamDevice.BufferAccess}) are streamed without webcam-capture's
+ * grabbing thread. Each frame is read on the capture thread straight into a
+ * pooled frame, so no image is allocated per frame. Other drivers are
+ * streamed through the grabbing thread, which hands out a new image for every
+ * frame.
+ */
+public class WebcamFrameSource implements FrameSource {
+	// While waiting for an image, isImageNew is polled at least this often in
+	// case the driver never announces its images
+	private static final long MIN_POLL_INTERVAL = 1; // ms
+	private static final long MAX_POLL_INTERVAL = 16; // ms
+
+	private final Webcam webcam;
+	private final boolean bufferAccess;
+	private final Object imageLock = new Object();
+	private boolean imageObtained = false;
+	private boolean listening = false;
+
+	public WebcamFrameSource(Webcam webcam) {
+		this.webcam = webcam;
+		this.bufferAccess = webcam.getDevice() instanceof WebcamDevice.BufferAccess;
+	}
+
+	@Override
+	public String getName() {
+		return webcam.getName();
+	}
+
+	@Override
+	public boolean open() {
+		return webcam.open();
+	}
+
+	/**
+	 * Open the webcam so that it grabs images on a thread of its own and
+	 * announces every new image, which lets {@link #awaitImage(long)} sleep
+	 * until an image arrives. A webcam whose driver gives buffer access is
+	 * opened like {@link #open()} instead. A synchronous webcam always has a
+	 * new image, and reading it waits for the device.
+	 */
+	@Override
+	public boolean openStreaming() {
+		if (bufferAccess) return webcam.open();
+
+		listen();
+		return webcam.open(true);
+	}
+
+	@Override
+	public boolean close() {
+		return webcam.close();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return webcam.isOpen();
+	}
+
+	@Override
+	public boolean isLocked() {
+		return webcam.getLock().isLocked();
+	}
+
+	@Override
+	public boolean isImageNew() {
+		return webcam.isImageNew();
+	}
+
+	/**
+	 * The thread is woken by the webcam's image events and otherwise checks for
+	 * a new image with a backoff that grows up to MAX_POLL_INTERVAL.
+	 */
+	@Override
+	public boolean awaitImage(long timeout) throws InterruptedException {
+		listen();
+
+		final long deadline = System.currentTimeMillis() + timeout;
+		long pollInterval = MIN_POLL_INTERVAL;
+
+		while (true) {
+			synchronized (imageLock) {
+				imageObtained = false;
+			}
+
+			if (webcam.isImageNew()) return true;
+			if (!webcam.isOpen()) return false;
+
+			final long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) return false;
+
+			synchronized (imageLock) {
+				if (!imageObtained) imageLock.wait(Math.min(pollInterval, remaining));
+			}
+
+			pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
+		}
+	}
+
+	private void listen() {
+		synchronized (imageLock) {
+			if (listening) return;
+			listening = true;
+		}
+
+		webcam.addWebcamListener(new WebcamListener() {
+			@Override
+			public void webcamOpen(WebcamEvent event) {}
+
+			@Override
+			public void webcamClosed(WebcamEvent event) {
+				imageArrived();
+			}
+
+			@Override
+			public void webcamDisposed(WebcamEvent event) {
+				imageArrived();
+			}
+
+			@Override
+			public void webcamImageObtained(WebcamEvent event) {
+				imageArrived();
+			}
+		});
+	}
+
+	// Wake any thread in awaitImage so it checks the webcam again
+	private void imageArrived() {
+		synchronized (imageLock) {
+			imageObtained = true;
+			imageLock.notifyAll();
+		}
+	}
+
+	@Override
+	public BufferedImage getImage() {
+		return webcam.getImage();
+	}
+
+	/**
+	 * Drivers with buffer access write their frames straight into a frame from
+	 * <tt>pool</tt>.
+	 */
+	@Override
+	public BufferedImage getImage(FramePool pool) {
+		if (!bufferAccess) return getImage();
+
+		final Dimension size = webcam.getViewSize();
+		final BufferedImage frame = pool.acquire(size.width, size.height, BufferedImage.TYPE_3BYTE_BGR);
+		final byte[] data = ((DataBufferByte)frame.getRaster().getDataBuffer()).getData();
+
+		webcam.getImageBytes(ByteBuffer.wrap(data));
+
+		// Nothing was read from a webcam that is gone
+		if (!webcam.isOpen()) {
+			pool.release(frame);
+			return null;
+		}
+
+		// The driver writes RGB, the frame is stored BGR
+		for (int i = 0; i < data.length; i += 3) {
+			final byte r = data[i];
+			data[i] = data[i + 2];
+			data[i + 2] = r;
+		}
+
+		return frame;
+	}
+
+	@Override
+	public double getFPS() {
+		return webcam.getFPS();
+	}
+
+	@Override
+	public Dimension[] getViewSizes() {
+		return webcam.getViewSizes();
+	}
+
+	/**
+	 * Sizes the driver does not list are registered as custom sizes, which
+	 * drivers that can capture at any size honour.
+	 */
+	@Override
+	public void setViewSize(Dimension size) {
+		if (!Arrays.asList(webcam.getViewSizes()).contains(size)) {
+			webcam.setCustomViewSizes(new Dimension[] { size });
+		}
+
+		webcam.setViewSize(size);
+	}
+}
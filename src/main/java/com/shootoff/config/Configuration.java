@@ -18,6 +18,7 @@
 
 package com.shootoff.config;
 
+import java.awt.Dimension;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -47,6 +48,7 @@ import com.github.sarxos.webcam.ds.buildin.WebcamDefaultDriver;
 import com.shootoff.camera.Camera;
 import com.shootoff.camera.DeduplicationProcessor;
 import com.shootoff.camera.MalfunctionsProcessor;
+import com.shootoff.camera.ShotDetectionKernel;
 import com.shootoff.camera.ShotProcessor;
 import com.shootoff.camera.VirtualMagazineProcessor;
 import com.shootoff.plugins.TrainingProtocol;
@@ -65,6 +67,14 @@ public class Configuration {
 	private static final String VIRTUAL_MAGAZINE_CAPACITY_PROP = "shootoff.virtualmagazine.capacity";
 	private static final String USE_MALFUNCTIONS_PROP = "shootoff.malfunctions.use";
 	private static final String MALFUNCTIONS_PROBABILITY_PROP = "shootoff.malfunctions.probability";
+	private static final String HISTORY_SIZE_PROP = "shootoff.detection.historysize";
+	private static final String DETECTION_PARALLELISM_PROP = "shootoff.detection.parallelism";
+	private static final String PEAK_RADIUS_PROP = "shootoff.detection.peakradius";
+	private static final String MAX_SHOTS_PER_FRAME_PROP = "shootoff.detection.maxshots";
+	private static final String DETECTION_CPU_BUDGET_PROP = "shootoff.detection.cpubudget";
+	private static final String PREVIEW_FPS_PROP = "shootoff.preview.fps";
+	private static final String PAUSE_HIDDEN_PREVIEW_PROP = "shootoff.preview.pausehidden";
+	private static final String WEBCAM_RESOLUTION_PROP = "shootoff.webcam.resolution";
 	
 	protected static final String DETECTION_RATE_MESSAGE = 
 			"DETECTION_RATE has an invalid value: %d. Acceptable values are "
@@ -86,6 +96,27 @@ public class Configuration {
 	protected static final String INJECT_MALFUNCTIONS_MESSAGE = 
 			"INJECT_MALFUNCTIONS has an invalid value: %f. Acceptable values are "
 			+ "between 0.1 and 99.9.";
+	protected static final String HISTORY_SIZE_MESSAGE = 
+			"HISTORY_SIZE has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 60.";
+	protected static final String DETECTION_PARALLELISM_MESSAGE = 
+			"DETECTION_PARALLELISM has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 64.";
+	protected static final String PEAK_RADIUS_MESSAGE = 
+			"PEAK_RADIUS has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 30.";
+	protected static final String MAX_SHOTS_PER_FRAME_MESSAGE = 
+			"MAX_SHOTS_PER_FRAME has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 100.";
+	protected static final String DETECTION_CPU_BUDGET_MESSAGE = 
+			"DETECTION_CPU_BUDGET has an invalid value: %d. Acceptable values are "
+			+ "between 10 and 100.";
+	protected static final String PREVIEW_FPS_MESSAGE = 
+			"PREVIEW_FPS has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 60.";
+	protected static final String WEBCAM_RESOLUTION_MESSAGE = 
+			"WEBCAM_RESOLUTION has an invalid value: %s. Acceptable values are "
+			+ "WIDTHxHEIGHT with both sides between 1 and 4096.";
 	
 	private static final String DEFAULT_CONFIG_FILE = "shootoff.properties";
 
@@ -106,6 +137,14 @@ public class Configuration {
 	private int virtualMagazineCapacity = 7;
 	private boolean useMalfunctions = false;
 	private float malfunctionsProbability = (float)10.0;
+	private int historySize = 5;
+	private int detectionParallelism = 1;
+	private int peakRadius = ShotDetectionKernel.DEFAULT_PEAK_RADIUS;
+	private int maxShotsPerFrame = ShotDetectionKernel.DEFAULT_MAX_SHOTS;
+	private int detectionCPUBudget = 50;
+	private int previewFPS = 30;
+	private boolean pauseHiddenPreview = true;
+	private Optional<Dimension> webcamResolution = Optional.empty();
 	private boolean debugMode = false;
 	private TrainingProtocol currentProtocol = null;
 
@@ -261,6 +300,46 @@ public class Configuration {
 					Float.parseFloat(prop.getProperty(MALFUNCTIONS_PROBABILITY_PROP)));
 		}
 		
+		if (prop.containsKey(HISTORY_SIZE_PROP)) {
+			setHistorySize(
+					Integer.parseInt(prop.getProperty(HISTORY_SIZE_PROP)));
+		}
+		
+		if (prop.containsKey(DETECTION_PARALLELISM_PROP)) {
+			setDetectionParallelism(
+					Integer.parseInt(prop.getProperty(DETECTION_PARALLELISM_PROP)));
+		}
+		
+		if (prop.containsKey(PEAK_RADIUS_PROP)) {
+			setPeakRadius(
+					Integer.parseInt(prop.getProperty(PEAK_RADIUS_PROP)));
+		}
+		
+		if (prop.containsKey(MAX_SHOTS_PER_FRAME_PROP)) {
+			setMaxShotsPerFrame(
+					Integer.parseInt(prop.getProperty(MAX_SHOTS_PER_FRAME_PROP)));
+		}
+		
+		if (prop.containsKey(DETECTION_CPU_BUDGET_PROP)) {
+			setDetectionCPUBudget(
+					Integer.parseInt(prop.getProperty(DETECTION_CPU_BUDGET_PROP)));
+		}
+		
+		if (prop.containsKey(PREVIEW_FPS_PROP)) {
+			setPreviewFPS(
+					Integer.parseInt(prop.getProperty(PREVIEW_FPS_PROP)));
+		}
+		
+		if (prop.containsKey(PAUSE_HIDDEN_PREVIEW_PROP)) {
+			setPauseHiddenPreview(
+					Boolean.parseBoolean(prop.getProperty(PAUSE_HIDDEN_PREVIEW_PROP)));
+		}
+		
+		if (prop.containsKey(WEBCAM_RESOLUTION_PROP)) {
+			setWebcamResolution(Optional.of(
+					parseResolution(prop.getProperty(WEBCAM_RESOLUTION_PROP))));
+		}
+		
 		validateConfiguration();
 	}
 	
@@ -290,6 +369,16 @@ public class Configuration {
 		prop.setProperty(VIRTUAL_MAGAZINE_CAPACITY_PROP, String.valueOf(virtualMagazineCapacity));
 		prop.setProperty(USE_MALFUNCTIONS_PROP, String.valueOf(useMalfunctions));
 		prop.setProperty(MALFUNCTIONS_PROBABILITY_PROP, String.valueOf(malfunctionsProbability));
+		prop.setProperty(HISTORY_SIZE_PROP, String.valueOf(historySize));
+		prop.setProperty(DETECTION_PARALLELISM_PROP, String.valueOf(detectionParallelism));
+		prop.setProperty(PEAK_RADIUS_PROP, String.valueOf(peakRadius));
+		prop.setProperty(MAX_SHOTS_PER_FRAME_PROP, String.valueOf(maxShotsPerFrame));
+		prop.setProperty(DETECTION_CPU_BUDGET_PROP, String.valueOf(detectionCPUBudget));
+		prop.setProperty(PREVIEW_FPS_PROP, String.valueOf(previewFPS));
+		prop.setProperty(PAUSE_HIDDEN_PREVIEW_PROP, String.valueOf(pauseHiddenPreview));
+		if (webcamResolution.isPresent()) {
+			prop.setProperty(WEBCAM_RESOLUTION_PROP, formatResolution(webcamResolution.get()));
+		}
 		
 		OutputStream outputStream = new FileOutputStream(configName);
 		prop.store(outputStream, "ShootOFF Configuration");
@@ -396,6 +485,63 @@ public class Configuration {
 			throw new ConfigurationException(
 					String.format(INJECT_MALFUNCTIONS_MESSAGE, malfunctionsProbability));
 		}
+		
+		if (historySize < 1 || historySize > 60) {
+			throw new ConfigurationException(
+					String.format(HISTORY_SIZE_MESSAGE, historySize));
+		}
+		
+		if (detectionParallelism < 1 || detectionParallelism > 64) {
+			throw new ConfigurationException(
+					String.format(DETECTION_PARALLELISM_MESSAGE, detectionParallelism));
+		}
+		
+		if (peakRadius < 1 || peakRadius > 30) {
+			throw new ConfigurationException(
+					String.format(PEAK_RADIUS_MESSAGE, peakRadius));
+		}
+		
+		if (maxShotsPerFrame < 1 || maxShotsPerFrame > 100) {
+			throw new ConfigurationException(
+					String.format(MAX_SHOTS_PER_FRAME_MESSAGE, maxShotsPerFrame));
+		}
+		
+		if (detectionCPUBudget < 10 || detectionCPUBudget > 100) {
+			throw new ConfigurationException(
+					String.format(DETECTION_CPU_BUDGET_MESSAGE, detectionCPUBudget));
+		}
+		
+		if (previewFPS < 1 || previewFPS > 60) {
+			throw new ConfigurationException(
+					String.format(PREVIEW_FPS_MESSAGE, previewFPS));
+		}
+		
+		if (webcamResolution.isPresent()) {
+			final Dimension resolution = webcamResolution.get();
+			if (resolution.width < 1 || resolution.width > 4096 ||
+					resolution.height < 1 || resolution.height > 4096) {
+				throw new ConfigurationException(
+						String.format(WEBCAM_RESOLUTION_MESSAGE, formatResolution(resolution)));
+			}
+		}
+	}
+	
+	private static Dimension parseResolution(String resolution) throws ConfigurationException {
+		final String[] sides = resolution.trim().toLowerCase().split("x");
+		
+		try {
+			if (sides.length == 2) {
+				return new Dimension(Integer.parseInt(sides[0].trim()), Integer.parseInt(sides[1].trim()));
+			}
+		} catch (NumberFormatException e) {
+			// Reported below with the rest of the malformed values
+		}
+		
+		throw new ConfigurationException(String.format(WEBCAM_RESOLUTION_MESSAGE, resolution));
+	}
+	
+	private static String formatResolution(Dimension resolution) {
+		return resolution.width + "x" + resolution.height;
 	}
 	
 	public void setWebcams(List<String> webcamNames, List<Camera> webcams) {
@@ -486,6 +632,38 @@ public class Configuration {
 		}
 	}
 
+	public void setHistorySize(int historySize) {
+		this.historySize = historySize;
+	}
+
+	public void setDetectionParallelism(int detectionParallelism) {
+		this.detectionParallelism = detectionParallelism;
+	}
+
+	public void setPeakRadius(int peakRadius) {
+		this.peakRadius = peakRadius;
+	}
+
+	public void setMaxShotsPerFrame(int maxShotsPerFrame) {
+		this.maxShotsPerFrame = maxShotsPerFrame;
+	}
+
+	public void setDetectionCPUBudget(int detectionCPUBudget) {
+		this.detectionCPUBudget = detectionCPUBudget;
+	}
+
+	public void setPreviewFPS(int previewFPS) {
+		this.previewFPS = previewFPS;
+	}
+
+	public void setPauseHiddenPreview(boolean pauseHiddenPreview) {
+		this.pauseHiddenPreview = pauseHiddenPreview;
+	}
+
+	public void setWebcamResolution(Optional<Dimension> webcamResolution) {
+		this.webcamResolution = webcamResolution;
+	}
+
 	public void setDebugMode(boolean debugMode) {
 		this.debugMode = debugMode;
 		
@@ -585,6 +763,54 @@ public class Configuration {
 		return malfunctionsProbability;
 	}
 
+	public int getHistorySize() {
+		return historySize;
+	}
+
+	public int getDetectionParallelism() {
+		return detectionParallelism;
+	}
+
+	public int getPeakRadius() {
+		return peakRadius;
+	}
+
+	public int getMaxShotsPerFrame() {
+		return maxShotsPerFrame;
+	}
+
+	/**
+	 * @return the percentage of one core shot detection may use per camera
+	 * 			before frames are skipped
+	 */
+	public int getDetectionCPUBudget() {
+		return detectionCPUBudget;
+	}
+
+	/**
+	 * @return how many frames per second each camera's preview shows, which
+	 * 			can be lower than the rate shots are detected at
+	 */
+	public int getPreviewFPS() {
+		return previewFPS;
+	}
+
+	/**
+	 * @return <tt>true</tt> if cameras whose tab is not showing stop updating
+	 * 			their preview
+	 */
+	public boolean pauseHiddenPreview() {
+		return pauseHiddenPreview;
+	}
+
+	/**
+	 * @return the view size webcams are opened at, or empty to open them at
+	 * 			the largest size they support
+	 */
+	public Optional<Dimension> getWebcamResolution() {
+		return webcamResolution;
+	}
+
 	public boolean inDebugMode() {
 		return debugMode;
 	}
@@ -18,6 +18,8 @@
 
 package com.shootoff.gui;
 
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,12 +27,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CamerasSupervisor;
 import com.shootoff.camera.Shot;
+import com.shootoff.camera.ShotLatency;
 import com.shootoff.camera.ShotProcessor;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.controller.ProjectorArenaController;
@@ -62,17 +67,20 @@ public class CanvasManager {
 	private final CamerasSupervisor camerasSupervisor;
 	private final ObservableList<ShotEntry> shotEntries;
 	private final ImageView background = new ImageView();
+	private final PreviewImage preview = new PreviewImage(this::showPreview);
+	private volatile Optional<Bounds> previewBounds = Optional.empty();
 	private final List<Shot> shots;
+	private final ShotOverlay shotOverlay = new ShotOverlay();
 	private final List<Group> targets = new ArrayList<Group>();
 
 	private ProgressIndicator progress;
 	private Optional<ContextMenu> contextMenu;
 	private Optional<Group> selectedTarget = Optional.empty();
 	private long startTime = 0;
-	private boolean showShots = true;
 
 	private Optional<ProjectorArenaController> arenaController = Optional.empty();
 	private Optional<Bounds> projectionBounds = Optional.empty();
+	private Optional<ShotLatency> shotLatency = Optional.empty();
 
 	public CanvasManager(Group canvasGroup, Configuration config, CamerasSupervisor camerasSupervisor,
 			ObservableList<ShotEntry> shotEntries) {
@@ -95,6 +103,8 @@ public class CanvasManager {
 			canvasGroup.getChildren().add(progress);
 		}
 
+		canvasGroup.getChildren().add(shotOverlay.getCanvas());
+
 		canvasGroup.setOnMouseClicked((event) -> {
 			if (config.inDebugMode() && event.getButton() == MouseButton.PRIMARY) {
 				// Click to shoot
@@ -114,22 +124,54 @@ public class CanvasManager {
 	}
 
 	public void updateBackground(Image img, Optional<Bounds> projectionBounds) {
+		addBackground();
+		placeBackground(projectionBounds);
+		background.setImage(img);
+	}
+
+	/**
+	 * Show the <tt>region</tt> of a camera frame as the background. The frame's
+	 * pixels are copied into an image that is reused from frame to frame, and the
+	 * scene is updated at most once per pulse no matter how often this is called.
+	 *
+	 * @param projectionBounds	if present, where on the canvas to show the
+	 * 							region, otherwise it fills the canvas
+	 */
+	public void updateBackground(BufferedImage frame, Rectangle region, Optional<Bounds> projectionBounds) {
+		previewBounds = projectionBounds;
+		preview.update(frame, region);
+	}
+
+	private void showPreview(Image img) {
+		if (!canvasGroup.getChildren().contains(background)) {
+			canvasGroup.getChildren().setAll(background, shotOverlay.getCanvas());
+		}
+
+		placeBackground(previewBounds);
+		if (background.getImage() != img) background.setImage(img);
+	}
+
+	private void addBackground() {
 		if (!canvasGroup.getChildren().contains(background)) {
 			Platform.runLater(() -> {
-					canvasGroup.getChildren().clear();
-					canvasGroup.getChildren().add(background);
+					canvasGroup.getChildren().setAll(background, shotOverlay.getCanvas());
 				});
 		}
+	}
 
+	private void placeBackground(Optional<Bounds> projectionBounds) {
+		// Frames that are not the size of the feed are scaled to fit it
 		if (projectionBounds.isPresent()) {
 			background.setX(projectionBounds.get().getMinX());
 			background.setY(projectionBounds.get().getMinY());
+			background.setFitWidth(projectionBounds.get().getWidth());
+			background.setFitHeight(projectionBounds.get().getHeight());
 		} else {
 			background.setX(0);
 			background.setY(0);
+			background.setFitWidth(CameraManager.FEED_WIDTH);
+			background.setFitHeight(CameraManager.FEED_HEIGHT);
 		}
-
-		background.setImage(img);
 	}
 
 	public Group getCanvasGroup() {
@@ -138,10 +180,7 @@ public class CanvasManager {
 
 	public void clearShots() {
 		Platform.runLater(() -> {
-			for (Shot shot : shots) {
-				canvasGroup.getChildren().remove(shot.getMarker());
-			}
-
+			shotOverlay.clearShots();
 			shots.clear();
 			if (shotEntries != null) shotEntries.clear();
 			if (arenaController.isPresent()) arenaController.get().getCanvasManager().clearShots();
@@ -172,18 +211,41 @@ public class CanvasManager {
 		this.projectionBounds = Optional.ofNullable(projectionBounds);
 	}
 
+	/**
+	 * @param shotLatency	records how long shots take to reach the canvas and the
+	 * 						training protocol after their frame was captured
+	 */
+	public void setShotLatency(ShotLatency shotLatency) {
+		this.shotLatency = Optional.ofNullable(shotLatency);
+	}
+
 	public void setShowShots(boolean showShots) {
-		if (this.showShots != showShots) {
-			for (Shot shot : shots) shot.getMarker().setVisible(showShots);
-		}
+		shotOverlay.setShowShots(showShots);
+	}
 
-		this.showShots = showShots;
+	/**
+	 * Highlight a shot's marker. Shots that are not on this canvas are ignored.
+	 */
+	public void setShotSelected(Shot shot, boolean selected) {
+		shotOverlay.setSelected(shot, selected);
 	}
 
 	public void addShot(Color color, double x, double y) {
+		addShot(color, x, y, System.nanoTime());
+	}
+
+	/**
+	 * @param captureTime	the System.nanoTime() at which the frame the shot was
+	 * 						detected in was captured
+	 */
+	public void addShot(Color color, double x, double y, long captureTime) {
+		if (shotLatency.isPresent()) shotLatency.get().recordSince(ShotLatency.Stage.CANVAS, captureTime);
+
 		if (startTime == 0) startTime = System.currentTimeMillis();
-		Shot shot = new Shot(color, x, y,
-				System.currentTimeMillis() - startTime, config.getMarkerRadius());
+		// Time the shot from when its frame was captured, not from when detection finished
+		long timestamp = System.currentTimeMillis() - startTime -
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - captureTime);
+		Shot shot = new Shot(color, x, y, Math.max(0, timestamp), captureTime, config.getMarkerRadius());
 
 		//for (ShotProcessor processor : config.getShotProcessors()) {
 		//	if (!processor.processShot(shot)) {
@@ -194,7 +256,7 @@ public class CanvasManager {
 
 		shotEntries.add(new ShotEntry(shot));
 		shots.add(shot);
-		drawShot(shot);
+		shotOverlay.addShot(shot);
 
 		if (config.useRedLaserSound() && color.equals(Color.RED)) {
 			TrainingProtocolBase.playSound(config.getRedLaserSound());
@@ -217,23 +279,32 @@ public class CanvasManager {
 
 				Shot arenaShot = new Shot(shot.getColor(),
 						(shot.getX() - b.getMinX()) * x_scale, (shot.getY() - b.getMinY()) * y_scale,
-						shot.getTimestamp(), config.getMarkerRadius());
+						shot.getTimestamp(), shot.getCaptureTime(), config.getMarkerRadius());
 
-				processedShot = arenaController.get().getCanvasManager().addArenaShot(arenaShot);
+				processedShot = arenaController.get().getCanvasManager().addArenaShot(arenaShot, shotLatency);
 			}
 		}
 
-		if (currentProtocol.isPresent() && !processedShot) currentProtocol.get().shotListener(shot, hitRegion);
+		if (currentProtocol.isPresent() && !processedShot) {
+			if (shotLatency.isPresent()) shotLatency.get().recordSince(ShotLatency.Stage.PROTOCOL, shot.getCaptureTime());
+			currentProtocol.get().shotListener(shot, hitRegion);
+		}
 	}
 
-	public boolean addArenaShot(Shot shot) {
+	/**
+	 * @param shotLatency	records how long the shot took to reach the training
+	 * 						protocol, if the protocol gets it here
+	 * @return <tt>true</tt> if the training protocol got the shot
+	 */
+	public boolean addArenaShot(Shot shot, Optional<ShotLatency> shotLatency) {
 		shots.add(shot);
-		drawShot(shot);
+		shotOverlay.addShot(shot);
 
 		Optional<TrainingProtocol> currentProtocol = config.getProtocol();
 		Optional<TargetRegion> hitRegion = checkHit(shot);
 		if (hitRegion.isPresent() && hitRegion.get().tagExists("command")) executeRegionCommands(hitRegion.get());
 		if (currentProtocol.isPresent()) {
+			if (shotLatency.isPresent()) shotLatency.get().recordSince(ShotLatency.Stage.PROTOCOL, shot.getCaptureTime());
 			currentProtocol.get().shotListener(shot, hitRegion);
 			return true;
 		}
@@ -241,13 +312,6 @@ public class CanvasManager {
 		return false;
 	}
 
-	private void drawShot(Shot shot) {
-		Platform.runLater(() -> {
-				canvasGroup.getChildren().add(shot.getMarker());
-				shot.getMarker().setVisible(showShots);
-			});
-	}
-
 	private Optional<TargetRegion> checkHit(Shot shot) {
 		for (Group target : targets) {
 			if (target.getBoundsInParent().contains(shot.getX(), shot.getY())) {
@@ -434,7 +498,15 @@ public class CanvasManager {
 	}
 
 	public void addTarget(Group target, boolean userDeletable) {
-		Platform.runLater(() -> { canvasGroup.getChildren().add(target); });
+		Platform.runLater(() -> {
+				// Targets go under the shot markers
+				final int overlayIndex = canvasGroup.getChildren().indexOf(shotOverlay.getCanvas());
+				if (overlayIndex < 0) {
+					canvasGroup.getChildren().add(target);
+				} else {
+					canvasGroup.getChildren().add(overlayIndex, target);
+				}
+			});
 		new TargetContainer(target, config, this, userDeletable);
 		targets.add(target);
 	}
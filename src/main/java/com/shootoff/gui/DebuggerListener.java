@@ -21,8 +21,11 @@ package com.shootoff.gui;
 import java.awt.image.BufferedImage;
 
 import com.shootoff.camera.LightingCondition;
+import com.shootoff.camera.ShotLatency;
 
 public interface DebuggerListener {
 	public void updateDebugView(BufferedImage thresholdImg);
-	public void updateFeedData(double fps, LightingCondition lightingCondition);
+	public void updateFeedData(double fps, double detectionFPS, double previewFPS, long duplicateFrames,
+			LightingCondition lightingCondition);
+	public void updateLatencyData(ShotLatency shotLatency);
 }
\ No newline at end of file
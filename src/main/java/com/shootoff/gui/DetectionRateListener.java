@@ -0,0 +1,28 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.gui;
+
+import com.shootoff.camera.DetectionRateController;
+
+public interface DetectionRateListener {
+	/**
+	 * Called from the detection thread when a camera's detection rate state
+	 * changes, not on every frame.
+	 */
+	public void detectionRateChanged(DetectionRateController.State state, double cameraFPS, double detectionFPS);
+}
@@ -0,0 +1,116 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shootoff.gui;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+import com.shootoff.camera.PackedRaster;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Shows camera frames in a single WritableImage that is rewritten in place
+ * instead of converting every frame into a new JavaFX Image.
+ *
+ * Frames are read into one of three pixel buffers: the preview thread fills
+ * the back buffer and swaps it with the ready buffer, and the FX thread swaps
+ * the ready buffer with the front buffer it copies into the image. Neither
+ * thread waits on the other, and at most one update is queued on the FX thread
+ * at a time, so frames that arrive faster than the scene is rendered replace
+ * each other instead of piling up.
+ */
+public class PreviewImage {
+	private static final class Pixels {
+		private int[] data;
+		private int width;
+		private int height;
+	}
+
+	private final Consumer<Image> presenter;
+	private final Object swapLock = new Object();
+
+	private Pixels back = new Pixels();
+	private Pixels ready = new Pixels();
+	private Pixels front = new Pixels();
+	// Guarded by swapLock
+	private boolean frameReady = false;
+	private boolean updateQueued = false;
+
+	// Only accessed on the FX thread
+	private WritableImage image;
+
+	/**
+	 * @param presenter	called on the FX thread after the image was updated
+	 */
+	public PreviewImage(Consumer<Image> presenter) {
+		this.presenter = presenter;
+	}
+
+	/**
+	 * Queue the <tt>region</tt> of <tt>frame</tt> to be shown. Only one thread may
+	 * update the preview, and the frame may be reused as soon as this returns.
+	 */
+	public void update(BufferedImage frame, Rectangle region) {
+		back.data = PackedRaster.readRGB(frame, region.x, region.y, region.width, region.height, back.data);
+		back.width = region.width;
+		back.height = region.height;
+
+		// JavaFX has no opaque int format, so make every pixel opaque
+		final int[] data = back.data;
+		for (int i = 0, n = region.width * region.height; i < n; i++) data[i] |= 0xFF000000;
+
+		final boolean queueUpdate;
+		synchronized (swapLock) {
+			Pixels swapped = ready;
+			ready = back;
+			back = swapped;
+			frameReady = true;
+
+			queueUpdate = !updateQueued;
+			updateQueued = true;
+		}
+
+		if (queueUpdate) Platform.runLater(this::present);
+	}
+
+	private void present() {
+		synchronized (swapLock) {
+			updateQueued = false;
+			if (!frameReady) return;
+
+			Pixels swapped = front;
+			front = ready;
+			ready = swapped;
+			frameReady = false;
+		}
+
+		if (image == null || (int)image.getWidth() != front.width || (int)image.getHeight() != front.height) {
+			image = new WritableImage(front.width, front.height);
+		}
+
+		image.getPixelWriter().setPixels(0, 0, front.width, front.height, PixelFormat.getIntArgbInstance(),
+				front.data, 0, front.width);
+
+		presenter.accept(image);
+	}
+}
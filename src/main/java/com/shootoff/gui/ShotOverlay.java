@@ -0,0 +1,156 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.shootoff.camera.Shot;
+import com.shootoff.targets.TargetRegion;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Draws the markers of every shot on a canvas onto a single {@link Canvas}
+ * instead of adding a node per shot, so the scene graph stays the same size no
+ * matter how many shots a drill piles up. Shots can be added from any thread.
+ * The canvas is redrawn on the JavaFX application thread at most once per
+ * pulse, and when shots were only added since the last redraw, only the new
+ * markers are drawn.
+ */
+public class ShotOverlay {
+	private final Canvas canvas = new Canvas();
+	private final AtomicBoolean redrawPending = new AtomicBoolean(false);
+
+	// Guarded by this
+	private final List<Shot> shots = new ArrayList<Shot>();
+	private final Set<Shot> selectedShots = Collections.newSetFromMap(new IdentityHashMap<Shot, Boolean>());
+	private boolean showShots = true;
+	private boolean fullRedraw = false;
+	private int drawnShots = 0;
+
+	public ShotOverlay() {
+		// Clicks go to the targets and background under the markers
+		canvas.setMouseTransparent(true);
+	}
+
+	public Canvas getCanvas() {
+		return canvas;
+	}
+
+	public void addShot(Shot shot) {
+		synchronized (this) {
+			shots.add(shot);
+		}
+
+		requestRedraw();
+	}
+
+	public void clearShots() {
+		synchronized (this) {
+			shots.clear();
+			selectedShots.clear();
+			fullRedraw = true;
+		}
+
+		requestRedraw();
+	}
+
+	public void setShowShots(boolean showShots) {
+		synchronized (this) {
+			if (this.showShots == showShots) return;
+
+			this.showShots = showShots;
+			fullRedraw = true;
+		}
+
+		requestRedraw();
+	}
+
+	/**
+	 * Highlight a shot's marker, e.g. while it is selected in the shot timer
+	 * table. Shots that are not on this overlay are ignored.
+	 */
+	public void setSelected(Shot shot, boolean selected) {
+		synchronized (this) {
+			if (!shots.contains(shot)) return;
+
+			final boolean changed = selected ? selectedShots.add(shot) : selectedShots.remove(shot);
+			if (!changed) return;
+
+			fullRedraw = true;
+		}
+
+		requestRedraw();
+	}
+
+	private void requestRedraw() {
+		if (redrawPending.compareAndSet(false, true)) Platform.runLater(this::redraw);
+	}
+
+	private synchronized void redraw() {
+		redrawPending.set(false);
+
+		final GraphicsContext gc = canvas.getGraphicsContext2D();
+
+		// Resizing the canvas may discard what was drawn on it
+		final boolean resized = growCanvas();
+
+		if (fullRedraw || resized) {
+			gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+			drawnShots = 0;
+			fullRedraw = false;
+		}
+
+		if (!showShots) return;
+
+		for (; drawnShots < shots.size(); drawnShots++) {
+			final Shot shot = shots.get(drawnShots);
+			final int radius = shot.getMarkerRadius();
+
+			gc.setFill(selectedShots.contains(shot) ? TargetRegion.SELECTED_STROKE_COLOR : shot.getColor());
+			gc.fillOval(shot.getX() - radius, shot.getY() - radius, radius * 2, radius * 2);
+		}
+	}
+
+	// The canvas only grows to cover the markers, which spares a large canvas on
+	// the camera feed and keeps up with arena windows that are resized
+	private boolean growCanvas() {
+		double width = canvas.getWidth();
+		double height = canvas.getHeight();
+
+		for (int i = drawnShots; i < shots.size(); i++) {
+			final Shot shot = shots.get(i);
+			width = Math.max(width, Math.ceil(shot.getX() + shot.getMarkerRadius()));
+			height = Math.max(height, Math.ceil(shot.getY() + shot.getMarkerRadius()));
+		}
+
+		if (width == canvas.getWidth() && height == canvas.getHeight()) return false;
+
+		canvas.setWidth(width);
+		canvas.setHeight(height);
+		return true;
+	}
+}
@@ -33,6 +33,7 @@ import marytts.util.io.FileFilter;
 import com.shootoff.camera.Camera;
 import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CamerasSupervisor;
+import com.shootoff.camera.DetectionRateController;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.CameraConfigListener;
 import com.shootoff.gui.CanvasManager;
@@ -50,7 +51,6 @@ import com.shootoff.plugins.TimedHolsterDrill;
 import com.shootoff.plugins.TrainingProtocol;
 import com.shootoff.plugins.TrainingProtocolBase;
 import com.shootoff.targets.RectangleRegion;
-import com.shootoff.targets.TargetRegion;
 import com.shootoff.targets.io.TargetIO;
 
 import javafx.application.Platform;
@@ -66,6 +66,7 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
@@ -76,6 +77,7 @@ import javafx.scene.control.TabPane;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.ToggleGroup;
+import javafx.scene.control.Tooltip;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.Image;
@@ -177,11 +179,13 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 	        {
 	        	while (change.next()) {
 		        	for (ShotEntry unselected : change.getRemoved()) {
-		        		unselected.getShot().getMarker().setFill(unselected.getShot().getColor());
+		        		for (CanvasManager canvasManager : camerasSupervisor.getCanvasManagers())
+		        			canvasManager.setShotSelected(unselected.getShot(), false);
 		        	}
 		        	
 		        	for (ShotEntry selected : change.getAddedSubList()) {
-		        		selected.getShot().getMarker().setFill(TargetRegion.SELECTED_STROKE_COLOR);
+		        		for (CanvasManager canvasManager : camerasSupervisor.getCanvasManagers())
+		        			canvasManager.setShotSelected(selected.getShot(), true);
 		        	}
 	        	}
 	        }
@@ -260,10 +264,60 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 		cameraTab.setContent(new AnchorPane(cameraCanvasGroup));
 		
 		CanvasManager canvasManager = new CanvasManager(cameraCanvasGroup, config, camerasSupervisor, shotEntries);
-		camerasSupervisor.addCameraManager(webcam, canvasManager);
+		CameraManager cameraManager = camerasSupervisor.addCameraManager(webcam, canvasManager);
 		canvasManager.setContextMenu(createContextMenu());
 		
-		return cameraTabPane.getTabs().add(cameraTab);
+		// Cameras on tabs that are not showing can skip updating their preview
+		cameraTab.setOnSelectionChanged((event) -> cameraManager.setPreviewVisible(cameraTab.isSelected()));
+		cameraManager.setDetectionRateListener((state, cameraFPS, detectionFPS) ->
+				Platform.runLater(() -> showDetectionRate(cameraTab, state, cameraFPS, detectionFPS)));
+		
+		boolean added = cameraTabPane.getTabs().add(cameraTab);
+		cameraManager.setPreviewVisible(cameraTab.isSelected());
+		return added;
+	}
+	
+	/**
+	 * Flag a camera's tab when the camera cannot be detected fast enough instead
+	 * of interrupting the user with a dialog every time it happens.
+	 */
+	private void showDetectionRate(Tab cameraTab, DetectionRateController.State state, double cameraFPS,
+			double detectionFPS) {
+		String message;
+		boolean warning = false;
+
+		switch (state) {
+		case CAMERA_TOO_SLOW:
+			message = String.format("The camera is only delivering %.1f FPS, which is too low for reliable shot "
+					+ "detection. Some shots may be missed. You may be able to raise the FPS by closing other "
+					+ "applications.", cameraFPS);
+			warning = true;
+			break;
+
+		case OVER_BUDGET:
+			message = String.format("Shot detection cannot keep up with this camera within its CPU budget and is "
+					+ "running at %.1f of %.1f FPS. Some shots may be missed.", detectionFPS, cameraFPS);
+			warning = true;
+			break;
+
+		case THROTTLED:
+			message = String.format("Detecting %.1f of %.1f FPS to stay within the CPU budget.", detectionFPS,
+					cameraFPS);
+			break;
+
+		default:
+			message = String.format("Detecting every frame at %.1f FPS.", cameraFPS);
+		}
+
+		if (warning) {
+			Label warningLabel = new Label("!");
+			warningLabel.setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+			cameraTab.setGraphic(warningLabel);
+		} else {
+			cameraTab.setGraphic(null);
+		}
+
+		cameraTab.setTooltip(new Tooltip(message));
 	}
 	
 	private ContextMenu createContextMenu() {
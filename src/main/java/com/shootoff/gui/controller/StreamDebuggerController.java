@@ -22,6 +22,7 @@ import java.awt.image.BufferedImage;
 
 import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.LightingCondition;
+import com.shootoff.camera.ShotLatency;
 import com.shootoff.gui.DebuggerListener;
 
 import javafx.application.Platform;
@@ -29,6 +30,7 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.fxml.FXML;
+import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
 import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
@@ -38,6 +40,7 @@ public class StreamDebuggerController implements DebuggerListener {
 	@FXML private ImageView thresholdImageView;
 	@FXML private Slider centerBorderSlider;
 	@FXML private Slider minDimSlider;
+	@FXML private Label latencyLabel;
 
 	private String defaultWindowTitle = "";
 
@@ -76,10 +79,23 @@ public class StreamDebuggerController implements DebuggerListener {
 	}
 
 	@Override
-	public void updateFeedData(double fps, LightingCondition lightingCondition) {
+	public void updateFeedData(double fps, double detectionFPS, double previewFPS, long duplicateFrames,
+			LightingCondition lightingCondition) {
 		Platform.runLater(() -> {
-				streamDebuggerStage.setTitle(String.format(defaultWindowTitle + " %.2f FPS -- %s", 
-						fps, lightingCondition));
+				streamDebuggerStage.setTitle(String.format(defaultWindowTitle
+						+ " %.2f FPS (detecting %.1f, previewing %.1f), %d duplicate frames -- %s", 
+						fps, detectionFPS, previewFPS, duplicateFrames, lightingCondition));
 			});
 	}
+
+	@Override
+	public void updateLatencyData(ShotLatency shotLatency) {
+		StringBuilder latencies = new StringBuilder();
+		for (ShotLatency.Stage stage : ShotLatency.Stage.values()) {
+			if (latencies.length() > 0) latencies.append("\n");
+			latencies.append(shotLatency.describe(stage));
+		}
+
+		Platform.runLater(() -> latencyLabel.setText(latencies.toString()));
+	}
 }
@@ -0,0 +1,82 @@
+package com.shootoff;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.ShotCandidate;
+import com.shootoff.camera.VideoReplay;
+
+public class TestBatchReplay {
+	private VideoReplay.Result result;
+	private VideoReplay.Result emptyResult;
+
+	@Before
+	public void setUp() {
+		List<VideoReplay.ReplayedShot> shots = new ArrayList<VideoReplay.ReplayedShot>();
+		shots.add(new VideoReplay.ReplayedShot(12, 400, new ShotCandidate(320, 240, 150)));
+		shots.add(new VideoReplay.ReplayedShot(40, 1333, new ShotCandidate(100, 50, 200)));
+
+		result = new VideoReplay.Result(new File("session \"1\".mp4"), shots, 60,
+				TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(1));
+		emptyResult = new VideoReplay.Result(new File("empty.mp4"), new ArrayList<VideoReplay.ReplayedShot>(), 30,
+				TimeUnit.SECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(500));
+	}
+
+	@Test
+	public void testShotsCsv() throws IOException {
+		StringWriter writer = new StringWriter();
+		BatchReplay.writeShotsCsv(result, writer);
+
+		assertEquals("frame,timestamp_ms,x,y,strength\n" +
+				"12,400,320,240,150\n" +
+				"40,1333,100,50,200\n", writer.toString());
+	}
+
+	@Test
+	public void testShotsJson() throws IOException {
+		StringWriter writer = new StringWriter();
+		BatchReplay.writeShotsJson(result, writer);
+
+		assertEquals("{\"video\": \"session \\\"1\\\".mp4\", \"frames\": 60, \"elapsed_ms\": 2000, " +
+				"\"detection_ms\": 1000, \"fps\": 30.00, \"shots\": [\n" +
+				"  {\"frame\": 12, \"timestamp_ms\": 400, \"x\": 320, \"y\": 240, \"strength\": 150},\n" +
+				"  {\"frame\": 40, \"timestamp_ms\": 1333, \"x\": 100, \"y\": 50, \"strength\": 200}\n" +
+				"]}\n", writer.toString());
+
+		writer = new StringWriter();
+		BatchReplay.writeShotsJson(emptyResult, writer);
+		assertTrue(writer.toString().endsWith("\"shots\": []}\n"));
+	}
+
+	@Test
+	public void testSummaryCsv() throws IOException {
+		StringWriter writer = new StringWriter();
+		BatchReplay.writeSummaryCsv(Arrays.asList(result, emptyResult), TimeUnit.SECONDS.toNanos(3), writer);
+
+		assertEquals("video,frames,shots,elapsed_ms,detection_ms,fps\n" +
+				"\"session \"\"1\"\".mp4\",60,2,2000,1000,30.00\n" +
+				"\"empty.mp4\",30,0,1000,500,30.00\n" +
+				"total,90,2,3000,1500,30.00\n", writer.toString());
+	}
+
+	@Test
+	public void testSummaryJson() throws IOException {
+		StringWriter writer = new StringWriter();
+		BatchReplay.writeSummaryJson(Arrays.asList(result, emptyResult), TimeUnit.SECONDS.toNanos(3), 2, writer);
+
+		String summary = writer.toString();
+		assertTrue(summary.startsWith("{\"videos\": [\n  {\"video\": \"session \\\"1\\\".mp4\", \"frames\": 60"));
+		assertTrue(summary.endsWith("\"total\": {\"videos\": 2, \"frames\": 90, \"shots\": 2, \"elapsed_ms\": 3000, " +
+				"\"threads\": 2, \"fps\": 30.00}}\n"));
+	}
+}
@@ -0,0 +1,155 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAverageFrameComponents {
+	private BufferedImage frame;
+
+	@Before
+	public void setUp() throws IOException {
+		BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/shotsearcher/no_interference_one_shot.png"));
+		frame = new BufferedImage(CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT,
+				BufferedImage.TYPE_3BYTE_BGR);
+		frame.createGraphics().drawImage(image, 0, 0, CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT, null);
+	}
+
+	@Test
+	public void testMatchesPerPixelAverages() {
+		long totalLum = 0;
+		long totalRed = 0;
+
+		for (int x = 0; x < frame.getWidth(); x++) {
+			for (int y = 0; y < frame.getHeight(); y++) {
+				Color c = new Color(frame.getRGB(x, y));
+				totalLum += (c.getRed() * 3 + c.getBlue() + c.getGreen() * 4) >> 3;
+				totalRed += c.getRed();
+			}
+		}
+
+		float totalPixels = (float)(frame.getWidth() * frame.getHeight());
+
+		AverageFrameComponents averages = new AverageFrameComponents();
+		averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), new BrightnessPixelTransformer());
+
+		assertEquals((float)totalLum / totalPixels, averages.getAverageLum(), 0.0001f);
+		assertEquals((float)totalRed / totalPixels, averages.getAverageRed(), 0.0001f);
+	}
+
+	@Test
+	public void testScanlineFilterMatchesColorFilter() {
+		PixelTransformer colorTransformer = new BrightnessPixelTransformer();
+		PixelTransformer scanlineTransformer = new BrightnessPixelTransformer();
+		AverageFrameComponents averages = new AverageFrameComponents();
+
+		for (int i = 0; i < CameraManager.INIT_FRAME_COUNT; i++) {
+			for (int x = 0; x < frame.getWidth(); x++) {
+				for (int y = 0; y < frame.getHeight(); y++) {
+					colorTransformer.updateFilter(x, y, new Color(frame.getRGB(x, y)));
+				}
+			}
+
+			averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), scanlineTransformer);
+		}
+
+		BufferedImage colorFiltered = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+		BufferedImage scanlineFiltered = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+		colorFiltered.createGraphics().drawImage(frame, 0, 0, null);
+		scanlineFiltered.createGraphics().drawImage(frame, 0, 0, null);
+
+		for (int x = 0; x < frame.getWidth(); x++) {
+			for (int y = 0; y < frame.getHeight(); y++) {
+				colorTransformer.applyFilter(colorFiltered, x, y, LightingCondition.BRIGHT);
+				scanlineTransformer.applyFilter(scanlineFiltered, x, y, LightingCondition.BRIGHT);
+				assertEquals(colorFiltered.getRGB(x, y), scanlineFiltered.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testLargeFrames() {
+		BufferedImage largeFrame = new BufferedImage(1280, 720, BufferedImage.TYPE_3BYTE_BGR);
+		largeFrame.createGraphics().drawImage(frame, 0, 0, 1280, 720, null);
+
+		PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
+		AverageFrameComponents averages = new AverageFrameComponents();
+
+		averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+		averages.update(largeFrame, 0, 0, largeFrame.getWidth(), largeFrame.getHeight(), pixelTransformer);
+
+		long totalRed = 0;
+		for (int x = 0; x < largeFrame.getWidth(); x++) {
+			for (int y = 0; y < largeFrame.getHeight(); y++) {
+				totalRed += new Color(largeFrame.getRGB(x, y)).getRed();
+			}
+		}
+
+		assertEquals((double)totalRed / (1280 * 720), averages.getAverageRed(), 0.001);
+
+		pixelTransformer.applyFilter(largeFrame, 1279, 719, averages.getLightingCondition());
+	}
+
+	@Test
+	public void testUpdateDoesNotAllocate() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		AverageFrameComponents averages = new AverageFrameComponents();
+		PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
+
+		// The first update sizes the pixel buffer
+		averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+
+		final int frames = 20;
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < frames; i++) {
+			averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+		}
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		// Reading the counter may allocate a little, a Color per pixel would
+		// be several megabytes per frame
+		assertTrue(String.format("Allocated %d bytes over %d frames", allocated, frames),
+				allocated / frames < 256);
+	}
+
+	@Test
+	public void testLargerFrameSizesFilterOnce() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		BufferedImage largeFrame = new BufferedImage(1280, 720, BufferedImage.TYPE_3BYTE_BGR);
+		largeFrame.createGraphics().drawImage(frame, 0, 0, 1280, 720, null);
+
+		AverageFrameComponents averages = new AverageFrameComponents();
+		PixelTransformer pixelTransformer = new BrightnessPixelTransformer();
+		averages.update(frame, 0, 0, frame.getWidth(), frame.getHeight(), pixelTransformer);
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		averages.update(largeFrame, 0, 0, largeFrame.getWidth(), largeFrame.getHeight(), pixelTransformer);
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		// The pixel buffer and the two moving averages, each an int per pixel.
+		// Growing the averages a row at a time would copy them hundreds of times.
+		final long frameBytes = 1280 * 720 * 4;
+		assertTrue(String.format("Allocated %d bytes", allocated), allocated < 4 * frameBytes);
+	}
+}
@@ -0,0 +1,59 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBackgroundModel {
+	private static final int WIDTH = 16;
+	private static final int HEIGHT = 8;
+
+	private int bruteForceMax(List<int[]> frames, int historySize, int index) {
+		int max = 0;
+
+		// Frames from before the first frame count as black
+		for (int i = Math.max(0, frames.size() - historySize); i < frames.size(); i++) {
+			max = BackgroundModel.maxRGB(max, frames.get(i)[index]);
+		}
+
+		return max;
+	}
+
+	private void checkHistorySize(int historySize) {
+		Random rand = new Random(historySize);
+		BackgroundModel model = new BackgroundModel(WIDTH, HEIGHT, historySize);
+		List<int[]> frames = new ArrayList<int[]>();
+
+		for (int f = 0; f < historySize * 4 + 3; f++) {
+			for (int i = 0; i < WIDTH * HEIGHT; i++) {
+				assertEquals(String.format("History %d, frame %d, pixel %d", historySize, f, i),
+						bruteForceMax(frames, historySize, i), model.getMax(i));
+			}
+
+			assertEquals(frames.size() >= historySize, model.isReady());
+
+			int[] frame = new int[WIDTH * HEIGHT];
+			for (int i = 0; i < frame.length; i++) frame[i] = rand.nextInt(0x1000000);
+
+			model.update(frame, WIDTH, HEIGHT, WIDTH);
+			frames.add(frame);
+		}
+	}
+
+	@Test
+	public void testMatchesBruteForceMax() {
+		for (int historySize : new int[] { 1, 2, 5, 7 }) {
+			checkHistorySize(historySize);
+		}
+	}
+
+	@Test
+	public void testMaxIsPerChannel() {
+		assertEquals(0xFFFFFF, BackgroundModel.maxRGB(0xFF00FF, 0x00FF00));
+		assertEquals(0x805060, BackgroundModel.maxRGB(0x804060, 0x105020));
+	}
+}
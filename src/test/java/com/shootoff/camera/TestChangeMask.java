@@ -0,0 +1,69 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestChangeMask {
+	@Test
+	public void testMark() {
+		ChangeMask mask = new ChangeMask(100, 50);
+
+		assertTrue(mask.isEmpty());
+
+		mask.mark(17, 20);
+		assertTrue(mask.isChanged(16, 16));
+		assertTrue(mask.isChanged(31, 31));
+		assertFalse(mask.isChanged(15, 16));
+		assertFalse(mask.isChanged(32, 16));
+		assertEquals(1, mask.getChangedTileCount());
+
+		// The last tiles are cut off by the frame edge
+		mask.mark(99, 49);
+		assertEquals(2, mask.getChangedTileCount());
+
+		mask.clear();
+		assertTrue(mask.isEmpty());
+	}
+
+	@Test
+	public void testNextTileX() {
+		assertEquals(16, ChangeMask.nextTileX(0));
+		assertEquals(16, ChangeMask.nextTileX(15));
+		assertEquals(32, ChangeMask.nextTileX(16));
+	}
+
+	@Test
+	public void testRowSpans() {
+		ChangeMask mask = new ChangeMask(100, 50);
+		mask.mark(20, 20);
+		mask.mark(40, 20);
+		mask.mark(99, 20);
+
+		int[][] spans = mask.rowSpans(0);
+		assertEquals(50, spans.length);
+		assertArrayEquals(new int[0], spans[15]);
+		assertArrayEquals(new int[] { 16, 48, 96, 100 }, spans[16]);
+		assertArrayEquals(new int[] { 16, 48, 96, 100 }, spans[31]);
+		assertArrayEquals(new int[0], spans[32]);
+
+		// Margins grow the tiles in every direction and merge them when they meet
+		spans = mask.rowSpans(10);
+		assertArrayEquals(new int[0], spans[5]);
+		assertArrayEquals(new int[] { 6, 58, 86, 100 }, spans[6]);
+		assertArrayEquals(new int[] { 6, 58, 86, 100 }, spans[41]);
+		assertArrayEquals(new int[0], spans[42]);
+		assertArrayEquals(new int[] { 0, 100 }, mask.rowSpans(40)[20]);
+	}
+
+	@Test
+	public void testIntersect() {
+		int[][] a = { { 0, 10, 20, 30 }, { 5, 15 }, {} };
+		int[][] b = { { 5, 25 }, { 15, 20 }, { 0, 10 } };
+
+		int[][] spans = ChangeMask.intersect(a, b);
+		assertArrayEquals(new int[] { 5, 10, 20, 25 }, spans[0]);
+		assertArrayEquals(new int[0], spans[1]);
+		assertArrayEquals(new int[0], spans[2]);
+	}
+}
@@ -0,0 +1,28 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class TestDeduplicationProcessor {
+	@Test
+	public void testDuplicateShots() {
+		DeduplicationProcessor deduplicationProcessor = new DeduplicationProcessor();
+
+		assertTrue(deduplicationProcessor.processShot(new Shot(Color.RED, 100, 100, 0, 2)));
+		assertFalse(deduplicationProcessor.processShot(new Shot(Color.RED, 110, 105, 100, 2)));
+		// Different color
+		assertTrue(deduplicationProcessor.processShot(new Shot(Color.GREEN, 110, 105, 150, 2)));
+		// Too long after the last shot
+		assertTrue(deduplicationProcessor.processShot(new Shot(Color.GREEN, 110, 105, 150 +
+				DeduplicationProcessor.TIME_THRESHOLD + 1, 2)));
+	}
+
+	@Test
+	public void testThresholdsAreInFeedCoordinates() {
+		assertTrue(DeduplicationProcessor.isDuplicate(100, 100, 0, 160, 140, 100));
+		assertFalse(DeduplicationProcessor.isDuplicate(100, 100, 0, 180, 140, 100));
+		assertFalse(DeduplicationProcessor.isDuplicate(100, 100, 0, 160, 150, 100));
+	}
+}
@@ -0,0 +1,81 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class TestDetectionArea {
+	private boolean[][] sectors(boolean... statuses) {
+		boolean[][] sectorStatuses = new boolean[3][3];
+
+		for (int i = 0; i < statuses.length; i++) sectorStatuses[i / 3][i % 3] = statuses[i];
+
+		return sectorStatuses;
+	}
+
+	@Test
+	public void testAllSectorsCoverFrame() {
+		DetectionArea area = new DetectionArea(640, 480,
+				sectors(true, true, true, true, true, true, true, true, true), Optional.empty());
+
+		assertEquals(640 * 480, area.getPixelCount());
+		assertTrue(area.contains(639, 479));
+
+		int[][] columns = area.columnSpans(0);
+		assertEquals(640, columns.length);
+		assertArrayEquals(new int[] { 0, 480 }, columns[639]);
+	}
+
+	@Test
+	public void testDisabledSectors() {
+		// Only the middle column and the center row
+		DetectionArea area = new DetectionArea(600, 300,
+				sectors(false, true, false, true, true, true, false, true, false), Optional.empty());
+
+		assertFalse(area.contains(0, 0));
+		assertTrue(area.contains(0, 100));
+		assertTrue(area.contains(200, 0));
+		assertEquals(600 * 100 + 200 * 200, area.getPixelCount());
+
+		assertArrayEquals(new int[] { 200, 400 }, area.rowSpans(0)[0]);
+		assertArrayEquals(new int[] { 0, 600 }, area.rowSpans(0)[150]);
+		assertArrayEquals(new int[] { 100, 200 }, area.columnSpans(0)[0]);
+	}
+
+	@Test
+	public void testMargin() {
+		DetectionArea area = new DetectionArea(600, 300,
+				sectors(true, false, true, false, false, false, false, false, false), Optional.empty());
+
+		// Spans are clipped to the frame and merge when their margins overlap
+		assertArrayEquals(new int[] { 0, 210, 390, 600 }, area.rowSpans(10)[105]);
+		assertArrayEquals(new int[] { 0, 600 }, area.rowSpans(100)[0]);
+		assertArrayEquals(new int[0], area.rowSpans(10)[110]);
+		assertArrayEquals(new int[] { 0, 110 }, area.columnSpans(10)[205]);
+		assertArrayEquals(new int[0], area.columnSpans(10)[300]);
+	}
+
+	@Test
+	public void testBounds() {
+		DetectionArea area = new DetectionArea(600, 300,
+				sectors(true, true, true, true, true, true, true, true, false),
+				Optional.of(new Rectangle(300, 150, 400, 400)));
+
+		assertEquals(300 * 150 - 200 * 100, area.getPixelCount());
+		assertFalse(area.contains(299, 200));
+		assertTrue(area.contains(300, 199));
+		assertFalse(area.contains(450, 250));
+	}
+
+	@Test
+	public void testNoSectors() {
+		DetectionArea area = new DetectionArea(640, 480, new boolean[3][3], Optional.empty());
+
+		assertTrue(area.isEmpty());
+		assertEquals(0, area.getPixelCount());
+		assertArrayEquals(new int[0], area.columnSpans(20)[320]);
+	}
+}
@@ -0,0 +1,97 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.shootoff.camera.DetectionRateController.State;
+
+public class TestDetectionRateController {
+	private int countDetected(DetectionRateController controller, int frames) {
+		int detected = 0;
+		for (int i = 0; i < frames; i++) {
+			if (controller.shouldDetect()) detected++;
+		}
+		return detected;
+	}
+
+	@Test
+	public void testWithinBudgetDetectsEveryFrame() {
+		DetectionRateController controller = new DetectionRateController();
+		assertEquals(60, countDetected(controller, 60));
+
+		// 3 ms per frame at 60 FPS is 18% of a core
+		controller.recordCost(3, TimeUnit.MILLISECONDS);
+		assertEquals(State.FULL_RATE, controller.adjust(60, 0.5, 14));
+		assertEquals(1, controller.getStride());
+		assertEquals(60, countDetected(controller, 60));
+		assertEquals(60, controller.getDetectionFPS(), 0);
+	}
+
+	@Test
+	public void testThrottlesToBudget() {
+		DetectionRateController controller = new DetectionRateController();
+
+		// 10 ms per frame at 120 FPS would take more than a core, half a core
+		// allows 50 FPS
+		controller.recordCost(10, TimeUnit.MILLISECONDS);
+		assertEquals(State.THROTTLED, controller.adjust(120, 0.5, 14));
+		assertEquals(2, controller.getStride());
+		assertEquals(60, countDetected(controller, 120));
+
+		// Cheaper frames let the rate back up
+		for (int i = 0; i < 100; i++) controller.recordCost(2, TimeUnit.MILLISECONDS);
+		assertEquals(State.FULL_RATE, controller.adjust(120, 0.5, 14));
+		assertEquals(120, countDetected(controller, 120));
+	}
+
+	@Test
+	public void testNeverBelowMinimumRate() {
+		DetectionRateController controller = new DetectionRateController();
+
+		// The budget only allows 5 FPS but at least 14 are needed
+		controller.recordCost(100, TimeUnit.MILLISECONDS);
+		assertEquals(State.OVER_BUDGET, controller.adjust(60, 0.5, 14));
+		assertEquals(4, controller.getStride());
+		assertTrue(controller.getDetectionFPS() >= 14);
+	}
+
+	@Test
+	public void testSlowCamera() {
+		DetectionRateController controller = new DetectionRateController();
+
+		controller.recordCost(100, TimeUnit.MILLISECONDS);
+		assertEquals(State.CAMERA_TOO_SLOW, controller.adjust(4, 0.5, 14));
+		assertEquals(1, controller.getStride());
+		assertEquals(10, countDetected(controller, 10));
+	}
+
+	@Test
+	public void testMinimumAboveCameraRate() {
+		DetectionRateController controller = new DetectionRateController();
+
+		// A 10 ms detection rate asks for 100 FPS, a 30 FPS camera meets it by
+		// detecting every frame
+		controller.recordCost(3, TimeUnit.MILLISECONDS);
+		assertEquals(State.FULL_RATE, controller.adjust(30, 0.5, 100));
+		assertEquals(1, controller.getStride());
+
+		// Even when the budget falls short the camera is not too slow
+		for (int i = 0; i < 100; i++) controller.recordCost(40, TimeUnit.MILLISECONDS);
+		assertEquals(State.OVER_BUDGET, controller.adjust(30, 0.5, 100));
+		assertEquals(1, controller.getStride());
+		assertEquals(30, controller.getDetectionFPS(), 0);
+	}
+
+	@Test
+	public void testNoMeasurementsKeepsState() {
+		DetectionRateController controller = new DetectionRateController();
+
+		assertEquals(State.FULL_RATE, controller.adjust(60, 0.5, 14));
+		controller.recordCost(3, TimeUnit.MILLISECONDS);
+		assertEquals(State.FULL_RATE, controller.adjust(0, 0.5, 14));
+		assertEquals(1, controller.getStride());
+	}
+}
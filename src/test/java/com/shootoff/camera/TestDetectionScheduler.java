@@ -0,0 +1,227 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestDetectionScheduler {
+	private static final int FRAME_COUNT = 40;
+
+	private final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testCamerasTakeTurns() throws InterruptedException {
+		DetectionScheduler scheduler = new DetectionScheduler(1);
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		FramePipeline first = new FramePipeline("First");
+		first.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4, (frame) -> {
+			order.add("First");
+			if (frame.getSequence() == 0) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, scheduler);
+		FramePipeline second = new FramePipeline("Second");
+		second.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4, (frame) -> order.add("Second"), scheduler);
+		first.start();
+		second.start();
+
+		// Hold the only worker while both cameras fill their queues
+		first.publish(image);
+		blocked.await();
+		for (int i = 0; i < 3; i++) {
+			first.publish(image);
+			second.publish(image);
+		}
+		release.countDown();
+
+		first.drain();
+		second.drain();
+		first.stop();
+		second.stop();
+		scheduler.shutdown();
+
+		assertEquals(7, order.size());
+		assertEquals("First", order.get(0));
+		for (int i = 1; i < order.size(); i++) {
+			assertNotEquals("A camera was processed twice in a row while the other was waiting",
+					order.get(i - 1), order.get(i));
+		}
+	}
+
+	@Test
+	public void testCameraFramesAreProcessedInOrderOneAtATime() throws InterruptedException {
+		DetectionScheduler scheduler = new DetectionScheduler(4);
+		List<FramePipeline> pipelines = new ArrayList<FramePipeline>();
+		List<List<Long>> seen = new ArrayList<List<Long>>();
+		AtomicInteger overlaps = new AtomicInteger(0);
+
+		for (int p = 0; p < 3; p++) {
+			List<Long> cameraSeen = Collections.synchronizedList(new ArrayList<Long>());
+			AtomicInteger active = new AtomicInteger(0);
+			FramePipeline pipeline = new FramePipeline("Camera " + p);
+			pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 2, (frame) -> {
+				if (active.incrementAndGet() > 1) overlaps.incrementAndGet();
+				cameraSeen.add(frame.getSequence());
+				sleep(1);
+				active.decrementAndGet();
+			}, scheduler);
+			pipeline.start();
+
+			pipelines.add(pipeline);
+			seen.add(cameraSeen);
+		}
+
+		for (int i = 0; i < FRAME_COUNT; i++) {
+			for (FramePipeline pipeline : pipelines) pipeline.publish(image);
+		}
+
+		for (FramePipeline pipeline : pipelines) {
+			pipeline.drain();
+			pipeline.stop();
+		}
+
+		scheduler.shutdown();
+
+		assertEquals(0, overlaps.get());
+		for (List<Long> cameraSeen : seen) {
+			assertEquals(FRAME_COUNT, cameraSeen.size());
+			for (int i = 0; i < FRAME_COUNT; i++) assertEquals(Long.valueOf(i), cameraSeen.get(i));
+		}
+	}
+
+	@Test
+	public void testStaleFramesAreRejected() throws InterruptedException {
+		DetectionScheduler scheduler = new DetectionScheduler(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		FramePipeline pipeline = new FramePipeline("Camera");
+		FrameStage stage = pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4, (frame) -> {
+			if (frame.getSequence() == 0) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, scheduler);
+		stage.setMaxFrameAge(20);
+		pipeline.start();
+
+		pipeline.publish(image);
+		blocked.await();
+		for (int i = 0; i < 3; i++) pipeline.publish(image);
+		sleep(50);
+		release.countDown();
+
+		pipeline.drain();
+		pipeline.publish(image);
+		pipeline.drain();
+		pipeline.stop();
+		scheduler.shutdown();
+
+		assertEquals(3, stage.getStaleFrames());
+		assertEquals(2, stage.getProcessedFrames());
+		assertEquals(0, stage.getDroppedFrames());
+	}
+
+	@Test
+	public void testShutdownStopsWorkers() throws InterruptedException {
+		DetectionScheduler scheduler = new DetectionScheduler(2);
+		List<Thread> workers = Collections.synchronizedList(new ArrayList<Thread>());
+
+		FramePipeline pipeline = new FramePipeline("Camera");
+		pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4,
+				(frame) -> workers.add(Thread.currentThread()), scheduler);
+		pipeline.start();
+
+		pipeline.publish(image);
+		pipeline.drain();
+		pipeline.stop();
+		scheduler.shutdown();
+
+		assertEquals(1, workers.size());
+		workers.get(0).join(1000);
+		assertFalse(workers.get(0).isAlive());
+	}
+
+	@Test
+	public void testShutdownReleasesBlockedProducer() throws InterruptedException {
+		DetectionScheduler scheduler = new DetectionScheduler(1);
+		FramePool framePool = new FramePool();
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		FramePipeline pipeline = new FramePipeline("Camera", framePool);
+		pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 1, (frame) -> {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, scheduler);
+		pipeline.start();
+
+		// The first frame holds the worker, the second fills the queue and the
+		// third leaves the producer waiting for room
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < 3; i++) {
+					pipeline.publish(framePool.acquire(4, 4, BufferedImage.TYPE_INT_RGB));
+					if (i == 0) blocked.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+
+		while (producer.getState() != Thread.State.TIMED_WAITING) sleep(1);
+
+		Thread shutdown = new Thread(scheduler::shutdown);
+		shutdown.start();
+		sleep(20);
+		release.countDown();
+
+		shutdown.join(1000);
+		producer.join(1000);
+		assertFalse(shutdown.isAlive());
+		assertFalse(producer.isAlive());
+		assertEquals(0, framePool.getAcquiredFrames());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoStagesAfterShutdown() {
+		DetectionScheduler scheduler = new DetectionScheduler(1);
+		scheduler.shutdown();
+
+		FramePipeline pipeline = new FramePipeline("Camera");
+		pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4, (frame) -> {}, scheduler);
+		pipeline.start();
+	}
+}
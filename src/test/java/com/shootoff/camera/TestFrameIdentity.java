@@ -0,0 +1,79 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFrameIdentity {
+	private BufferedImage testFrame;
+
+	@Before
+	public void setUp() throws IOException {
+		testFrame = ImageIO.read(getClass().getResourceAsStream("/shotsearcher/no_interference_one_shot.png"));
+	}
+
+	private BufferedImage convert(BufferedImage source, int type) {
+		BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), type);
+		converted.createGraphics().drawImage(source, 0, 0, null);
+		return converted;
+	}
+
+	private void assertDetectsDuplicates(int type) {
+		FrameIdentity identity = new FrameIdentity();
+		BufferedImage frame = convert(testFrame, type);
+
+		assertFalse(identity.isDuplicate(frame));
+		// A copy with the same pixels is a duplicate too
+		assertTrue(identity.isDuplicate(convert(testFrame, type)));
+		assertTrue(identity.isDuplicate(frame));
+
+		// A single pixel that changed a little is enough to make a frame new
+		BufferedImage changed = convert(testFrame, type);
+		changed.setRGB(100, 100, changed.getRGB(100, 100) ^ 0x000001);
+		assertFalse(identity.isDuplicate(changed));
+		assertFalse(identity.isDuplicate(frame));
+
+		assertEquals(2, identity.getDuplicateFrames());
+	}
+
+	@Test
+	public void testIntRGB() {
+		assertDetectsDuplicates(BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Test
+	public void test3ByteBGR() {
+		assertDetectsDuplicates(BufferedImage.TYPE_3BYTE_BGR);
+	}
+
+	@Test
+	public void testOtherTypes() {
+		assertDetectsDuplicates(BufferedImage.TYPE_INT_ARGB);
+	}
+
+	@Test
+	public void testSubimages() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage copy = convert(testFrame, BufferedImage.TYPE_3BYTE_BGR);
+
+		assertEquals(FrameIdentity.checksum(frame.getSubimage(10, 20, 100, 50)),
+				FrameIdentity.checksum(copy.getSubimage(10, 20, 100, 50)));
+		assertNotEquals(FrameIdentity.checksum(frame.getSubimage(10, 20, 100, 50)),
+				FrameIdentity.checksum(frame.getSubimage(11, 20, 100, 50)));
+	}
+
+	@Test
+	public void testSizeChange() {
+		FrameIdentity identity = new FrameIdentity();
+
+		assertFalse(identity.isDuplicate(new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR)));
+		assertFalse(identity.isDuplicate(new BufferedImage(48, 64, BufferedImage.TYPE_3BYTE_BGR)));
+		assertTrue(identity.isDuplicate(new BufferedImage(48, 64, BufferedImage.TYPE_3BYTE_BGR)));
+	}
+}
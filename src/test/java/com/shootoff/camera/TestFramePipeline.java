@@ -0,0 +1,121 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestFramePipeline {
+	private static final int FRAME_COUNT = 50;
+
+	private final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+	@Test
+	public void testNeverDropDeliversEveryFrameInOrder() throws InterruptedException {
+		List<Long> seen = Collections.synchronizedList(new ArrayList<Long>());
+
+		FramePipeline pipeline = new FramePipeline("Test");
+		FrameStage stage = pipeline.addStage("Slow", FrameStage.DropPolicy.NEVER_DROP, 2, (frame) -> {
+			assertSame(image, frame.getImage());
+			seen.add(frame.getSequence());
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		pipeline.start();
+
+		for (int i = 0; i < FRAME_COUNT; i++) pipeline.publish(image);
+		pipeline.drain();
+		pipeline.stop();
+
+		assertEquals(FRAME_COUNT, seen.size());
+		for (int i = 0; i < FRAME_COUNT; i++) assertEquals(Long.valueOf(i), seen.get(i));
+
+		assertEquals(FRAME_COUNT, stage.getProcessedFrames());
+		assertEquals(0, stage.getDroppedFrames());
+		assertEquals(0, stage.getQueueDepth());
+		assertEquals(FRAME_COUNT, pipeline.getCapturedFrames());
+	}
+
+	@Test
+	public void testDropOldestDoesNotBlockOtherStages() throws InterruptedException {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Long> previewed = Collections.synchronizedList(new ArrayList<Long>());
+
+		FramePipeline pipeline = new FramePipeline("Test");
+		FrameStage detection = pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 4, (frame) -> {});
+		FrameStage preview = pipeline.addStage("Preview", FrameStage.DropPolicy.DROP_OLDEST, 1, (frame) -> {
+			previewed.add(frame.getSequence());
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		pipeline.start();
+
+		pipeline.publish(image);
+		blocked.await();
+
+		// The preview is stuck on the first frame, so it can only hold the newest one
+		for (int i = 1; i < FRAME_COUNT; i++) pipeline.publish(image);
+		assertEquals(1, preview.getQueueDepth());
+		assertEquals(FRAME_COUNT - 2, preview.getDroppedFrames());
+
+		release.countDown();
+		pipeline.drain();
+		pipeline.stop();
+
+		assertEquals(FRAME_COUNT, detection.getProcessedFrames());
+		assertEquals(0, detection.getDroppedFrames());
+		assertEquals(2, preview.getProcessedFrames());
+		assertEquals(Long.valueOf(0), previewed.get(0));
+		assertEquals(Long.valueOf(FRAME_COUNT - 1), previewed.get(1));
+	}
+
+	@Test
+	public void testFramesReturnToPool() throws InterruptedException {
+		FramePool pool = new FramePool();
+		FramePipeline pipeline = new FramePipeline("Test", pool);
+		pipeline.addStage("Detection", FrameStage.DropPolicy.NEVER_DROP, 2, (frame) -> {
+			assertEquals(1, frame.getImage().getRGB(0, 0) & 0x00FFFFFF);
+		});
+		pipeline.addStage("Preview", FrameStage.DropPolicy.DROP_OLDEST, 1, (frame) -> {});
+		pipeline.start();
+
+		for (int i = 0; i < FRAME_COUNT; i++) {
+			BufferedImage frame = pool.acquire(4, 4, BufferedImage.TYPE_INT_RGB);
+			frame.setRGB(0, 0, 1);
+			pipeline.publish(frame);
+		}
+		// Frames from elsewhere pass through without touching the pool
+		image.setRGB(0, 0, 1);
+		pipeline.publish(image);
+
+		pipeline.drain();
+		pipeline.stop();
+
+		assertEquals(0, pool.getAcquiredFrames());
+		// No more frames were allocated than fit in the pipeline's ring plus the
+		// one waiting for a slot
+		int capacity = 2;
+		for (FrameStage stage : pipeline.getStages()) capacity += stage.getCapacity() + 1;
+		assertTrue(pool.getAllocatedFrames() <= capacity);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStagesCannotBeAddedAfterStart() {
+		FramePipeline pipeline = new FramePipeline("Test");
+		pipeline.start();
+		pipeline.addStage("Late", FrameStage.DropPolicy.DROP_NEWEST, 1, (frame) -> {});
+	}
+}
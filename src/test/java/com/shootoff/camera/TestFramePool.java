@@ -0,0 +1,69 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class TestFramePool {
+	@Test
+	public void testReleasedFramesAreReused() {
+		FramePool pool = new FramePool();
+
+		BufferedImage first = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		assertEquals(64, first.getWidth());
+		assertEquals(48, first.getHeight());
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, first.getType());
+
+		BufferedImage second = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		assertNotSame(first, second);
+		assertEquals(2, pool.getAllocatedFrames());
+		assertEquals(2, pool.getAcquiredFrames());
+
+		assertTrue(pool.release(first));
+		assertSame(first, pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR));
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(pool.release(second));
+			second = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		}
+
+		assertEquals(2, pool.getAllocatedFrames());
+	}
+
+	@Test
+	public void testFramesAreKeyedBySizeAndType() {
+		FramePool pool = new FramePool();
+
+		BufferedImage frame = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		pool.release(frame);
+
+		BufferedImage otherType = pool.acquire(64, 48, BufferedImage.TYPE_INT_RGB);
+		BufferedImage otherSize = pool.acquire(48, 64, BufferedImage.TYPE_3BYTE_BGR);
+		assertNotSame(frame, otherType);
+		assertNotSame(frame, otherSize);
+		assertEquals(BufferedImage.TYPE_INT_RGB, otherType.getType());
+		assertEquals(48, otherSize.getWidth());
+		assertEquals(3, pool.getAllocatedFrames());
+
+		assertSame(frame, pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR));
+	}
+
+	@Test
+	public void testForeignAndRepeatedReleasesAreIgnored() {
+		FramePool pool = new FramePool();
+
+		assertFalse(pool.release(null));
+		assertFalse(pool.release(new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR)));
+
+		BufferedImage frame = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		assertTrue(pool.release(frame));
+		// Releasing twice must not let two callers acquire the same frame
+		assertFalse(pool.release(frame));
+
+		assertSame(frame, pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR));
+		assertNotSame(frame, pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR));
+		assertEquals(2, pool.getAcquiredFrames());
+	}
+}
@@ -0,0 +1,59 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestFrameThrottle {
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	// Count the frames let through out of ten seconds of a camera running at
+	// cameraFPS, with every third frame arriving jitter ns early and every third
+	// one late
+	private int countAccepted(FrameThrottle throttle, int cameraFPS, long start, long jitter) {
+		final long frameInterval = TimeUnit.SECONDS.toNanos(1) / cameraFPS;
+		int accepted = 0;
+
+		for (int i = 0; i < cameraFPS * 10; i++) {
+			if (throttle.accept(start + i * frameInterval + (i % 3 - 1) * jitter)) accepted++;
+		}
+
+		return accepted;
+	}
+
+	@Test
+	public void testThrottlesFasterCamera() {
+		assertEquals(150, countAccepted(new FrameThrottle(15), 60, 0, 0), 1);
+		assertEquals(300, countAccepted(new FrameThrottle(30), 60, 0, 0), 1);
+		assertEquals(300, countAccepted(new FrameThrottle(30), 120, 0, 0), 1);
+		// A throttle faster than the camera lets every frame through
+		assertEquals(300, countAccepted(new FrameThrottle(60), 30, 0, 0));
+	}
+
+	@Test
+	public void testJitterKeepsRate() {
+		// 60 FPS frames that arrive up to 2 ms early or late still give 30 FPS
+		assertEquals(300, countAccepted(new FrameThrottle(30), 60, 0, 2 * MS), 1);
+		assertEquals(300, countAccepted(new FrameThrottle(60), 30, 0, 2 * MS));
+	}
+
+	@Test
+	public void testNoBurstAfterGap() {
+		FrameThrottle throttle = new FrameThrottle(15);
+
+		assertTrue(throttle.accept(0));
+		// A long pause, e.g. while the preview was hidden, is not made up for
+		assertEquals(150, countAccepted(throttle, 60, 5000 * MS, 0), 1);
+	}
+
+	@Test
+	public void testRateChange() {
+		FrameThrottle throttle = new FrameThrottle(30);
+		assertEquals(300, countAccepted(throttle, 60, 0, 0), 1);
+
+		throttle.setFPS(10);
+		assertEquals(100, countAccepted(throttle, 60, 10000 * MS, 0), 1);
+	}
+}
@@ -0,0 +1,122 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.shootoff.camera.LaserShotGenerator.GeneratedShot;
+import com.shootoff.camera.LaserShotGenerator.LaserColor;
+
+public class TestLaserShotGenerator {
+	private DetectionScore detect(LaserShotGenerator generator, int frameCount, int tolerance) {
+		ShotDetectionKernel detectionKernel = new ShotDetectionKernel();
+		DetectionScore score = new DetectionScore(generator.getShots(), tolerance, 2);
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		for (long frame = 0; frame < frameCount; frame++) {
+			shots.clear();
+			detectionKernel.detectShots(generator.generate(frame), shots);
+			for (ShotCandidate shot : shots) score.addDetection(frame, shot.getX(), shot.getY());
+		}
+
+		return score;
+	}
+
+	@Test
+	public void testDeterministic() {
+		LaserShotGenerator a = new LaserShotGenerator(160, 120, 7);
+		LaserShotGenerator b = new LaserShotGenerator(160, 120, 7);
+		a.addRandomShots(5, 0, 4, 10, LaserColor.RED, 2, 1);
+		b.addRandomShots(5, 0, 4, 10, LaserColor.RED, 2, 1);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(a.getShots().get(i).getX(), b.getShots().get(i).getX());
+			assertEquals(a.getShots().get(i).getY(), b.getShots().get(i).getY());
+		}
+
+		for (long frame = 0; frame < 3; frame++) {
+			assertEquals(FrameIdentity.checksum(a.generate(frame)), FrameIdentity.checksum(b.generate(frame)));
+		}
+
+		// The noise changes from frame to frame
+		assertNotEquals(FrameIdentity.checksum(a.generate(0)), FrameIdentity.checksum(a.generate(1)));
+	}
+
+	@Test
+	public void testDotsDrawnWhileOn() {
+		LaserShotGenerator generator = new LaserShotGenerator(160, 120, 1);
+		generator.setNoise(0);
+		GeneratedShot red = generator.addShot(5, 40, 60, LaserColor.RED, 2, 2);
+		GeneratedShot green = generator.addShot(6, 120, 30, LaserColor.GREEN, 2, 1);
+
+		assertFalse(red.isOn(4));
+		assertTrue(red.isOn(5));
+		assertTrue(red.isOn(6));
+		assertFalse(red.isOn(7));
+		assertTrue(green.isOn(6));
+		assertFalse(green.isOn(7));
+
+		final int ambient = LaserShotGenerator.DEFAULT_AMBIENT;
+		final int background = new Color(ambient, ambient, ambient).getRGB();
+
+		BufferedImage before = generator.generate(4);
+		assertEquals(background, before.getRGB(40, 60));
+		assertEquals(background, before.getRGB(120, 30));
+
+		BufferedImage frame = generator.generate(6);
+		Color redDot = new Color(frame.getRGB(40, 60));
+		assertTrue(redDot.getRed() > 240);
+		assertTrue(redDot.getRed() > redDot.getGreen());
+		Color greenDot = new Color(frame.getRGB(120, 30));
+		assertTrue(greenDot.getGreen() > 240);
+		assertTrue(greenDot.getGreen() > greenDot.getRed());
+		assertEquals(background, frame.getRGB(10, 10));
+	}
+
+	@Test
+	public void testAmbientNoiseAllFound() {
+		LaserShotGenerator generator = new LaserShotGenerator(640, 480, 42);
+		generator.addRandomShots(8, 20, 12, 40, LaserColor.RED, 2, 2);
+		generator.addRandomShots(8, 26, 12, 40, LaserColor.GREEN, 2, 2);
+
+		DetectionScore score = detect(generator, 220, 6);
+
+		assertEquals(16, score.getTruePositives());
+		assertEquals(0, score.getFalsePositives());
+		assertEquals(1.0, score.getPrecision(), 0.0);
+		assertEquals(1.0, score.getRecall(), 0.0);
+		assertTrue(score.getMeanError() <= 2);
+	}
+
+	@Test
+	public void testStillProjectorContent() {
+		BufferedImage target = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		g.setColor(new Color(120, 120, 120));
+		g.fillRect(0, 0, 100, 100);
+		g.setColor(Color.BLACK);
+		for (int r = 45; r > 0; r -= 10) g.drawOval(50 - r, 50 - r, 2 * r, 2 * r);
+		g.dispose();
+
+		LaserShotGenerator generator = new LaserShotGenerator(640, 480, 3);
+		generator.setProjectorContent(target, new Rectangle(160, 120, 320, 240), 0);
+		generator.addShot(20, 60, 60, LaserColor.RED, 2, 2);
+		generator.addShot(32, 580, 420, LaserColor.GREEN, 2, 2);
+		generator.addShot(44, 250, 200, LaserColor.RED, 2, 2);
+		generator.addShot(56, 360, 240, LaserColor.GREEN, 2, 2);
+
+		DetectionScore score = detect(generator, 70, 6);
+
+		// Content that does not move is background, so it must not be mistaken
+		// for shots
+		assertEquals(0, score.getFalsePositives());
+		assertEquals(4, score.getTruePositives());
+	}
+}
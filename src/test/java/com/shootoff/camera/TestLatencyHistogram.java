@@ -0,0 +1,79 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void testSmallLatenciesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 1; i <= 10; i++) histogram.record(i, TimeUnit.MICROSECONDS);
+
+		assertEquals(10, histogram.getCount());
+		assertEquals(5, histogram.getPercentile(50));
+		assertEquals(10, histogram.getPercentile(99));
+		assertEquals(10, histogram.getMax());
+	}
+
+	@Test
+	public void testPercentilesWithinBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random rand = new Random(42);
+		long[] latencies = new long[10000];
+
+		for (int i = 0; i < latencies.length; i++) {
+			// Between 100 us and 200 ms
+			latencies[i] = 100 + (long)(rand.nextDouble() * rand.nextDouble() * 200000);
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(latencies[i]), TimeUnit.NANOSECONDS);
+		}
+
+		Arrays.sort(latencies);
+
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			long expected = latencies[(int)Math.ceil(latencies.length * percentile / 100) - 1];
+			long actual = histogram.getPercentile(percentile);
+
+			assertEquals(String.format("p%s", percentile), expected, actual, expected * 0.07);
+		}
+
+		assertEquals(latencies[latencies.length - 1], histogram.getMax());
+	}
+
+	@Test
+	public void testHugeLatenciesAreClamped() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(10, TimeUnit.MINUTES);
+
+		assertEquals(1, histogram.getCount());
+		assertTrue(histogram.getPercentile(50) > TimeUnit.SECONDS.toMicros(30));
+		assertTrue(histogram.getPercentile(50) <= TimeUnit.MINUTES.toMicros(10));
+	}
+
+	@Test
+	public void testReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(5, TimeUnit.MILLISECONDS);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+}
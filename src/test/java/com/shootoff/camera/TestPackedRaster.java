@@ -0,0 +1,81 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPackedRaster {
+	private BufferedImage testFrame;
+
+	@Before
+	public void setUp() throws IOException {
+		testFrame = ImageIO.read(getClass().getResourceAsStream("/shotsearcher/no_interference_one_shot.png"));
+	}
+
+	private BufferedImage convert(BufferedImage source, int type) {
+		BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), type);
+		converted.createGraphics().drawImage(source, 0, 0, null);
+		return converted;
+	}
+
+	private void assertSamePixels(BufferedImage frame, int[] pixels) {
+		for (int y = 0; y < frame.getHeight(); y++) {
+			for (int x = 0; x < frame.getWidth(); x++) {
+				assertEquals(String.format("Pixel (%d, %d)", x, y),
+						frame.getRGB(x, y) & 0x00FFFFFF, pixels[y * frame.getWidth() + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testIntRGB() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_INT_RGB);
+		assertSamePixels(frame, PackedRaster.readRGB(frame, null));
+	}
+
+	@Test
+	public void testThreeByteBGR() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_3BYTE_BGR);
+		assertSamePixels(frame, PackedRaster.readRGB(frame, null));
+	}
+
+	@Test
+	public void testSubimages() {
+		BufferedImage intFrame = convert(testFrame, BufferedImage.TYPE_INT_RGB).getSubimage(13, 7, 200, 150);
+		assertSamePixels(intFrame, PackedRaster.readRGB(intFrame, null));
+
+		BufferedImage byteFrame = convert(testFrame, BufferedImage.TYPE_3BYTE_BGR).getSubimage(13, 7, 200, 150);
+		assertSamePixels(byteFrame, PackedRaster.readRGB(byteFrame, null));
+	}
+
+	@Test
+	public void testRegions() {
+		for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_INT_ARGB }) {
+			BufferedImage frame = convert(testFrame, type);
+			// A region of a sub-image must line up with the same region of the parent
+			BufferedImage subimage = frame.getSubimage(13, 7, 200, 150);
+			assertSamePixels(frame.getSubimage(33, 47, 120, 60), PackedRaster.readRGB(subimage, 20, 40, 120, 60, null));
+		}
+	}
+
+	@Test
+	public void testOtherTypeFallsBack() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_INT_BGR);
+		assertSamePixels(frame, PackedRaster.readRGB(frame, null));
+	}
+
+	@Test
+	public void testReusesDestination() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_INT_RGB);
+		int[] dest = new int[frame.getWidth() * frame.getHeight()];
+
+		assertSame(dest, PackedRaster.readRGB(frame, dest));
+	}
+}
@@ -0,0 +1,33 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestRateMeter {
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testRate() {
+		RateMeter meter = new RateMeter(1000);
+		assertEquals(0, meter.getRate(0), 0);
+
+		// 20 events per second for three seconds
+		for (int i = 0; i <= 60; i++) meter.mark(i * 50 * MS);
+
+		assertEquals(20, meter.getRate(3000 * MS), 0.5);
+	}
+
+	@Test
+	public void testNoEventsFallsToZero() {
+		RateMeter meter = new RateMeter(1000);
+
+		for (int i = 0; i <= 20; i++) meter.mark(i * 50 * MS);
+		assertEquals(20, meter.getRate(1500 * MS), 0.5);
+
+		// No events for two windows
+		assertEquals(0, meter.getRate(3000 * MS), 0);
+	}
+}
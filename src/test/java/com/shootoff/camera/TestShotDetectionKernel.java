@@ -0,0 +1,415 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestShotDetectionKernel {
+	private List<BufferedImage> frames;
+
+	@Before
+	public void setUp() throws IOException {
+		BufferedImage noShot = loadFrame("/shotsearcher/no_interference_no_shot.png");
+		BufferedImage oneShot = loadFrame("/shotsearcher/no_interference_one_shot.png");
+		BufferedImage twoShots = loadFrame("/shotsearcher/no_interference_two_shots.png");
+
+		frames = new ArrayList<BufferedImage>();
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) frames.add(noShot);
+		frames.add(oneShot);
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) frames.add(noShot);
+		frames.add(twoShots);
+	}
+
+	private BufferedImage loadFrame(String path) throws IOException {
+		BufferedImage image = ImageIO.read(getClass().getResourceAsStream(path));
+		BufferedImage frame = new BufferedImage(CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT,
+				BufferedImage.TYPE_3BYTE_BGR);
+		frame.createGraphics().drawImage(image, 0, 0, CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT, null);
+		return frame;
+	}
+
+	private List<ShotCandidate> findShots(ShotDetectionKernel kernel) {
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		for (BufferedImage frame : frames) {
+			kernel.detectShots(frame, shots);
+		}
+
+		return shots;
+	}
+
+	private void assertSameShots(List<ShotCandidate> expected, List<ShotCandidate> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getX(), actual.get(i).getX());
+			assertEquals(expected.get(i).getY(), actual.get(i).getY());
+			assertEquals(expected.get(i).getStrength(), actual.get(i).getStrength());
+		}
+	}
+
+	@Test
+	public void testFindsShots() {
+		assertFalse(findShots(new ShotDetectionKernel()).isEmpty());
+	}
+
+	@Test
+	public void testParallelBandsMatchSingleBand() {
+		List<ShotCandidate> expected = findShots(new ShotDetectionKernel());
+
+		for (int parallelism : new int[] { 2, 3, 8 }) {
+			ShotDetectionKernel kernel = new ShotDetectionKernel();
+			kernel.setParallelism(parallelism);
+			assertSameShots(expected, findShots(kernel));
+		}
+	}
+
+	private boolean[][] allSectors() {
+		boolean[][] sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+		for (boolean[] row : sectorStatuses) Arrays.fill(row, true);
+		return sectorStatuses;
+	}
+
+	private ShotDetectionKernel uncappedKernel() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setMaxShots(Integer.MAX_VALUE);
+		return kernel;
+	}
+
+	// Shots found in an area are the full frame peaks inside the area, so they
+	// come in the same order and every peak whose neighborhood is entirely inside
+	// the area must be there
+	private void assertShotsLimitedToArea(List<ShotCandidate> fullFrame, List<ShotCandidate> limited,
+			DetectionArea area) {
+		int next = 0;
+
+		for (ShotCandidate shot : limited) {
+			assertTrue(area.contains(shot.getX(), shot.getY()));
+
+			while (next < fullFrame.size() && (fullFrame.get(next).getX() != shot.getX() ||
+					fullFrame.get(next).getY() != shot.getY())) {
+				assertFalse(isInside(fullFrame.get(next), area));
+				next++;
+			}
+
+			assertTrue(next < fullFrame.size());
+			assertEquals(fullFrame.get(next).getStrength(), shot.getStrength());
+			next++;
+		}
+
+		for (; next < fullFrame.size(); next++) {
+			assertFalse(isInside(fullFrame.get(next), area));
+		}
+	}
+
+	private boolean isInside(ShotCandidate shot, DetectionArea area) {
+		for (int x = shot.getX() - 10; x <= shot.getX() + 10; x++) {
+			for (int y = shot.getY() - 10; y <= shot.getY() + 10; y++) {
+				if (!area.contains(x, y)) return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Test
+	public void testGatherMatchesScatter() {
+		boolean[][] sectorStatuses = allSectors();
+		sectorStatuses[1][1] = false;
+
+		for (int parallelism : new int[] { 1, 3 }) {
+			for (Optional<Rectangle> bounds : Arrays.asList(Optional.<Rectangle> empty(),
+					Optional.of(new Rectangle(60, 40, 300, 260)))) {
+				ShotDetectionKernel scatter = uncappedKernel();
+				ShotDetectionKernel gather = uncappedKernel();
+				gather.setAccumulation(ShotDetectionKernel.Accumulation.GATHER);
+				ShotDetectionKernel separable = uncappedKernel();
+				separable.setAccumulation(ShotDetectionKernel.Accumulation.SEPARABLE);
+
+				for (ShotDetectionKernel kernel : Arrays.asList(scatter, gather, separable)) {
+					kernel.setParallelism(parallelism);
+					kernel.setDetectionArea(bounds.isPresent() ? allSectors() : sectorStatuses, bounds);
+				}
+
+				List<ShotCandidate> expected = findShots(scatter);
+				assertFalse(expected.isEmpty());
+				assertSameShots(expected, findShots(gather));
+				assertEquals(scatter.getMaxTransform(), gather.getMaxTransform());
+				assertSameShots(expected, findShots(separable));
+				assertEquals(scatter.getMaxTransform(), separable.getMaxTransform());
+			}
+		}
+	}
+
+	@Test
+	public void testSwitchingAccumulationBetweenFrames() {
+		List<ShotCandidate> expected = findShots(uncappedKernel());
+
+		ShotDetectionKernel kernel = uncappedKernel();
+		ShotDetectionKernel.Accumulation[] modes = ShotDetectionKernel.Accumulation.values();
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		for (int i = 0; i < frames.size(); i++) {
+			kernel.setAccumulation(modes[i % modes.length]);
+			kernel.detectShots(frames.get(i), shots);
+		}
+
+		assertSameShots(expected, shots);
+	}
+
+	@Test
+	public void testAllSectorsMatchFullFrame() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setDetectionArea(allSectors(), Optional.empty());
+
+		assertSameShots(findShots(new ShotDetectionKernel()), findShots(kernel));
+	}
+
+	@Test
+	public void testDisabledSectors() {
+		List<ShotCandidate> fullFrame = findShots(uncappedKernel());
+
+		boolean[][] sectorStatuses = allSectors();
+		sectorStatuses[0][0] = false;
+		sectorStatuses[1][1] = false;
+		sectorStatuses[2][0] = false;
+
+		for (int parallelism : new int[] { 1, 3 }) {
+			ShotDetectionKernel kernel = uncappedKernel();
+			kernel.setParallelism(parallelism);
+			kernel.setDetectionArea(sectorStatuses, Optional.empty());
+
+			List<ShotCandidate> limited = findShots(kernel);
+			assertFalse(limited.isEmpty());
+			assertTrue(limited.size() < fullFrame.size());
+			assertShotsLimitedToArea(fullFrame, limited, kernel.getDetectionArea());
+		}
+	}
+
+	@Test
+	public void testNoSectors() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setDetectionArea(new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS],
+				Optional.empty());
+
+		assertTrue(findShots(kernel).isEmpty());
+		assertEquals(0, kernel.getDetectionArea().getPixelCount());
+	}
+
+	@Test
+	public void testProjectionBounds() {
+		List<ShotCandidate> fullFrame = findShots(uncappedKernel());
+
+		ShotDetectionKernel kernel = uncappedKernel();
+		kernel.setDetectionArea(allSectors(), Optional.of(new Rectangle(60, 40, 300, 260)));
+
+		List<ShotCandidate> limited = findShots(kernel);
+		assertFalse(limited.isEmpty());
+		assertShotsLimitedToArea(fullFrame, limited, kernel.getDetectionArea());
+		assertEquals(300 * 260, kernel.getDetectionArea().getPixelCount());
+	}
+
+	@Test
+	public void testChangingAreaRestartsHistory() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) kernel.detectShots(frames.get(i), shots);
+		assertTrue(kernel.detectShots(frames.get(0), shots));
+
+		boolean[][] sectorStatuses = allSectors();
+		sectorStatuses[1][2] = false;
+		kernel.setDetectionArea(sectorStatuses, Optional.empty());
+		assertFalse(kernel.detectShots(frames.get(0), shots));
+
+		// Setting the same area again keeps the history
+		for (int i = 1; i < CameraManager.HISTORY_SIZE; i++) kernel.detectShots(frames.get(i), shots);
+		kernel.setDetectionArea(sectorStatuses, Optional.empty());
+		assertTrue(kernel.detectShots(frames.get(0), shots));
+	}
+
+	private BufferedImage frameWithDot(int width, int height, int dotX, int dotY, int dotRadius) {
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = frame.createGraphics();
+		g.setColor(new Color(60, 60, 60));
+		g.fillRect(0, 0, width, height);
+		g.setColor(new Color(90, 90, 90));
+		g.fillRect(width / 4, height / 4, width / 3, height / 3);
+
+		if (dotRadius > 0) {
+			g.setColor(new Color(255, 40, 40));
+			g.fillOval(dotX - dotRadius, dotY - dotRadius, dotRadius * 2, dotRadius * 2);
+		}
+
+		return frame;
+	}
+
+	private List<ShotCandidate> findDot(ShotDetectionKernel kernel, int width, int height, int dotX, int dotY,
+			int dotRadius) {
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) {
+			kernel.detectShots(frameWithDot(width, height, 0, 0, 0), shots);
+		}
+		assertTrue(shots.isEmpty());
+
+		kernel.detectShots(frameWithDot(width, height, dotX, dotY, dotRadius), shots);
+
+		return shots;
+	}
+
+	@Test
+	public void testLargeFrames() {
+		// The dot covers the same share of the frame at every resolution
+		int[][] sizes = { { 640, 480, 2, 1 }, { 1280, 720, 4, 2 }, { 1920, 1080, 5, 3 } };
+
+		for (int[] size : sizes) {
+			int dotX = size[0] * 7 / 10 + 1;
+			int dotY = size[1] * 6 / 10 + 1;
+
+			ShotDetectionKernel kernel = new ShotDetectionKernel();
+			List<ShotCandidate> shots = findDot(kernel, size[0], size[1], dotX, dotY, size[2]);
+
+			assertEquals(size[3], kernel.getSearchScale());
+			assertEquals(1, shots.size());
+			assertEquals(dotX, shots.get(0).getX(), 1);
+			assertEquals(dotY, shots.get(0).getY(), 1);
+		}
+	}
+
+	@Test
+	public void testChangingFrameSize() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+
+		findDot(kernel, 640, 480, 300, 200, 2);
+
+		// A new frame size starts a new history
+		assertFalse(kernel.detectShots(frameWithDot(1280, 720, 0, 0, 0), shots));
+
+		shots = findDot(kernel, 1280, 720, 601, 401, 4);
+		assertFalse(shots.isEmpty());
+		assertEquals(601, shots.get(0).getX(), 1);
+		assertEquals(401, shots.get(0).getY(), 1);
+	}
+
+	@Test
+	public void testLargeFrameShotNextToPreviousShot() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		List<ShotCandidate> shots = findDot(kernel, 1280, 720, 601, 401, 4);
+		assertEquals(1, shots.size());
+
+		// The amplitudes around the new shot are refined from this frame, not
+		// from the frame the previous shot was in
+		shots.clear();
+		kernel.detectShots(frameWithDot(1280, 720, 0, 0, 0), shots);
+		kernel.detectShots(frameWithDot(1280, 720, 611, 405, 4), shots);
+
+		assertEquals(1, shots.size());
+		assertEquals(611, shots.get(0).getX(), 1);
+		assertEquals(405, shots.get(0).getY(), 1);
+	}
+
+	@Test
+	public void testLargeFrameProjectionBounds() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setDetectionArea(allSectors(), Optional.of(new Rectangle(0, 0, 640, 360)));
+
+		assertTrue(findDot(kernel, 1280, 720, 897, 433, 4).isEmpty());
+
+		kernel.setDetectionArea(allSectors(), Optional.of(new Rectangle(640, 360, 640, 360)));
+		assertFalse(findDot(kernel, 1280, 720, 897, 433, 4).isEmpty());
+	}
+
+	private List<ShotCandidate> findDots(ShotDetectionKernel kernel, int[][] dots) {
+		List<ShotCandidate> shots = new ArrayList<ShotCandidate>();
+		BufferedImage background = frameWithDot(640, 480, 0, 0, 0);
+
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) kernel.detectShots(background, shots);
+
+		BufferedImage frame = frameWithDot(640, 480, 0, 0, 0);
+		Graphics2D g = frame.createGraphics();
+		for (int[] dot : dots) {
+			g.setColor(new Color(dot[3], 40, 40));
+			g.fillOval(dot[0] - dot[2], dot[1] - dot[2], dot[2] * 2, dot[2] * 2);
+		}
+
+		kernel.detectShots(frame, shots);
+
+		return shots;
+	}
+
+	@Test
+	public void testOneShotPerPeak() {
+		List<ShotCandidate> shots = findDots(new ShotDetectionKernel(),
+				new int[][] { { 100, 100, 2, 255 }, { 400, 300, 2, 255 }, { 550, 120, 2, 255 } });
+
+		assertEquals(3, shots.size());
+
+		for (int i = 1; i < shots.size(); i++) {
+			assertTrue(shots.get(i - 1).getStrength() >= shots.get(i).getStrength());
+		}
+	}
+
+	@Test
+	public void testMaxShots() {
+		int[][] dots = { { 100, 100, 2, 255 }, { 400, 300, 2, 255 }, { 550, 120, 2, 255 } };
+
+		List<ShotCandidate> allShots = findDots(new ShotDetectionKernel(), dots);
+		assertEquals(3, allShots.size());
+
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setMaxShots(2);
+		List<ShotCandidate> shots = findDots(kernel, dots);
+
+		// The strongest shots are kept
+		assertEquals(2, shots.size());
+		assertSameShots(allShots.subList(0, 2), shots);
+	}
+
+	@Test
+	public void testPeakRadius() {
+		int[][] dots = { { 300, 200, 2, 255 }, { 312, 200, 2, 255 } };
+
+		assertEquals(2, findDots(new ShotDetectionKernel(), dots).size());
+
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		kernel.setPeakRadius(15);
+		assertEquals(1, findDots(kernel, dots).size());
+	}
+
+	@Test
+	public void testOnlyChangedTilesSearched() {
+		ShotDetectionKernel kernel = new ShotDetectionKernel();
+		List<ShotCandidate> shots = findDot(kernel, 640, 480, 300, 200, 2);
+
+		assertEquals(1, shots.size());
+		assertTrue(kernel.getChangedTileCount() >= 1 && kernel.getChangedTileCount() <= 4);
+
+		// A frame that only got darker changes nothing
+		shots.clear();
+		kernel.detectShots(frameWithDot(640, 480, 0, 0, 0), shots);
+		assertTrue(shots.isEmpty());
+		assertEquals(0, kernel.getChangedTileCount());
+		assertEquals(0, kernel.getMaxTransform());
+
+		// Nothing is left over from the tiles searched for an earlier shot
+		kernel.detectShots(frameWithDot(640, 480, 500, 400, 2), shots);
+		assertEquals(1, shots.size());
+		assertEquals(500, shots.get(0).getX(), 1);
+		assertEquals(400, shots.get(0).getY(), 1);
+	}
+}
@@ -0,0 +1,92 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class TestSyntheticFrameSource {
+	// Each frame's first pixel holds its frame number
+	private BufferedImage numberedFrame(long frameNumber) {
+		BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		frame.setRGB(0, 0, (int)frameNumber);
+		return frame;
+	}
+
+	@Test
+	public void testUnpacedFrames() throws InterruptedException {
+		SyntheticFrameSource source = new SyntheticFrameSource("Synthetic", 0, this::numberedFrame);
+
+		assertFalse(source.awaitImage(10));
+		assertTrue(source.open());
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(source.awaitImage(10));
+			assertTrue(source.isImageNew());
+			// Waiting again without reading the frame keeps it
+			assertTrue(source.awaitImage(10));
+			assertEquals(i, source.getImage().getRGB(0, 0) & 0x00FFFFFF);
+			assertFalse(source.isImageNew());
+		}
+
+		assertEquals(3, source.getFrameCount());
+
+		source.close();
+		assertFalse(source.isOpen());
+		assertFalse(source.awaitImage(10));
+	}
+
+	@Test
+	public void testPacedFrames() throws InterruptedException {
+		SyntheticFrameSource source = new SyntheticFrameSource("Synthetic", 50, this::numberedFrame);
+		source.open();
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < 6; i++) {
+			while (!source.awaitImage(100));
+			source.getImage();
+		}
+
+		// The first frame is due right away, the other five 20 ms apart
+		assertTrue((System.nanoTime() - start) / 1000000 >= 95);
+
+		// A timeout shorter than the time to the next frame gives up
+		assertFalse(source.awaitImage(1));
+	}
+
+	@Test
+	public void testPooledFrames() throws InterruptedException {
+		LaserShotGenerator generator = new LaserShotGenerator(64, 48, 1);
+		SyntheticFrameSource source = new SyntheticFrameSource("Synthetic", 0, generator);
+		FramePool pool = new FramePool();
+
+		assertNull(source.getImage(pool));
+		source.open();
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(source.awaitImage(10));
+			BufferedImage frame = source.getImage(pool);
+
+			assertEquals(FrameIdentity.checksum(generator.generate(i)), FrameIdentity.checksum(frame));
+			assertFalse(source.isImageNew());
+			assertTrue(pool.release(frame));
+		}
+
+		assertEquals(1, pool.getAllocatedFrames());
+	}
+
+	@Test
+	public void testCamera() throws InterruptedException {
+		Camera camera = new Camera(new SyntheticFrameSource("Synthetic", 0, this::numberedFrame));
+
+		assertEquals("Synthetic", camera.getName());
+		assertFalse(camera.isWebcam());
+		assertFalse(camera.isLocked());
+
+		assertTrue(camera.openStreaming());
+		assertTrue(camera.awaitImage(10));
+		assertNotNull(camera.getImage());
+		assertTrue(camera.close());
+	}
+}
@@ -0,0 +1,83 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.junit.Test;
+
+public class TestVideoFrameSource {
+	private static final long TIMEOUT = 1000; // ms
+
+	private File video() {
+		return new File(TestVideoFrameSource.class.getResource("/shotsearcher/no_interference_two_shots.mp4")
+				.getFile());
+	}
+
+	@Test
+	public void testMissingFileDoesNotOpen() throws InterruptedException {
+		VideoFrameSource source = new VideoFrameSource(new File("missing.mp4"), false, false);
+
+		assertFalse(source.open());
+		assertFalse(source.isOpen());
+		assertFalse(source.awaitImage(10));
+	}
+
+	@Test
+	public void testDeliversEveryFrame() throws InterruptedException {
+		VideoFrameSource source = new VideoFrameSource(video(), false, false);
+		assertTrue(source.open());
+
+		int frameCount = 0;
+		while (source.awaitImage(TIMEOUT)) {
+			assertTrue(source.isImageNew());
+			assertNotNull(source.getImage());
+			assertFalse(source.isImageNew());
+			frameCount++;
+		}
+
+		// The source closes itself at the end of the file
+		assertFalse(source.isOpen());
+		assertEquals(new VideoReplay(video(), CameraManager.HISTORY_SIZE).call().getFrameCount(), frameCount);
+	}
+
+	@Test
+	public void testLoopingStartsOver() throws InterruptedException {
+		int fileFrames = new VideoReplay(video(), CameraManager.HISTORY_SIZE).call().getFrameCount();
+
+		VideoFrameSource source = new VideoFrameSource(video(), false, true);
+		assertTrue(source.open());
+
+		for (int i = 0; i < fileFrames + 10; i++) {
+			assertTrue(source.awaitImage(TIMEOUT));
+			assertNotNull(source.getImage());
+		}
+
+		assertTrue(source.isOpen());
+
+		source.close();
+		assertFalse(source.awaitImage(10));
+	}
+
+	@Test
+	public void testPooledFramesAreReused() throws InterruptedException {
+		FramePool framePool = new FramePool();
+		VideoFrameSource source = new VideoFrameSource(video(), false, false, framePool);
+		assertTrue(source.open());
+
+		int frameCount = 0;
+		while (source.awaitImage(TIMEOUT)) {
+			BufferedImage frame = source.getImage(framePool);
+			assertEquals(BufferedImage.TYPE_3BYTE_BGR, frame.getType());
+			framePool.release(frame);
+			frameCount++;
+		}
+
+		// A packet can decode to more than one picture, so a few frames may be
+		// in use at once, but never one per picture
+		assertTrue(frameCount > 10);
+		assertTrue(framePool.getAllocatedFrames() <= 4);
+		assertEquals(0, framePool.getAcquiredFrames());
+	}
+}
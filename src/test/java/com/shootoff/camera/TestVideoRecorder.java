@@ -0,0 +1,159 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+
+public class TestVideoRecorder {
+	private static class RecordingEncoder implements VideoRecorder.FrameEncoder {
+		private final List<Integer> frames = Collections.synchronizedList(new ArrayList<Integer>());
+		private final List<Boolean> keyFrames = Collections.synchronizedList(new ArrayList<Boolean>());
+		private final CountDownLatch release;
+		private volatile boolean closed = false;
+
+		private RecordingEncoder(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void encodeFrame(BufferedImage frame, long timestamp, boolean keyFrame) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			assertEquals(BufferedImage.TYPE_3BYTE_BGR, frame.getType());
+			frames.add(frame.getRGB(0, 0) & 0x00FFFFFF);
+			keyFrames.add(keyFrame);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private BufferedImage numberedFrame(int number, int type) {
+		BufferedImage frame = new BufferedImage(64, 48, type);
+		frame.setRGB(0, 0, number);
+		return frame;
+	}
+
+	@Test
+	public void testFramesEncodedInOrder() throws InterruptedException {
+		RecordingEncoder encoder = new RecordingEncoder(new CountDownLatch(0));
+		VideoRecorder recorder = new VideoRecorder("Test", 64, 48, 4, encoder);
+
+		assertFalse(recorder.record(numberedFrame(1, BufferedImage.TYPE_3BYTE_BGR)));
+		recorder.start();
+
+		for (int i = 0; i < 20; i++) {
+			BufferedImage frame = numberedFrame(i, i % 2 == 0 ?
+					BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_INT_RGB);
+			while (!recorder.record(frame)) Thread.sleep(1);
+			// The recorder copies the frame, so the camera can reuse it right away
+			frame.setRGB(0, 0, 0xFFFFFF);
+		}
+
+		recorder.stop();
+		recorder.awaitStopped();
+
+		assertTrue(encoder.closed);
+		assertEquals(20, recorder.getRecordedFrames());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(Integer.valueOf(i), encoder.frames.get(i));
+			assertEquals(i == 0, encoder.keyFrames.get(i));
+		}
+	}
+
+	@Test
+	public void testSlowEncoderDropsFrames() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingEncoder encoder = new RecordingEncoder(release);
+		VideoRecorder recorder = new VideoRecorder("Test", 64, 48, 4, encoder);
+		recorder.start();
+
+		// The encoder is stuck, so only as many frames as there are buffers fit
+		int queued = 0;
+		for (int i = 0; i < 10; i++) {
+			if (recorder.record(numberedFrame(i, BufferedImage.TYPE_3BYTE_BGR))) queued++;
+		}
+
+		assertEquals(4, queued);
+		assertEquals(6, recorder.getDroppedFrames());
+
+		release.countDown();
+		recorder.stop();
+		recorder.awaitStopped();
+
+		assertEquals(4, recorder.getRecordedFrames());
+		assertEquals(4, encoder.frames.size());
+		assertFalse(recorder.record(numberedFrame(0, BufferedImage.TYPE_3BYTE_BGR)));
+	}
+
+	@Test
+	public void testBuffersReturnToPool() throws InterruptedException {
+		FramePool pool = new FramePool();
+
+		for (int recording = 0; recording < 3; recording++) {
+			VideoRecorder recorder = new VideoRecorder("Test", 64, 48, 4,
+					new RecordingEncoder(new CountDownLatch(0)), pool);
+			assertEquals(4, pool.getAcquiredFrames());
+
+			recorder.start();
+			for (int i = 0; i < 10; i++) recorder.record(numberedFrame(i, BufferedImage.TYPE_3BYTE_BGR));
+			recorder.stop();
+			recorder.awaitStopped();
+
+			assertEquals(0, pool.getAcquiredFrames());
+		}
+
+		// Later recordings reuse the first recording's buffers
+		assertEquals(4, pool.getAllocatedFrames());
+	}
+
+	@Test
+	public void testFrameRecordedWhileStoppingReturnsToPool() throws Exception {
+		FramePool pool = new FramePool();
+		VideoRecorder recorder = new VideoRecorder("Test", 64, 48, 4,
+				new RecordingEncoder(new CountDownLatch(0)), pool);
+		CountDownLatch copying = new CountDownLatch(1);
+		CountDownLatch finishCopy = new CountDownLatch(1);
+
+		// Holds record() in the middle of copying the frame
+		BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR) {
+			@Override
+			public WritableRaster copyData(WritableRaster outRaster) {
+				copying.countDown();
+				try {
+					finishCopy.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.copyData(outRaster);
+			}
+		};
+
+		recorder.start();
+		FutureTask<Boolean> record = new FutureTask<Boolean>(() -> recorder.record(frame));
+		new Thread(record).start();
+		copying.await();
+
+		// The encoder finishes and gives its buffers back before the copy ends
+		recorder.stop();
+		recorder.awaitStopped();
+		finishCopy.countDown();
+
+		assertFalse(record.get());
+		assertEquals(0, pool.getAcquiredFrames());
+	}
+}
@@ -0,0 +1,203 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javafx.geometry.BoundingBox;
+
+public class TestVideoReplay {
+	private static final long FRAME_INTERVAL = 33; // ms
+
+	private BufferedImage noShot;
+	private BufferedImage oneShot;
+	private BufferedImage twoShots;
+
+	@Before
+	public void setUp() throws IOException {
+		noShot = loadFrame("/shotsearcher/no_interference_no_shot.png");
+		oneShot = loadFrame("/shotsearcher/no_interference_one_shot.png");
+		twoShots = loadFrame("/shotsearcher/no_interference_two_shots.png");
+	}
+
+	private BufferedImage loadFrame(String path) throws IOException {
+		BufferedImage image = ImageIO.read(getClass().getResourceAsStream(path));
+		BufferedImage frame = new BufferedImage(CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT,
+				BufferedImage.TYPE_3BYTE_BGR);
+		frame.createGraphics().drawImage(image, 0, 0, CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT, null);
+		return frame;
+	}
+
+	// Identical frames are skipped like a live camera's repeats, so each frame
+	// differs from the one before it in a single corner pixel
+	private BufferedImage variant(BufferedImage image, int index) {
+		BufferedImage frame = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+		frame.createGraphics().drawImage(image, 0, 0, null);
+		frame.setRGB(0, 0, index % 2 == 0 ? 0 : 0x010101);
+		return frame;
+	}
+
+	private List<BufferedImage> frames() {
+		List<BufferedImage> frames = new ArrayList<BufferedImage>();
+
+		// Enough frames to initialize the pixel transformer and fill the background model
+		for (int i = 0; i < CameraManager.INIT_FRAME_COUNT + CameraManager.HISTORY_SIZE; i++) {
+			frames.add(variant(noShot, frames.size()));
+		}
+		frames.add(variant(oneShot, frames.size()));
+		for (int i = 0; i < CameraManager.HISTORY_SIZE; i++) frames.add(variant(noShot, frames.size()));
+		frames.add(variant(twoShots, frames.size()));
+
+		return frames;
+	}
+
+	private VideoReplay replayFrames() {
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+		return replayFrames(replay);
+	}
+
+	private VideoReplay replayFrames(VideoReplay replay) {
+		List<BufferedImage> frames = frames();
+		for (int i = 0; i < frames.size(); i++) replay.processFrame(frames.get(i), i * FRAME_INTERVAL);
+		return replay;
+	}
+
+	@Test
+	public void testReplayFindsShots() {
+		VideoReplay replay = replayFrames();
+
+		assertEquals(frames().size(), replay.getFrameCount());
+		assertEquals(0, replay.getFrameDetector().getDuplicateFrames());
+
+		int oneShotFrame = CameraManager.INIT_FRAME_COUNT + CameraManager.HISTORY_SIZE;
+		int twoShotsFrame = oneShotFrame + CameraManager.HISTORY_SIZE + 1;
+		boolean foundOneShot = false;
+		boolean foundTwoShots = false;
+
+		for (VideoReplay.ReplayedShot shot : replay.getShots()) {
+
+			assertTrue(shot.getFrame() == oneShotFrame || shot.getFrame() == twoShotsFrame);
+			assertEquals(shot.getFrame() * FRAME_INTERVAL, shot.getTimestamp());
+			assertTrue(shot.getStrength() > CameraManager.HUGHES_TRANFORM_THRESHOLD);
+
+			if (shot.getFrame() == oneShotFrame) foundOneShot = true;
+			if (shot.getFrame() == twoShotsFrame) foundTwoShots = true;
+		}
+
+		assertTrue(foundOneShot);
+		assertTrue(foundTwoShots);
+	}
+
+	private List<VideoReplay.ReplayedShot> replay(String videoPath, ShotDetectionKernel.Accumulation accumulation) {
+		VideoReplay replay = new VideoReplay(new File(getClass().getResource(videoPath).getFile()),
+				CameraManager.HISTORY_SIZE);
+		replay.getDetectionKernel().setAccumulation(accumulation);
+
+		return replay.call().getShots();
+	}
+
+	@Test
+	public void testGatherMatchesScatterOnVideos() {
+		String[] videos = { "/shotsearcher/no_interference_two_shots.mp4",
+				"/shotsearcher/ps3eye_hardware_defaults_ambient_light_nature_scene.mp4",
+				"/shotsearcher/ps3eye_hardware_defaults_projector_dark_room.mp4",
+				"/shotsearcher/mshd3000_hardware_defaults_ambient_light_nature_scene.mp4" };
+
+		for (String video : videos) {
+			List<VideoReplay.ReplayedShot> scattered = replay(video, ShotDetectionKernel.Accumulation.SCATTER);
+
+			for (ShotDetectionKernel.Accumulation accumulation : Arrays.asList(
+					ShotDetectionKernel.Accumulation.GATHER, ShotDetectionKernel.Accumulation.SEPARABLE)) {
+				List<VideoReplay.ReplayedShot> gathered = replay(video, accumulation);
+
+				assertEquals(video, scattered.size(), gathered.size());
+
+				for (int i = 0; i < scattered.size(); i++) {
+					assertEquals(video, scattered.get(i).getFrame(), gathered.get(i).getFrame());
+					assertEquals(video, scattered.get(i).getX(), gathered.get(i).getX());
+					assertEquals(video, scattered.get(i).getY(), gathered.get(i).getY());
+					assertEquals(video, scattered.get(i).getStrength(), gathered.get(i).getStrength());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoShotsBeforeInitialization() {
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+
+		// The shot frame arrives before the background model is full
+		for (int i = 0; i < CameraManager.INIT_FRAME_COUNT; i++) replay.processFrame(noShot, i * FRAME_INTERVAL);
+		replay.processFrame(oneShot, CameraManager.INIT_FRAME_COUNT * FRAME_INTERVAL);
+
+		assertTrue(replay.getShots().isEmpty());
+	}
+
+	@Test
+	public void testDuplicateFramesAreSkipped() {
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+
+		// Repeats of one frame never initialize the detector
+		int repeats = CameraManager.INIT_FRAME_COUNT + CameraManager.HISTORY_SIZE;
+		for (int i = 0; i < repeats; i++) replay.processFrame(noShot, i * FRAME_INTERVAL);
+		replay.processFrame(oneShot, repeats * FRAME_INTERVAL);
+
+		assertEquals(repeats + 1, replay.getFrameCount());
+		assertEquals(repeats - 1, replay.getFrameDetector().getDuplicateFrames());
+		assertTrue(replay.getShots().isEmpty());
+	}
+
+	@Test
+	public void testDisabledSectorsFindNoShots() {
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+		replay.getFrameDetector().setSectorStatuses(
+				new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS]);
+
+		assertTrue(replayFrames(replay).getShots().isEmpty());
+	}
+
+	@Test
+	public void testDetectionLimitedToProjection() {
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+		replay.getFrameDetector().setLimitDetectProjection(true);
+		replay.getFrameDetector().setProjectionBounds(new BoundingBox(400, 300, 200, 150));
+
+		List<VideoReplay.ReplayedShot> shots = replayFrames(replay).getShots();
+		assertFalse(shots.isEmpty());
+
+		for (VideoReplay.ReplayedShot shot : shots) {
+			assertTrue(shot.getX() >= 400 && shot.getX() < 600);
+			assertTrue(shot.getY() >= 300 && shot.getY() < 450);
+		}
+	}
+
+	@Test
+	public void testCroppedShotsAreInFrameCoordinates() {
+		List<VideoReplay.ReplayedShot> shots = replayFrames().getShots();
+
+		VideoReplay replay = new VideoReplay(new File("test.mp4"), CameraManager.HISTORY_SIZE);
+		replay.getFrameDetector().setCropFeedToProjection(true);
+		replay.getFrameDetector().setProjectionBounds(
+				new BoundingBox(8, 8, CameraManager.FEED_WIDTH - 16, CameraManager.FEED_HEIGHT - 16));
+		List<VideoReplay.ReplayedShot> croppedShots = replayFrames(replay).getShots();
+
+		assertFalse(shots.isEmpty());
+		assertEquals(shots.size(), croppedShots.size());
+
+		for (int i = 0; i < shots.size(); i++) {
+			assertEquals(shots.get(i).getFrame(), croppedShots.get(i).getFrame());
+			assertEquals(shots.get(i).getX(), croppedShots.get(i).getX(), 2);
+			assertEquals(shots.get(i).getY(), croppedShots.get(i).getY(), 2);
+		}
+	}
+}
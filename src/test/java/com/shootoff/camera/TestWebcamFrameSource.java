@@ -0,0 +1,149 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sarxos.webcam.Webcam;
+import com.github.sarxos.webcam.WebcamDevice;
+import com.github.sarxos.webcam.WebcamDriver;
+
+public class TestWebcamFrameSource {
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+
+	private FakeDevice device;
+	private Webcam webcam;
+
+	// A device that delivers RGB frames whose red component counts the frames
+	private static class FakeDevice implements WebcamDevice, WebcamDevice.BufferAccess {
+		private Dimension resolution = new Dimension(WIDTH, HEIGHT);
+		private boolean open = false;
+		private int frameCount = 0;
+		private int imagesAllocated = 0;
+
+		@Override
+		public String getName() {
+			return "Fake";
+		}
+
+		@Override
+		public Dimension[] getResolutions() {
+			return new Dimension[] { new Dimension(WIDTH, HEIGHT) };
+		}
+
+		@Override
+		public Dimension getResolution() {
+			return resolution;
+		}
+
+		@Override
+		public void setResolution(Dimension size) {
+			resolution = size;
+		}
+
+		@Override
+		public BufferedImage getImage() {
+			imagesAllocated++;
+			return new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+		}
+
+		@Override
+		public ByteBuffer getImageBytes() {
+			ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT * 3);
+			getImageBytes(buffer);
+			buffer.rewind();
+			return buffer;
+		}
+
+		@Override
+		public void getImageBytes(ByteBuffer target) {
+			for (int i = 0; i < WIDTH * HEIGHT; i++) {
+				target.put((byte)frameCount);
+				target.put((byte)20);
+				target.put((byte)30);
+			}
+
+			frameCount++;
+		}
+
+		@Override
+		public void open() {
+			open = true;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+
+		@Override
+		public void dispose() {}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		device = new FakeDevice();
+		Webcam.setDriver(new WebcamDriver() {
+			@Override
+			public List<WebcamDevice> getDevices() {
+				return Collections.<WebcamDevice> singletonList(device);
+			}
+
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+		});
+		webcam = new Webcam(device) {};
+	}
+
+	@Test
+	public void testBufferAccessFramesArePooled() throws InterruptedException {
+		WebcamFrameSource source = new WebcamFrameSource(webcam);
+		FramePool framePool = new FramePool();
+		assertTrue(source.openStreaming());
+
+		for (int i = 0; i < 20; i++) {
+			assertTrue(source.awaitImage(100));
+			BufferedImage frame = source.getImage(framePool);
+
+			assertEquals(BufferedImage.TYPE_3BYTE_BGR, frame.getType());
+			assertEquals(WIDTH, frame.getWidth());
+			assertEquals(HEIGHT, frame.getHeight());
+			assertEquals(i << 16 | 20 << 8 | 30, frame.getRGB(WIDTH / 2, HEIGHT / 2) & 0x00FFFFFF);
+
+			framePool.release(frame);
+		}
+
+		// After the first frame every frame reuses its buffer
+		assertEquals(1, framePool.getAllocatedFrames());
+		assertEquals(0, framePool.getAcquiredFrames());
+		assertEquals(0, device.imagesAllocated);
+
+		source.close();
+		assertNull(source.getImage(framePool));
+	}
+
+	@Test
+	public void testUnlistedViewSizeIsCustom() {
+		WebcamFrameSource source = new WebcamFrameSource(webcam);
+		assertArrayEquals(new Dimension[] { new Dimension(WIDTH, HEIGHT) }, source.getViewSizes());
+
+		source.setViewSize(new Dimension(WIDTH * 2, HEIGHT * 2));
+
+		assertEquals(new Dimension(WIDTH * 2, HEIGHT * 2), webcam.getViewSize());
+	}
+}
@@ -2,8 +2,10 @@ package com.shootoff.config;
 
 import static org.junit.Assert.*;
 
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.util.Optional;
 
 import javafx.scene.paint.Color;
 
@@ -35,6 +37,14 @@ public class TestConfiguration {
 		assertEquals(7, defaultConfig.getVirtualMagazineCapacity());
 		assertEquals(false, defaultConfig.useMalfunctions());
 		assertTrue(defaultConfig.getMalfunctionsProbability() == 10.0);
+		assertEquals(5, defaultConfig.getHistorySize());
+		assertEquals(1, defaultConfig.getDetectionParallelism());
+		assertEquals(10, defaultConfig.getPeakRadius());
+		assertEquals(4, defaultConfig.getMaxShotsPerFrame());
+		assertEquals(50, defaultConfig.getDetectionCPUBudget());
+		assertEquals(30, defaultConfig.getPreviewFPS());
+		assertEquals(true, defaultConfig.pauseHiddenPreview());
+		assertFalse(defaultConfig.getWebcamResolution().isPresent());
 		assertEquals(false, defaultConfig.inDebugMode());
 	}
 
@@ -223,6 +233,170 @@ public class TestConfiguration {
 		}
 	}
 	
+	@Test(expected=ConfigurationException.class)
+	public void testHistorySizeBelowRange() throws ConfigurationException {
+		defaultConfig.setHistorySize(0);
+		defaultConfig.validateConfiguration();		
+	}
+
+	@Test(expected=ConfigurationException.class)
+	public void testHistorySizeAboveRange() throws ConfigurationException {
+		defaultConfig.setHistorySize(61);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testHistorySizeInRange() {
+		try {
+			defaultConfig.setHistorySize(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setHistorySize(30);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setHistorySize(60);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("History size values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testDetectionParallelismBelowRange() throws ConfigurationException {
+		defaultConfig.setDetectionParallelism(0);
+		defaultConfig.validateConfiguration();		
+	}
+
+	@Test(expected=ConfigurationException.class)
+	public void testDetectionParallelismAboveRange() throws ConfigurationException {
+		defaultConfig.setDetectionParallelism(65);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testDetectionParallelismInRange() {
+		try {
+			defaultConfig.setDetectionParallelism(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setDetectionParallelism(8);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setDetectionParallelism(64);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Detection parallelism values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testPeakRadiusBelowRange() throws ConfigurationException {
+		defaultConfig.setPeakRadius(0);
+		defaultConfig.validateConfiguration();		
+	}
+
+	@Test(expected=ConfigurationException.class)
+	public void testPeakRadiusAboveRange() throws ConfigurationException {
+		defaultConfig.setPeakRadius(31);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testPeakRadiusInRange() {
+		try {
+			defaultConfig.setPeakRadius(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setPeakRadius(30);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Peak radius values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testMaxShotsPerFrameBelowRange() throws ConfigurationException {
+		defaultConfig.setMaxShotsPerFrame(0);
+		defaultConfig.validateConfiguration();		
+	}
+
+	@Test(expected=ConfigurationException.class)
+	public void testMaxShotsPerFrameAboveRange() throws ConfigurationException {
+		defaultConfig.setMaxShotsPerFrame(101);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testMaxShotsPerFrameInRange() {
+		try {
+			defaultConfig.setMaxShotsPerFrame(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setMaxShotsPerFrame(100);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Max shots per frame values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testDetectionCPUBudgetBelowRange() throws ConfigurationException {
+		defaultConfig.setDetectionCPUBudget(9);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testDetectionCPUBudgetAboveRange() throws ConfigurationException {
+		defaultConfig.setDetectionCPUBudget(101);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testDetectionCPUBudgetInRange() {
+		try {
+			defaultConfig.setDetectionCPUBudget(10);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setDetectionCPUBudget(100);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Detection CPU budget values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testPreviewFPSBelowRange() throws ConfigurationException {
+		defaultConfig.setPreviewFPS(0);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testPreviewFPSAboveRange() throws ConfigurationException {
+		defaultConfig.setPreviewFPS(61);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testPreviewFPSInRange() {
+		try {
+			defaultConfig.setPreviewFPS(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setPreviewFPS(60);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Preview FPS values are in range but got ConfigurationException");
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testWebcamResolutionAboveRange() throws ConfigurationException {
+		defaultConfig.setWebcamResolution(Optional.of(new Dimension(8192, 720)));
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test
+	public void testWebcamResolutionInRange() {
+		try {
+			defaultConfig.setWebcamResolution(Optional.of(new Dimension(1920, 1080)));
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Webcam resolution is in range but got ConfigurationException");
+		}
+	}
+	
 	@Test
 	public void testReadConfigFile() throws IOException, ConfigurationException {
 		Configuration config = new Configuration(
@@ -242,6 +416,14 @@ public class TestConfiguration {
 		assertEquals(25, config.getVirtualMagazineCapacity());
 		assertEquals(true, config.useMalfunctions());
 		assertTrue(config.getMalfunctionsProbability() == (float)43.15);
+		assertEquals(8, config.getHistorySize());
+		assertEquals(4, config.getDetectionParallelism());
+		assertEquals(6, config.getPeakRadius());
+		assertEquals(3, config.getMaxShotsPerFrame());
+		assertEquals(75, config.getDetectionCPUBudget());
+		assertEquals(15, config.getPreviewFPS());
+		assertEquals(false, config.pauseHiddenPreview());
+		assertEquals(new Dimension(1280, 720), config.getWebcamResolution().get());
 		assertEquals(false, config.inDebugMode());
 	}
 	
@@ -38,10 +38,10 @@ public class MockCanvasManager extends CanvasManager {
 	}
 
 	@Override
-	public void addShot(Color color, double x, double y) {
+	public void addShot(Color color, double x, double y, long captureTime) {
 		if (startTime == 0) startTime = System.currentTimeMillis();
 		Shot shot = new Shot(color, x, y, 
-				System.currentTimeMillis() - startTime, config.getMarkerRadius());
+				System.currentTimeMillis() - startTime, captureTime, config.getMarkerRadius());
 		
 		if (useShotProcessors) {
 			for (ShotProcessor p : config.getShotProcessors()) {